@@ -0,0 +1,139 @@
+/*
+ * Copyright 2019, Oath Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flurry.android.reactnative;
+
+import androidx.annotation.NonNull;
+
+import com.flurry.android.FlurryAgent;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import android.util.Log;
+
+/**
+ * Fixed-size ring buffer of the last crash breadcrumbs.
+ *
+ * Logging a breadcrumb is a slot write, the Flurry SDK only receives the buffered breadcrumbs when an error
+ * is reported, or from the uncaught exception handler installed with crash reporting.
+ */
+final class FlurryBreadcrumbs {
+    private static final String TAG = "FlurryBreadcrumbs";
+
+    static final int DEFAULT_CAPACITY = 64;
+
+    /**
+     * A breadcrumb and its position, so that a slot tells which write it holds.
+     */
+    private static final class Crumb {
+        final long position;
+        final String text;
+
+        Crumb(long position, String text) {
+            this.position = position;
+            this.text = text;
+        }
+    }
+
+    private final int mCapacity;
+    private final AtomicReferenceArray<Crumb> mSlots;
+    private final AtomicLong mWritePosition = new AtomicLong();
+    private final AtomicLong mFlushPosition = new AtomicLong();
+    private final AtomicLong mOverwritten = new AtomicLong();
+    private final AtomicLong mFlushed = new AtomicLong();
+
+    private volatile boolean mCrashHandlerInstalled = false;
+
+    FlurryBreadcrumbs(int capacity) {
+        mCapacity = Math.max(1, capacity);
+        mSlots = new AtomicReferenceArray<>(mCapacity);
+    }
+
+    /**
+     * Claim the next position and publish the breadcrumb in its slot, counting the unflushed one it replaces.
+     */
+    void append(@NonNull String breadcrumb) {
+        long position = mWritePosition.getAndIncrement();
+        if (position - mCapacity >= mFlushPosition.get()) {
+            mOverwritten.incrementAndGet();
+        }
+        mSlots.set((int) (position % mCapacity), new Crumb(position, breadcrumb));
+    }
+
+    int getPendingCount() {
+        long pending = mWritePosition.get() - mFlushPosition.get();
+        return (int) Math.max(0, Math.min(pending, mCapacity));
+    }
+
+    long getOverwrittenCount() {
+        return mOverwritten.get();
+    }
+
+    long getFlushedCount() {
+        return mFlushed.get();
+    }
+
+    /**
+     * Hand the breadcrumbs logged since the last flush to the Flurry SDK, oldest first.
+     * Slots overwritten since are skipped, and a slot claimed but not written yet ends the flush,
+     * so that it is handed over by the next one.
+     */
+    synchronized void flush() {
+        long end = mWritePosition.get();
+        long position = Math.max(mFlushPosition.get(), end - mCapacity);
+
+        for (; position < end; position++) {
+            Crumb crumb = mSlots.get((int) (position % mCapacity));
+            if (crumb == null || crumb.position < position) {
+                break;
+            }
+            if (crumb.position == position) {
+                FlurryAgent.logBreadcrumb(crumb.text);
+                mFlushed.incrementAndGet();
+            }
+        }
+        mFlushPosition.set(position);
+    }
+
+    /**
+     * Wrap the current default uncaught exception handler, which is the Flurry SDK one once the agent
+     * is built with crash reporting, to flush the breadcrumbs before the crash is reported.
+     *
+     * Only called when the agent is built by this plugin, i.e. with FlurryModule.Builder or the JS
+     * Flurry.Builder. An agent built directly with the SDK does not get the breadcrumbs on a crash.
+     */
+    synchronized void installCrashHandler() {
+        if (mCrashHandlerInstalled) {
+            return;
+        }
+        mCrashHandlerInstalled = true;
+
+        final Thread.UncaughtExceptionHandler previous = Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+            @Override
+            public void uncaughtException(Thread thread, Throwable throwable) {
+                try {
+                    flush();
+                } catch (Throwable t) {
+                    Log.e(TAG, "Failed to flush the Flurry breadcrumbs.", t);
+                }
+                if (previous != null) {
+                    previous.uncaughtException(thread, throwable);
+                }
+            }
+        });
+    }
+}
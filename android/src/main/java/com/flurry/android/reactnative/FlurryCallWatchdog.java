@@ -0,0 +1,248 @@
+/*
+ * Copyright 2019, Oath Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flurry.android.reactnative;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import android.os.Process;
+import android.util.Log;
+
+/**
+ * Watchdog of the Flurry SDK calls made by the plugin.
+ *
+ * Each calling thread publishes the start of its current call in its own slot. A low priority monitor thread
+ * polls the slots, and samples the stack of a call running over the threshold once. Stalls are grouped by
+ * the Flurry SDK method they were stuck in, with their count, durations and the last sampled stack.
+ *
+ * Disabled by default, every hook is then a single volatile read.
+ */
+final class FlurryCallWatchdog {
+    private static final String TAG = "FlurryCallWatchdog";
+
+    static final long DEFAULT_THRESHOLD_MILLIS = 20;
+
+    private static final int MAX_TRACKED_CALLS = 64;
+    private static final int MAX_STACK_DEPTH = 32;
+    private static final String SDK_PACKAGE = "com.flurry.android.";
+    private static final String PLUGIN_PACKAGE = "com.flurry.android.reactnative.";
+
+    /**
+     * Current call of one thread, written by that thread and read by the monitor.
+     */
+    static final class Slot {
+        final Thread thread;
+        volatile long sequence = 0;
+        volatile long startNanos = 0;
+        volatile String name = null;
+
+        // Set by the monitor once the call of that sequence has been flagged.
+        volatile long flaggedSequence = -1;
+        volatile Stall flaggedStall = null;
+
+        Slot(Thread thread) {
+            this.thread = thread;
+        }
+    }
+
+    static final class Stall {
+        final AtomicLong count = new AtomicLong();
+        final LatencyHistogram durations = new LatencyHistogram();
+        volatile String[] stack = new String[0];
+    }
+
+    private static volatile boolean sEnabled = false;
+    private static volatile long sThresholdNanos = DEFAULT_THRESHOLD_MILLIS * 1000000L;
+
+    private static final CopyOnWriteArrayList<Slot> sSlots = new CopyOnWriteArrayList<>();
+    private static final ThreadLocal<Slot> sSlot = new ThreadLocal<Slot>() {
+        @Override
+        protected Slot initialValue() {
+            Slot slot = new Slot(Thread.currentThread());
+            sSlots.add(slot);
+            return slot;
+        }
+    };
+
+    private static final ConcurrentHashMap<String, Stall> sStalls = new ConcurrentHashMap<>();
+    private static Thread sMonitor = null;
+
+    private FlurryCallWatchdog() {
+    }
+
+    static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    static long getThresholdMillis() {
+        return sThresholdNanos / 1000000L;
+    }
+
+    static synchronized void setEnabled(boolean enabled, long thresholdMillis) {
+        sThresholdNanos = Math.max(1, thresholdMillis) * 1000000L;
+        sEnabled = enabled;
+        if (enabled && sMonitor == null) {
+            sMonitor = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_LOWEST);
+                    monitor();
+                }
+            }, "FlurryModule-watchdog");
+            sMonitor.setDaemon(true);
+            sMonitor.start();
+        }
+    }
+
+    /**
+     * Watch a call run on any thread.
+     */
+    @NonNull
+    static Runnable watch(@NonNull final String name, @NonNull final Runnable call) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                Slot slot = begin(name);
+                try {
+                    call.run();
+                } finally {
+                    end(slot);
+                }
+            }
+        };
+    }
+
+    /**
+     * Mark the start of a call on the current thread.
+     *
+     * @return the slot to pass to end, or null if not watched, e.g. nested in a watched call.
+     */
+    @Nullable
+    static Slot begin(@NonNull String name) {
+        if (!sEnabled) {
+            return null;
+        }
+
+        Slot slot = sSlot.get();
+        if (slot.startNanos != 0) {
+            return null;
+        }
+        slot.name = name;
+        slot.sequence++;
+        slot.startNanos = System.nanoTime();
+        return slot;
+    }
+
+    static void end(@Nullable Slot slot) {
+        if (slot == null) {
+            return;
+        }
+
+        long duration = System.nanoTime() - slot.startNanos;
+        slot.startNanos = 0;
+        if (slot.flaggedSequence == slot.sequence) {
+            Stall stall = slot.flaggedStall;
+            if (stall != null) {
+                stall.durations.record(duration);
+            }
+        }
+    }
+
+    @NonNull
+    static Map<String, Stall> getStalls() {
+        return sStalls;
+    }
+
+    private static void monitor() {
+        while (true) {
+            long thresholdNanos = sThresholdNanos;
+            try {
+                // Poll at half the threshold, so a stall is flagged before it lasts twice as long.
+                Thread.sleep(Math.max(1, thresholdNanos / 2000000L));
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (!sEnabled) {
+                continue;
+            }
+
+            long now = System.nanoTime();
+            for (Slot slot : sSlots) {
+                if (!slot.thread.isAlive()) {
+                    sSlots.remove(slot);
+                    continue;
+                }
+
+                long start = slot.startNanos;
+                long sequence = slot.sequence;
+                if (start == 0 || now - start < thresholdNanos || slot.flaggedSequence == sequence) {
+                    continue;
+                }
+
+                StackTraceElement[] stack = slot.thread.getStackTrace();
+                if (slot.sequence != sequence || slot.startNanos == 0) {
+                    // The call ended while the stack was taken.
+                    continue;
+                }
+                flag(slot, sequence, stack);
+            }
+        }
+    }
+
+    private static void flag(Slot slot, long sequence, StackTraceElement[] stack) {
+        String key = entryPoint(stack, slot.name);
+        Stall stall = sStalls.get(key);
+        if (stall == null) {
+            if (sStalls.size() >= MAX_TRACKED_CALLS) {
+                return;
+            }
+            Stall created = new Stall();
+            stall = sStalls.putIfAbsent(key, created);
+            if (stall == null) {
+                stall = created;
+            }
+        }
+
+        String[] frames = new String[Math.min(stack.length, MAX_STACK_DEPTH)];
+        for (int i = 0; i < frames.length; i++) {
+            frames[i] = stack[i].toString();
+        }
+        stall.stack = frames;
+        stall.count.incrementAndGet();
+
+        slot.flaggedStall = stall;
+        slot.flaggedSequence = sequence;
+        Log.w(TAG, "Flurry call " + key + " running for over " + getThresholdMillis() + " ms.");
+    }
+
+    /**
+     * The outermost Flurry SDK method of a stack, i.e. the SDK API the plugin called.
+     */
+    private static String entryPoint(StackTraceElement[] stack, String fallback) {
+        for (int i = stack.length - 1; i >= 0; i--) {
+            String className = stack[i].getClassName();
+            if (className.startsWith(SDK_PACKAGE) && !className.startsWith(PLUGIN_PACKAGE)) {
+                return className + "." + stack[i].getMethodName();
+            }
+        }
+        return fallback;
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2019, Oath Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flurry.android.reactnative;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.flurry.android.FlurryConfig;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Read-through cache of Flurry Config values.
+ *
+ * Flurry Config has no API to enumerate its keys, so the cache holds the keys that have been read.
+ * They are re-resolved when new config data is activated, and the version is increased.
+ * Until the first activation, values missing from Flurry Config are read from the persisted snapshot
+ * of the previous run, if any.
+ */
+final class FlurryConfigCache {
+
+    // Marks a key that Flurry Config does not have, so that the default value is returned without a lookup.
+    private static final String ABSENT = new String("");
+
+    private final ConcurrentHashMap<String, String> mValues = new ConcurrentHashMap<>();
+    private final AtomicInteger mVersion = new AtomicInteger(0);
+
+    // Increased whenever mValues changes, the published snapshot is valid while it matches.
+    private final AtomicInteger mModCount = new AtomicInteger(0);
+    private final AtomicReference<Snapshot> mSnapshot = new AtomicReference<>();
+
+    // Values activated in a previous run, dropped on the first activation of this run.
+    private volatile Map<String, String> mPersisted = null;
+
+    private static final class Snapshot {
+        final int modCount;
+        final Map<String, String> values;
+
+        Snapshot(int modCount, Map<String, String> values) {
+            this.modCount = modCount;
+            this.values = values;
+        }
+    }
+
+    /**
+     * Version of the cached values, increased on every activation.
+     */
+    int getVersion() {
+        return mVersion.get();
+    }
+
+    /**
+     * Seed the cache with the values persisted by a previous run, ignored once config data was activated.
+     * The seed is loaded in the background, so it may arrive after reads or even after an activation.
+     */
+    void seed(@NonNull Map<String, String> persisted) {
+        synchronized (this) {
+            if (mVersion.get() > 0) {
+                return;
+            }
+            mPersisted = persisted;
+        }
+
+        // Keys read before the seed resolved to their default, read them again.
+        for (Map.Entry<String, String> entry : mValues.entrySet()) {
+            if (entry.getValue() == ABSENT) {
+                mValues.remove(entry.getKey(), ABSENT);
+            }
+        }
+        mModCount.incrementAndGet();
+    }
+
+    /**
+     * Get a config value, read from Flurry Config only on the first request for the key.
+     */
+    String getString(@NonNull FlurryConfig flurryConfig, @NonNull String key, @Nullable String defaultValue) {
+        String value = mValues.get(key);
+        if (value == null) {
+            int version = mVersion.get();
+            value = resolve(flurryConfig, key);
+            mValues.put(key, value);
+            mModCount.incrementAndGet();
+            if (version != mVersion.get()) {
+                // Activated while resolving, the value may be stale.
+                mValues.remove(key, value);
+                mModCount.incrementAndGet();
+            }
+        }
+        return value == ABSENT ? defaultValue : value;
+    }
+
+    /**
+     * Re-resolve all known keys against the newly activated config data.
+     */
+    void activate(@NonNull FlurryConfig flurryConfig) {
+        Map<String, String> persisted;
+        synchronized (this) {
+            // A seed arriving later is ignored.
+            persisted = mPersisted;
+            mPersisted = null;
+            mVersion.incrementAndGet();
+        }
+        if (persisted != null) {
+            // Keep the persisted keys known, so that the next snapshot file still holds them.
+            for (String key : persisted.keySet()) {
+                mValues.putIfAbsent(key, ABSENT);
+            }
+        }
+
+        for (String key : mValues.keySet()) {
+            mValues.put(key, resolve(flurryConfig, key));
+        }
+        mModCount.incrementAndGet();
+    }
+
+    /**
+     * Immutable map of all cached keys that have a value in Flurry Config.
+     * It is rebuilt only after the cache has changed, and can be shared between threads.
+     */
+    @NonNull
+    Map<String, String> snapshot() {
+        int modCount = mModCount.get();
+        Snapshot snapshot = mSnapshot.get();
+        if (snapshot != null && snapshot.modCount == modCount) {
+            return snapshot.values;
+        }
+
+        Map<String, String> values = new HashMap<>(mValues.size());
+        for (Map.Entry<String, String> entry : mValues.entrySet()) {
+            if (entry.getValue() != ABSENT) {
+                values.put(entry.getKey(), entry.getValue());
+            }
+        }
+        snapshot = new Snapshot(modCount, Collections.unmodifiableMap(values));
+        mSnapshot.set(snapshot);
+        return snapshot.values;
+    }
+
+    private String resolve(FlurryConfig flurryConfig, String key) {
+        String value = flurryConfig.getString(key, null);
+        if (value == null) {
+            Map<String, String> persisted = mPersisted;
+            if (persisted != null) {
+                value = persisted.get(key);
+            }
+        }
+        return value != null ? value : ABSENT;
+    }
+}
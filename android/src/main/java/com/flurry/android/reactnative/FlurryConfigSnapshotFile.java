@@ -0,0 +1,182 @@
+/*
+ * Copyright 2019, Oath Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flurry.android.reactnative;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import android.util.Log;
+
+/**
+ * File holding the last activated Flurry Config values, read at the next cold start.
+ *
+ * Layout: [int magic][int format version][int count] followed by count entries of
+ * [int key length][key UTF-8][int value length][value UTF-8], and the crc32 of all preceding bytes.
+ * The file is replaced atomically; a file that does not validate is deleted and ignored.
+ */
+final class FlurryConfigSnapshotFile {
+    private static final String TAG = "FlurryConfigSnapshot";
+
+    static final String FILE_NAME = "flurry-rn-config.snapshot";
+
+    private static final int MAGIC = 0x46434647;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 12;
+    private static final int CRC_SIZE = 4;
+    private static final int MAX_FILE_SIZE = 1024 * 1024;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private FlurryConfigSnapshotFile() {
+    }
+
+    /**
+     * Read the values of a snapshot file.
+     *
+     * @return the values, or null if there is no valid snapshot.
+     */
+    @Nullable
+    static Map<String, String> read(@NonNull File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+
+        RandomAccessFile randomAccessFile = null;
+        try {
+            randomAccessFile = new RandomAccessFile(file, "r");
+            long size = randomAccessFile.length();
+            if (size < HEADER_SIZE + CRC_SIZE || size > MAX_FILE_SIZE) {
+                throw new IOException("Unexpected size " + size);
+            }
+
+            MappedByteBuffer buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int contentSize = (int) size - CRC_SIZE;
+            CRC32 crc = new CRC32();
+            for (int i = 0; i < contentSize; i++) {
+                crc.update(buffer.get(i));
+            }
+            if ((int) crc.getValue() != buffer.getInt(contentSize)) {
+                throw new IOException("Checksum mismatch");
+            }
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                throw new IOException("Unknown format");
+            }
+
+            int count = buffer.getInt();
+            Map<String, String> values = new HashMap<>(Math.max(16, count * 2));
+            for (int i = 0; i < count; i++) {
+                values.put(getString(buffer, contentSize), getString(buffer, contentSize));
+            }
+            return values;
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            Log.w(TAG, "Ignoring invalid config snapshot: " + e.getMessage());
+            if (!file.delete()) {
+                Log.w(TAG, "Failed to delete " + file);
+            }
+            return null;
+        } finally {
+            close(randomAccessFile);
+        }
+    }
+
+    /**
+     * Replace the snapshot file with the given values.
+     */
+    static boolean write(@NonNull File file, @NonNull Map<String, String> values) {
+        int size = HEADER_SIZE + CRC_SIZE;
+        byte[][] encoded = new byte[values.size() * 2][];
+        int index = 0;
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            encoded[index] = entry.getKey().getBytes(UTF_8);
+            encoded[index + 1] = entry.getValue().getBytes(UTF_8);
+            size += 8 + encoded[index].length + encoded[index + 1].length;
+            index += 2;
+        }
+        if (size > MAX_FILE_SIZE) {
+            Log.w(TAG, "Config snapshot too large to persist: " + size);
+            return false;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC);
+        buffer.putInt(FORMAT_VERSION);
+        buffer.putInt(values.size());
+        for (byte[] bytes : encoded) {
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, size - CRC_SIZE);
+        buffer.putInt((int) crc.getValue());
+
+        File temp = new File(file.getPath() + ".tmp");
+        FileOutputStream output = null;
+        try {
+            output = new FileOutputStream(temp);
+            output.write(buffer.array());
+            output.getFD().sync();
+            output.close();
+            output = null;
+            if (!temp.renameTo(file)) {
+                throw new IOException("Failed to rename " + temp);
+            }
+            return true;
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write config snapshot.", e);
+            if (!temp.delete()) {
+                Log.w(TAG, "Failed to delete " + temp);
+            }
+            return false;
+        } finally {
+            close(output);
+        }
+    }
+
+    private static String getString(ByteBuffer buffer, int limit) throws IOException {
+        int length = buffer.getInt();
+        if (length < 0 || length > limit - buffer.position()) {
+            throw new IOException("Invalid string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static void close(@Nullable Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // Nothing left to do.
+        }
+    }
+}
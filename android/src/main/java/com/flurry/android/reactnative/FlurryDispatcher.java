@@ -0,0 +1,351 @@
+/*
+ * Copyright 2019, Oath Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flurry.android.reactnative;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import android.util.Log;
+
+/**
+ * Single-consumer dispatch pipeline for Flurry SDK calls.
+ *
+ * Calls are enqueued into a bounded lock-free ring buffer and executed in order by one worker thread,
+ * so the React Native modules thread never waits on the Flurry SDK.
+ *
+ * High-priority calls, e.g. errors and payments, go through a separate unbounded lane which is never
+ * dropped and is drained before the ring buffer. The overflow policy only sheds the regular calls.
+ *
+ * The priority lane is unbounded by contract: it only carries calls which must not be lost and whose
+ * rate is bounded by the app, and its callers include the UI thread which must never block. It is
+ * monitored instead, its peak depth and the calls enqueued while it holds more than the capacity of the
+ * ring buffer are counted, and the first such call is logged.
+ */
+final class FlurryDispatcher {
+    private static final String TAG = "FlurryDispatcher";
+
+    static final int DEFAULT_CAPACITY = 1024;
+
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    /**
+     * What to do when a call is enqueued while the ring buffer is full.
+     */
+    enum OverflowPolicy {
+        DROP_OLDEST("dropOldest"),
+        DROP_NEWEST("dropNewest"),
+        BLOCK("block");
+
+        private final String name;
+
+        OverflowPolicy(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        @Nullable
+        static OverflowPolicy fromName(@Nullable String name) {
+            for (OverflowPolicy policy : values()) {
+                if (policy.name.equalsIgnoreCase(name)) {
+                    return policy;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final int mCapacity;
+    private final int mMask;
+    private final AtomicReferenceArray<Runnable> mBuffer;
+    private final AtomicLongArray mSequences;
+    private final AtomicLong mEnqueuePosition = new AtomicLong();
+    private final AtomicLong mDequeuePosition = new AtomicLong();
+
+    private final AtomicLong mEnqueued = new AtomicLong();
+    private final AtomicLong mDropped = new AtomicLong();
+    private final AtomicLong mDrained = new AtomicLong();
+
+    private final ConcurrentLinkedQueue<Runnable> mPriority = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger mPriorityPending = new AtomicInteger();
+    private final AtomicLong mPriorityEnqueued = new AtomicLong();
+    private final AtomicLong mPriorityDrained = new AtomicLong();
+    private final AtomicInteger mPriorityPeak = new AtomicInteger();
+    private final AtomicLong mPriorityOverCapacity = new AtomicLong();
+
+    private volatile OverflowPolicy mOverflowPolicy;
+    private volatile boolean mWaiting = false;
+    private final Thread mWorker;
+
+    FlurryDispatcher(int capacity, @NonNull OverflowPolicy overflowPolicy) {
+        // Round up to a power of two so that the slot index is a mask of the position.
+        int size = 2;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        mCapacity = size;
+        mMask = size - 1;
+        mBuffer = new AtomicReferenceArray<>(size);
+        mSequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            mSequences.set(i, i);
+        }
+        mOverflowPolicy = overflowPolicy;
+
+        mWorker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drainLoop();
+            }
+        }, "FlurryModule-dispatcher");
+        mWorker.setDaemon(true);
+        mWorker.start();
+    }
+
+    void setOverflowPolicy(@NonNull OverflowPolicy overflowPolicy) {
+        mOverflowPolicy = overflowPolicy;
+    }
+
+    @NonNull
+    OverflowPolicy getOverflowPolicy() {
+        return mOverflowPolicy;
+    }
+
+    int getCapacity() {
+        return mCapacity;
+    }
+
+    long getEnqueuedCount() {
+        return mEnqueued.get();
+    }
+
+    long getDroppedCount() {
+        return mDropped.get();
+    }
+
+    long getDrainedCount() {
+        return mDrained.get();
+    }
+
+    int getPendingCount() {
+        long pending = mEnqueuePosition.get() - mDequeuePosition.get();
+        return (int) Math.max(0, Math.min(pending, mCapacity));
+    }
+
+    int getPriorityPendingCount() {
+        return Math.max(0, mPriorityPending.get());
+    }
+
+    long getPriorityEnqueuedCount() {
+        return mPriorityEnqueued.get();
+    }
+
+    long getPriorityDrainedCount() {
+        return mPriorityDrained.get();
+    }
+
+    int getPriorityPeakCount() {
+        return mPriorityPeak.get();
+    }
+
+    long getPriorityOverCapacityCount() {
+        return mPriorityOverCapacity.get();
+    }
+
+    /**
+     * Enqueue a call in the high-priority lane, it runs before any pending regular call.
+     * The call is never dropped and the caller never blocks, whatever the overflow policy.
+     */
+    void dispatchPriority(@NonNull Runnable call) {
+        if (Thread.currentThread() == mWorker) {
+            runSafely(call);
+            return;
+        }
+
+        int pending = mPriorityPending.incrementAndGet();
+        updatePriorityPeak(pending);
+        if (pending > mCapacity && mPriorityOverCapacity.getAndIncrement() == 0) {
+            Log.w(TAG, "Priority lane holds " + pending + " calls, more than the capacity of " + mCapacity + ".");
+        }
+        mPriority.offer(call);
+        mPriorityEnqueued.incrementAndGet();
+        signal();
+    }
+
+    /**
+     * Enqueue a call for the worker thread.
+     *
+     * @param call the call to execute.
+     * @return true if the call was enqueued, false if it was dropped.
+     */
+    boolean dispatch(@NonNull Runnable call) {
+        if (Thread.currentThread() == mWorker) {
+            // Re-entrant dispatch from a running call, blocking here would dead-lock the worker.
+            runSafely(call);
+            return true;
+        }
+
+        while (true) {
+            if (offer(call)) {
+                mEnqueued.incrementAndGet();
+                signal();
+                return true;
+            }
+
+            switch (mOverflowPolicy) {
+                case DROP_NEWEST:
+                    mDropped.incrementAndGet();
+                    return false;
+                case DROP_OLDEST:
+                    if (poll() != null) {
+                        mDropped.incrementAndGet();
+                    }
+                    break;
+                case BLOCK:
+                default:
+                    signal();
+                    LockSupport.parkNanos(this, BLOCK_PARK_NANOS);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Run the regular calls pending now from a call running on the worker thread, e.g. a priority call
+     * which must follow them. Calls enqueued in the meantime are left to the worker loop.
+     */
+    void drainPending() {
+        if (Thread.currentThread() != mWorker) {
+            throw new IllegalStateException("drainPending must be called on the dispatcher thread.");
+        }
+
+        long end = mEnqueuePosition.get();
+        while (mDequeuePosition.get() < end) {
+            Runnable call = poll();
+            if (call == null) {
+                // Claimed by a producer but not published yet.
+                break;
+            }
+            runSafely(call);
+            mDrained.incrementAndGet();
+        }
+    }
+
+    private void updatePriorityPeak(int pending) {
+        int peak = mPriorityPeak.get();
+        while (pending > peak && !mPriorityPeak.compareAndSet(peak, pending)) {
+            peak = mPriorityPeak.get();
+        }
+    }
+
+    private boolean offer(Runnable call) {
+        long position = mEnqueuePosition.get();
+        while (true) {
+            int index = (int) (position & mMask);
+            long difference = mSequences.get(index) - position;
+            if (difference == 0) {
+                if (mEnqueuePosition.compareAndSet(position, position + 1)) {
+                    mBuffer.lazySet(index, call);
+                    mSequences.set(index, position + 1);
+                    return true;
+                }
+                position = mEnqueuePosition.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = mEnqueuePosition.get();
+            }
+        }
+    }
+
+    private Runnable poll() {
+        long position = mDequeuePosition.get();
+        while (true) {
+            int index = (int) (position & mMask);
+            long difference = mSequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (mDequeuePosition.compareAndSet(position, position + 1)) {
+                    Runnable call = mBuffer.get(index);
+                    mBuffer.lazySet(index, null);
+                    mSequences.set(index, position + mCapacity);
+                    return call;
+                }
+                position = mDequeuePosition.get();
+            } else if (difference < 0) {
+                return null;
+            } else {
+                position = mDequeuePosition.get();
+            }
+        }
+    }
+
+    private boolean isEmpty() {
+        if (!mPriority.isEmpty()) {
+            return false;
+        }
+        long position = mDequeuePosition.get();
+        return mSequences.get((int) (position & mMask)) - (position + 1) < 0;
+    }
+
+    private void signal() {
+        if (mWaiting) {
+            LockSupport.unpark(mWorker);
+        }
+    }
+
+    private void drainLoop() {
+        while (true) {
+            Runnable call = mPriority.poll();
+            if (call != null) {
+                mPriorityPending.decrementAndGet();
+                runSafely(call);
+                mPriorityDrained.incrementAndGet();
+                continue;
+            }
+
+            call = poll();
+            if (call == null) {
+                mWaiting = true;
+                if (isEmpty()) {
+                    LockSupport.park(this);
+                }
+                mWaiting = false;
+                continue;
+            }
+
+            runSafely(call);
+            mDrained.incrementAndGet();
+        }
+    }
+
+    private static void runSafely(Runnable call) {
+        try {
+            call.run();
+        } catch (Throwable t) {
+            Log.e(TAG, "Flurry call failed.", t);
+        }
+    }
+}
@@ -0,0 +1,282 @@
+/*
+ * Copyright 2019, Oath Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flurry.android.reactnative;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableMapKeySetIterator;
+import com.facebook.react.bridge.ReadableType;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import android.util.Log;
+
+/**
+ * Folds registered events into one summary event per event Id and parameter values.
+ *
+ * Aggregates are kept in an open-addressing table keyed by the 64-bit signature of the event, so
+ * folding an event allocates no key object. Events whose signatures collide are told apart by their
+ * event Id and parameters. A summary carries the original parameters plus the number of folded events
+ * and, if the event has a sum parameter, the total of its values. These take the last parameter slots,
+ * so that a summary stays within the Flurry parameter limit.
+ */
+final class FlurryEventAggregator {
+    private static final String TAG = "FlurryEventAggregator";
+
+    static final String COUNT_PARAM = "aggregatedCount";
+    static final String SUM_PARAM = "aggregatedSum";
+
+    static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 60000;
+
+    // Flushed early when this many distinct keys are pending.
+    private static final int MAX_KEYS = 1024;
+    private static final int INITIAL_CAPACITY = 64;
+
+    interface Sink {
+        void logSummary(@NonNull String eventId, @NonNull Map<String, String> parameters);
+    }
+
+    private static final class Aggregate {
+        final String eventId;
+        final Map<String, String> parameters;
+        long count = 0;
+        double sum = 0;
+        boolean hasSum = false;
+
+        Aggregate(String eventId, Map<String, String> parameters) {
+            this.eventId = eventId;
+            this.parameters = parameters;
+        }
+
+        /**
+         * Whether an event folds into this aggregate, checked on a signature match.
+         */
+        boolean matches(String eventId, @Nullable ReadableMap parameters, @Nullable String sumKey) {
+            return this.eventId.equals(eventId) && FlurryHash.matches(this.parameters, parameters, sumKey);
+        }
+    }
+
+    // Registered event Ids and their sum parameter, "" for none. Copied on write.
+    private volatile Map<String, String> mRegistered = Collections.emptyMap();
+
+    private long[] mKeys = new long[INITIAL_CAPACITY];
+    private Aggregate[] mValues = new Aggregate[INITIAL_CAPACITY];
+    private int mSize = 0;
+    private boolean mFlushRequested = false;
+
+    private final AtomicLong mFolded = new AtomicLong();
+    private final AtomicLong mFlushed = new AtomicLong();
+
+    synchronized void register(@NonNull String eventId, @Nullable String sumKey) {
+        Map<String, String> registered = new HashMap<>(mRegistered);
+        registered.put(eventId, sumKey != null ? sumKey : "");
+        mRegistered = Collections.unmodifiableMap(registered);
+    }
+
+    synchronized void unregister(@NonNull String eventId) {
+        Map<String, String> registered = new HashMap<>(mRegistered);
+        registered.remove(eventId);
+        mRegistered = Collections.unmodifiableMap(registered);
+    }
+
+    boolean hasRegisteredEvents() {
+        return !mRegistered.isEmpty();
+    }
+
+    boolean isRegistered(@NonNull String eventId) {
+        return mRegistered.containsKey(eventId);
+    }
+
+    /**
+     * Fold an event into its aggregate.
+     *
+     * @return false if the event is not registered and must be logged as is.
+     */
+    boolean fold(@NonNull String eventId, @Nullable ReadableMap parameters) {
+        Map<String, String> registered = mRegistered;
+        if (registered.isEmpty()) {
+            return false;
+        }
+        String sumKey = registered.get(eventId);
+        if (sumKey == null) {
+            return false;
+        }
+        if (sumKey.isEmpty()) {
+            sumKey = null;
+        }
+
+        long key = FlurryHash.signature(eventId, parameters, sumKey);
+        double value = sumKey != null ? getSumValue(parameters, sumKey) : Double.NaN;
+        synchronized (this) {
+            int index = indexOf(key, eventId, parameters, sumKey);
+            Aggregate aggregate = mValues[index];
+            if (aggregate == null) {
+                aggregate = new Aggregate(eventId, copyParameters(parameters, sumKey));
+                insert(index, key, aggregate);
+            }
+            aggregate.count++;
+            if (!Double.isNaN(value)) {
+                aggregate.sum += value;
+                aggregate.hasSum = true;
+            }
+        }
+        mFolded.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * True once when too many keys are pending, until the next flush.
+     */
+    synchronized boolean shouldFlushEarly() {
+        if (mSize < MAX_KEYS || mFlushRequested) {
+            return false;
+        }
+        mFlushRequested = true;
+        return true;
+    }
+
+    synchronized int getPendingCount() {
+        return mSize;
+    }
+
+    long getFoldedCount() {
+        return mFolded.get();
+    }
+
+    long getFlushedCount() {
+        return mFlushed.get();
+    }
+
+    /**
+     * Hand one summary per pending aggregate to the sink, and start over.
+     */
+    void flush(@NonNull Sink sink) {
+        Aggregate[] values;
+        synchronized (this) {
+            if (mSize == 0) {
+                return;
+            }
+            values = mValues;
+            mKeys = new long[INITIAL_CAPACITY];
+            mValues = new Aggregate[INITIAL_CAPACITY];
+            mSize = 0;
+            mFlushRequested = false;
+        }
+
+        for (Aggregate aggregate : values) {
+            if (aggregate == null) {
+                continue;
+            }
+            Map<String, String> parameters = aggregate.parameters;
+            FlurryParamLimits.reserve(parameters, aggregate.hasSum ? 2 : 1);
+            parameters.put(COUNT_PARAM, Long.toString(aggregate.count));
+            if (aggregate.hasSum) {
+                parameters.put(SUM_PARAM, formatSum(aggregate.sum));
+            }
+            sink.logSummary(aggregate.eventId, parameters);
+            mFlushed.incrementAndGet();
+        }
+    }
+
+    // Linear probing, the table is at most half full. Returns the slot of the matching aggregate, or an empty one.
+    private int indexOf(long key, String eventId, @Nullable ReadableMap parameters, @Nullable String sumKey) {
+        int mask = mKeys.length - 1;
+        int index = (int) FlurryHash.mix(key) & mask;
+        while (mValues[index] != null
+                && (mKeys[index] != key || !mValues[index].matches(eventId, parameters, sumKey))) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    private int emptySlot(long key) {
+        int mask = mKeys.length - 1;
+        int index = (int) FlurryHash.mix(key) & mask;
+        while (mValues[index] != null) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    private void insert(int index, long key, Aggregate aggregate) {
+        mKeys[index] = key;
+        mValues[index] = aggregate;
+        mSize++;
+        if (mSize * 2 > mKeys.length) {
+            long[] keys = mKeys;
+            Aggregate[] values = mValues;
+            mKeys = new long[keys.length * 2];
+            mValues = new Aggregate[values.length * 2];
+            for (int i = 0; i < keys.length; i++) {
+                if (values[i] != null) {
+                    int newIndex = emptySlot(keys[i]);
+                    mKeys[newIndex] = keys[i];
+                    mValues[newIndex] = values[i];
+                }
+            }
+        }
+    }
+
+    @NonNull
+    private static Map<String, String> copyParameters(@Nullable ReadableMap parameters, @Nullable String sumKey) {
+        Map<String, String> copy = new HashMap<>();
+        if (parameters == null) {
+            return copy;
+        }
+
+        ReadableMapKeySetIterator iterator = parameters.keySetIterator();
+        while (iterator.hasNextKey()) {
+            String key = iterator.nextKey();
+            if (!key.equals(sumKey) && !FlurryParamValues.reject(parameters.getType(key))) {
+                copy.put(key, FlurryParamValues.get(parameters, key));
+            }
+        }
+        return copy;
+    }
+
+    private static double getSumValue(@Nullable ReadableMap parameters, @NonNull String sumKey) {
+        if (parameters == null || !parameters.hasKey(sumKey) || parameters.isNull(sumKey)) {
+            return Double.NaN;
+        }
+
+        ReadableType type = parameters.getType(sumKey);
+        if (type == ReadableType.Number) {
+            return parameters.getDouble(sumKey);
+        }
+        if (type != ReadableType.String) {
+            Log.w(TAG, "Sum parameter is not a number: " + sumKey);
+            return Double.NaN;
+        }
+        try {
+            return Double.parseDouble(parameters.getString(sumKey));
+        } catch (NumberFormatException e) {
+            Log.w(TAG, "Sum parameter is not a number: " + sumKey);
+            return Double.NaN;
+        }
+    }
+
+    private static String formatSum(double sum) {
+        if (sum == Math.rint(sum) && Math.abs(sum) < 1e15) {
+            return Long.toString((long) sum);
+        }
+        return Double.toString(sum);
+    }
+}
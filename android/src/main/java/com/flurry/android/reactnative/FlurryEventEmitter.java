@@ -0,0 +1,190 @@
+/*
+ * Copyright 2019, Oath Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flurry.android.reactnative;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces the events emitted to JS within a frame.
+ *
+ * Events of the same name are sent as one array to "[name]Batch", which the JS module fans out
+ * to the regular listeners; a single event is sent as is. A pending event with the same collapse key
+ * is replaced by the newer one, and events without a JS listener at flush time are dropped.
+ */
+final class FlurryEventEmitter {
+
+    static final long FRAME_MILLIS = 16;
+    static final String BATCH_SUFFIX = "Batch";
+
+    interface Sink {
+        boolean hasListeners(@NonNull String eventName);
+
+        /**
+         * Emit the payload of eventName events to JS as jsEventName, which is eventName for a single event
+         * and has BATCH_SUFFIX appended for a batch.
+         */
+        void emit(@NonNull String eventName, @NonNull String jsEventName, @NonNull Object payload);
+
+        /**
+         * A new array for a batch, a native one when emitting to a React context.
+         */
+        @NonNull
+        WritableArray createArray();
+    }
+
+    private static final class Pending {
+        final String eventName;
+        final String collapseKey;
+        final WritableMap params;
+
+        Pending(String eventName, String collapseKey, WritableMap params) {
+            this.eventName = eventName;
+            this.collapseKey = collapseKey;
+            this.params = params;
+        }
+    }
+
+    private final Sink mSink;
+    private List<Pending> mPending = new ArrayList<>();
+    private boolean mFlushScheduled = false;
+
+    private final AtomicLong mEvents = new AtomicLong();
+    private final AtomicLong mBatches = new AtomicLong();
+    private final AtomicLong mCollapsed = new AtomicLong();
+    private final AtomicLong mDropped = new AtomicLong();
+
+    private final Runnable mFlush = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    FlurryEventEmitter(@NonNull Sink sink) {
+        mSink = sink;
+    }
+
+    /**
+     * Queue an event, it is emitted with the other events of the frame.
+     *
+     * @param collapseKey events of the same name and key replace each other, null to keep all.
+     */
+    void enqueue(@NonNull String eventName, @Nullable String collapseKey, @NonNull WritableMap params) {
+        synchronized (this) {
+            if (collapseKey != null) {
+                for (int i = mPending.size() - 1; i >= 0; i--) {
+                    Pending pending = mPending.get(i);
+                    if (eventName.equals(pending.eventName) && collapseKey.equals(pending.collapseKey)) {
+                        mPending.remove(i);
+                        mCollapsed.incrementAndGet();
+                        break;
+                    }
+                }
+            }
+            mPending.add(new Pending(eventName, collapseKey, params));
+
+            if (mFlushScheduled) {
+                return;
+            }
+            mFlushScheduled = true;
+        }
+        FlurryScheduler.schedule(mFlush, FRAME_MILLIS);
+    }
+
+    /**
+     * Emit an event right away, e.g. when the caller waits for the reply. Queued events go first.
+     */
+    void emitNow(@NonNull String eventName, @NonNull WritableMap params) {
+        flush();
+        mEvents.incrementAndGet();
+        mSink.emit(eventName, eventName, params);
+    }
+
+    void flush() {
+        List<Pending> pending;
+        synchronized (this) {
+            mFlushScheduled = false;
+            if (mPending.isEmpty()) {
+                return;
+            }
+            pending = mPending;
+            mPending = new ArrayList<>();
+        }
+
+        // Group by event name, keeping the order within each name.
+        boolean[] emitted = new boolean[pending.size()];
+        for (int i = 0; i < pending.size(); i++) {
+            if (emitted[i]) {
+                continue;
+            }
+
+            String eventName = pending.get(i).eventName;
+            List<WritableMap> events = new ArrayList<>();
+            for (int j = i; j < pending.size(); j++) {
+                if (!emitted[j] && eventName.equals(pending.get(j).eventName)) {
+                    emitted[j] = true;
+                    events.add(pending.get(j).params);
+                }
+            }
+            emit(eventName, events);
+        }
+    }
+
+    private void emit(String eventName, List<WritableMap> events) {
+        if (!mSink.hasListeners(eventName)) {
+            mDropped.addAndGet(events.size());
+            return;
+        }
+
+        mEvents.addAndGet(events.size());
+        if (events.size() == 1) {
+            mSink.emit(eventName, eventName, events.get(0));
+            return;
+        }
+
+        WritableArray batch = mSink.createArray();
+        for (WritableMap event : events) {
+            batch.pushMap(event);
+        }
+        mBatches.incrementAndGet();
+        mSink.emit(eventName, eventName + BATCH_SUFFIX, batch);
+    }
+
+    long getEventCount() {
+        return mEvents.get();
+    }
+
+    long getBatchCount() {
+        return mBatches.get();
+    }
+
+    long getCollapsedCount() {
+        return mCollapsed.get();
+    }
+
+    long getDroppedCount() {
+        return mDropped.get();
+    }
+}
@@ -0,0 +1,608 @@
+/*
+ * Copyright 2019, Oath Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flurry.android.reactnative;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableMapKeySetIterator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import android.util.Log;
+
+/**
+ * Append-only, memory-mapped journal of logEvent, onError and logPayment calls.
+ *
+ * Every call is written to the journal before it is dispatched, and acknowledged once it reached the
+ * Flurry SDK. Records that were never acknowledged, e.g. because the process was killed before the
+ * session started, are replayed on the next start. Writes land in the page cache right away, so they survive
+ * a killed process; syncing to the storage device is batched on the scheduler thread.
+ *
+ * Segment layout: [int magic][int format version] followed by records of
+ * [int body length][int body crc32][byte state][body], a zero length marks the end of the data.
+ */
+final class FlurryEventJournal {
+    private static final String TAG = "FlurryEventJournal";
+
+    private static final String DIRECTORY = "flurry-rn-journal";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final int SEGMENT_SIZE = 256 * 1024;
+    private static final int MAGIC = 0x464A524E;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 9;
+    private static final int MAX_RECORD_SIZE = 32 * 1024;
+
+    private static final byte STATE_PENDING = 0;
+    private static final byte STATE_ACKED = 1;
+
+    private static final byte TYPE_EVENT = 1;
+    private static final byte TYPE_ERROR = 2;
+    private static final byte TYPE_PAYMENT = 3;
+
+    private static final long SYNC_INTERVAL_MILLIS = 1000;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    static final long NO_HANDLE = -1;
+
+    /**
+     * Receives the calls of un-acknowledged records.
+     */
+    interface Replayer {
+        void replayEvent(@NonNull String eventId, @Nullable Map<String, String> parameters, boolean timed);
+
+        void replayError(@NonNull String errorId, @Nullable String message, @Nullable String errorClass,
+                         @Nullable Map<String, String> parameters);
+
+        void replayPayment(@NonNull String productName, @NonNull String productId, int quantity, double price,
+                           @NonNull String currency, @NonNull String transactionId,
+                           @Nullable Map<String, String> parameters);
+    }
+
+    private static final class Segment {
+        final int id;
+        final File file;
+        final MappedByteBuffer buffer;
+        final ByteBuffer writer;
+        final AtomicInteger pending = new AtomicInteger(0);
+        volatile boolean sealed = false;
+        volatile boolean dirty = false;
+
+        Segment(int id, File file, MappedByteBuffer buffer) {
+            this.id = id;
+            this.file = file;
+            this.buffer = buffer;
+            this.writer = buffer.duplicate();
+        }
+    }
+
+    private final File mDirectory;
+    private final ConcurrentHashMap<Integer, Segment> mSegments = new ConcurrentHashMap<>();
+    private Segment mActive;
+
+    // First handle written by this process, records before it are left over from previous runs.
+    private final long mOpenedAt;
+
+    // Guarded by this, reused for every record.
+    private ByteBuffer mScratch = ByteBuffer.allocate(4 * 1024);
+    private final CRC32 mCrc = new CRC32();
+
+    private FlurryEventJournal(File directory) throws IOException {
+        mDirectory = directory;
+        int nextId = recover();
+        mActive = createSegment(nextId);
+        mOpenedAt = handle(mActive.id, HEADER_SIZE);
+
+        // Synced once more when the app pauses, then left alone in the background.
+        FlurryScheduler.scheduleInForeground(new Runnable() {
+            @Override
+            public void run() {
+                sync();
+            }
+        }, SYNC_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Open the journal in the app's files directory.
+     *
+     * @return the journal, or null if it cannot be opened.
+     */
+    @Nullable
+    static FlurryEventJournal open(@NonNull File filesDir) {
+        File directory = new File(filesDir, DIRECTORY);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Log.e(TAG, "Failed to create journal directory " + directory);
+            return null;
+        }
+
+        try {
+            return new FlurryEventJournal(directory);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to open journal.", e);
+            return null;
+        }
+    }
+
+    /**
+     * Handle of the first record appended by this process.
+     */
+    long getOpenedAt() {
+        return mOpenedAt;
+    }
+
+    synchronized long appendEvent(@NonNull String eventId, @Nullable ReadableMap parameters, boolean timed) {
+        do {
+            try {
+                ByteBuffer body = startRecord(TYPE_EVENT);
+                putString(body, eventId);
+                putParameters(body, parameters);
+                body.put(timed ? (byte) 1 : (byte) 0);
+                return commitRecord();
+            } catch (BufferOverflowException e) {
+                // Retry with a larger scratch buffer.
+            }
+        } while (growScratch());
+        return NO_HANDLE;
+    }
+
+    synchronized long appendError(@NonNull String errorId, @Nullable String message, @Nullable String errorClass,
+                                  @Nullable ReadableMap parameters) {
+        do {
+            try {
+                ByteBuffer body = startRecord(TYPE_ERROR);
+                putString(body, errorId);
+                putString(body, message);
+                putString(body, errorClass);
+                putParameters(body, parameters);
+                return commitRecord();
+            } catch (BufferOverflowException e) {
+                // Retry with a larger scratch buffer.
+            }
+        } while (growScratch());
+        return NO_HANDLE;
+    }
+
+    synchronized long appendPayment(@NonNull String productName, @NonNull String productId, int quantity,
+                                    double price, @NonNull String currency, @NonNull String transactionId,
+                                    @Nullable ReadableMap parameters) {
+        do {
+            try {
+                ByteBuffer body = startRecord(TYPE_PAYMENT);
+                putString(body, productName);
+                putString(body, productId);
+                body.putInt(quantity);
+                body.putDouble(price);
+                putString(body, currency);
+                putString(body, transactionId);
+                putParameters(body, parameters);
+                return commitRecord();
+            } catch (BufferOverflowException e) {
+                // Retry with a larger scratch buffer.
+            }
+        } while (growScratch());
+        return NO_HANDLE;
+    }
+
+    /**
+     * Mark a record as delivered to the Flurry SDK.
+     */
+    void acknowledge(long handle) {
+        if (handle == NO_HANDLE) {
+            return;
+        }
+
+        Segment segment = mSegments.get(segmentId(handle));
+        if (segment == null) {
+            return;
+        }
+
+        int offset = offset(handle);
+        if (segment.buffer.get(offset + 8) == STATE_ACKED) {
+            return;
+        }
+        segment.buffer.put(offset + 8, STATE_ACKED);
+        segment.dirty = true;
+        if (segment.pending.decrementAndGet() == 0 && segment.sealed) {
+            deleteSegment(segment);
+        }
+    }
+
+    /**
+     * Replay and acknowledge the un-acknowledged records written before the given handle, in order.
+     */
+    void replay(long before, @NonNull Replayer replayer) {
+        List<Integer> ids = new ArrayList<>(mSegments.keySet());
+        Collections.sort(ids);
+        int replayed = 0;
+        for (int id : ids) {
+            Segment segment = mSegments.get(id);
+            if (segment == null) {
+                continue;
+            }
+
+            ByteBuffer reader = segment.buffer.duplicate();
+            int offset = HEADER_SIZE;
+            while (offset + RECORD_HEADER_SIZE <= SEGMENT_SIZE) {
+                long handle = handle(id, offset);
+                if (handle >= before) {
+                    break;
+                }
+                int length = reader.getInt(offset);
+                if (length <= 0 || offset + RECORD_HEADER_SIZE + length > SEGMENT_SIZE) {
+                    break;
+                }
+                if (reader.get(offset + 8) == STATE_PENDING) {
+                    reader.position(offset + RECORD_HEADER_SIZE);
+                    reader.limit(offset + RECORD_HEADER_SIZE + length);
+                    try {
+                        replayRecord(reader, replayer);
+                        replayed++;
+                    } catch (RuntimeException e) {
+                        Log.w(TAG, "Skipping unreadable journal record.", e);
+                    }
+                    reader.clear();
+                    acknowledge(handle);
+                }
+                offset += RECORD_HEADER_SIZE + length;
+            }
+        }
+        if (replayed > 0) {
+            Log.i(TAG, "Replayed " + replayed + " journaled Flurry calls.");
+        }
+    }
+
+    /**
+     * Flush modified segments to the storage device.
+     */
+    void sync() {
+        for (Segment segment : mSegments.values()) {
+            if (segment.dirty) {
+                segment.dirty = false;
+                segment.buffer.force();
+            }
+        }
+    }
+
+    private ByteBuffer startRecord(byte type) {
+        ByteBuffer body = mScratch;
+        body.clear();
+        body.put(type);
+        body.putLong(System.currentTimeMillis());
+        return body;
+    }
+
+    private long commitRecord() {
+        ByteBuffer body = mScratch;
+        int length = body.position();
+        if (length > MAX_RECORD_SIZE) {
+            Log.w(TAG, "Flurry call is too large for the journal, " + length + " bytes.");
+            return NO_HANDLE;
+        }
+
+        if (mActive.writer.position() + RECORD_HEADER_SIZE + length + 4 > SEGMENT_SIZE) {
+            try {
+                rollSegment();
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to create journal segment.", e);
+                return NO_HANDLE;
+            }
+        }
+
+        mCrc.reset();
+        mCrc.update(body.array(), 0, length);
+
+        Segment segment = mActive;
+        ByteBuffer writer = segment.writer;
+        int offset = writer.position();
+        writer.position(offset + RECORD_HEADER_SIZE);
+        writer.put(body.array(), 0, length);
+        writer.putInt(offset + 4, (int) mCrc.getValue());
+        writer.put(offset + 8, STATE_PENDING);
+        // The length is written last, a record is only visible once it is complete.
+        writer.putInt(offset, length);
+
+        segment.pending.incrementAndGet();
+        segment.dirty = true;
+        return handle(segment.id, offset);
+    }
+
+    private boolean growScratch() {
+        if (mScratch.capacity() >= MAX_RECORD_SIZE) {
+            // The call is dispatched without a journal record.
+            Log.w(TAG, "Flurry call is too large for the journal.");
+            return false;
+        }
+        mScratch = ByteBuffer.allocate(Math.min(mScratch.capacity() * 2, MAX_RECORD_SIZE));
+        return true;
+    }
+
+    private void rollSegment() throws IOException {
+        Segment previous = mActive;
+        mActive = createSegment(previous.id + 1);
+        previous.sealed = true;
+        if (previous.pending.get() == 0) {
+            deleteSegment(previous);
+        }
+    }
+
+    private Segment createSegment(int id) throws IOException {
+        File file = new File(mDirectory, SEGMENT_PREFIX + id + SEGMENT_SUFFIX);
+        Segment segment = new Segment(id, file, map(file));
+        segment.writer.putInt(0, MAGIC);
+        segment.writer.putInt(4, FORMAT_VERSION);
+        segment.writer.position(HEADER_SIZE);
+        mSegments.put(id, segment);
+        return segment;
+    }
+
+    /**
+     * Load the segments left by previous runs, and delete the ones without pending records.
+     *
+     * @return the id for the next segment.
+     */
+    private int recover() {
+        int nextId = 0;
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return nextId;
+        }
+
+        Arrays.sort(files);
+        for (File file : files) {
+            String name = file.getName();
+            if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+                continue;
+            }
+
+            int id;
+            try {
+                id = Integer.parseInt(name.substring(SEGMENT_PREFIX.length(),
+                        name.length() - SEGMENT_SUFFIX.length()));
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            nextId = Math.max(nextId, id + 1);
+
+            Segment segment;
+            try {
+                segment = new Segment(id, file, map(file));
+            } catch (IOException e) {
+                Log.w(TAG, "Dropping unreadable journal segment " + name, e);
+                file.delete();
+                continue;
+            }
+            if (segment.buffer.getInt(0) != MAGIC || segment.buffer.getInt(4) != FORMAT_VERSION) {
+                file.delete();
+                continue;
+            }
+
+            segment.pending.set(countPending(segment));
+            segment.sealed = true;
+            if (segment.pending.get() == 0) {
+                file.delete();
+            } else {
+                mSegments.put(id, segment);
+            }
+        }
+        return nextId;
+    }
+
+    private int countPending(Segment segment) {
+        ByteBuffer reader = segment.buffer.duplicate();
+        int pending = 0;
+        int offset = HEADER_SIZE;
+        while (offset + RECORD_HEADER_SIZE <= SEGMENT_SIZE) {
+            int length = reader.getInt(offset);
+            if (length <= 0 || offset + RECORD_HEADER_SIZE + length > SEGMENT_SIZE) {
+                break;
+            }
+
+            mCrc.reset();
+            for (int i = 0; i < length; i++) {
+                mCrc.update(reader.get(offset + RECORD_HEADER_SIZE + i));
+            }
+            if ((int) mCrc.getValue() != reader.getInt(offset + 4)) {
+                // Torn or corrupt write, nothing after it can be trusted.
+                reader.putInt(offset, 0);
+                break;
+            }
+
+            if (reader.get(offset + 8) == STATE_PENDING) {
+                pending++;
+            }
+            offset += RECORD_HEADER_SIZE + length;
+        }
+        return pending;
+    }
+
+    private void deleteSegment(Segment segment) {
+        if (mSegments.remove(segment.id) != null) {
+            // Compaction runs off the calling thread.
+            final File file = segment.file;
+            FlurryScheduler.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (!file.delete()) {
+                        Log.w(TAG, "Failed to delete journal segment " + file);
+                    }
+                }
+            });
+        }
+    }
+
+    private static MappedByteBuffer map(File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.setLength(SEGMENT_SIZE);
+            return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_SIZE);
+        } finally {
+            // The mapping stays valid after the file is closed.
+            randomAccessFile.close();
+        }
+    }
+
+    private static long handle(int segmentId, int offset) {
+        return ((long) segmentId << 32) | (offset & 0xFFFFFFFFL);
+    }
+
+    private static int segmentId(long handle) {
+        return (int) (handle >>> 32);
+    }
+
+    private static int offset(long handle) {
+        return (int) handle;
+    }
+
+    private static void replayRecord(ByteBuffer body, Replayer replayer) {
+        byte type = body.get();
+        body.getLong(); // timestamp
+        switch (type) {
+            case TYPE_EVENT: {
+                String eventId = getString(body);
+                Map<String, String> parameters = getParameters(body);
+                boolean timed = body.get() != 0;
+                replayer.replayEvent(eventId, parameters, timed);
+                break;
+            }
+            case TYPE_ERROR: {
+                String errorId = getString(body);
+                String message = getString(body);
+                String errorClass = getString(body);
+                replayer.replayError(errorId, message, errorClass, getParameters(body));
+                break;
+            }
+            case TYPE_PAYMENT: {
+                String productName = getString(body);
+                String productId = getString(body);
+                int quantity = body.getInt();
+                double price = body.getDouble();
+                String currency = getString(body);
+                String transactionId = getString(body);
+                replayer.replayPayment(productName, productId, quantity, price, currency, transactionId,
+                        getParameters(body));
+                break;
+            }
+            default:
+                Log.w(TAG, "Unknown journal record type " + type);
+                break;
+        }
+    }
+
+    private static void putParameters(ByteBuffer body, @Nullable ReadableMap parameters) {
+        int countPosition = body.position();
+        body.putInt(0);
+        if (parameters == null) {
+            return;
+        }
+
+        int count = 0;
+        ReadableMapKeySetIterator iterator = parameters.keySetIterator();
+        while (iterator.hasNextKey()) {
+            String key = iterator.nextKey();
+            if (FlurryParamValues.isNested(parameters.getType(key))) {
+                continue;
+            }
+            putString(body, key);
+            putString(body, FlurryParamValues.get(parameters, key));
+            count++;
+        }
+        body.putInt(countPosition, count);
+    }
+
+    @Nullable
+    private static Map<String, String> getParameters(ByteBuffer body) {
+        int count = body.getInt();
+        if (count == 0) {
+            return null;
+        }
+
+        Map<String, String> parameters = new HashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            parameters.put(getString(body), getString(body));
+        }
+        return parameters;
+    }
+
+    /**
+     * Write a string as [int length][UTF-8 bytes], encoded in place without a temporary byte array.
+     * A null string is written with a length of -1.
+     */
+    private static void putString(ByteBuffer body, @Nullable String value) {
+        if (value == null) {
+            body.putInt(-1);
+            return;
+        }
+
+        int lengthPosition = body.position();
+        body.putInt(0);
+        int start = body.position();
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                body.put((byte) c);
+            } else if (c < 0x800) {
+                body.put((byte) (0xC0 | (c >> 6)));
+                body.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                body.put((byte) (0xF0 | (codePoint >> 18)));
+                body.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                body.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                body.put((byte) (0x80 | (codePoint & 0x3F)));
+            } else {
+                body.put((byte) (0xE0 | (c >> 12)));
+                body.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                body.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+        body.putInt(lengthPosition, body.position() - start);
+    }
+
+    @Nullable
+    private static String getString(ByteBuffer body) {
+        int length = body.getInt();
+        if (length < 0) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        body.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+}
@@ -0,0 +1,342 @@
+/*
+ * Copyright 2019, Oath Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flurry.android.reactnative;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.ReadableMap;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Client side sampling, rate limiting and de-duplication of untimed events.
+ *
+ * Rules are a JSON object keyed by event Id, "*" applies to events without their own rule:
+ * { "eventId": { "sampleRate": 0.1, "ratePerSecond": 2, "burst": 5, "dedupMillis": 1000 } }
+ * sampleRate keeps the given fraction of events, ratePerSecond and burst define a token bucket,
+ * and dedupMillis drops an event identical to one of the last few within the window.
+ */
+final class FlurryEventSampler {
+    private static final String TAG = "FlurryEventSampler";
+
+    static final int ACCEPTED = 0;
+    static final int SAMPLED_OUT = 1;
+    static final int THROTTLED = 2;
+    static final int DEDUPLICATED = 3;
+
+    private static final String DEFAULT_RULE = "*";
+
+    // Events of the default rule beyond this number share one state, so unique Ids cannot grow the map.
+    private static final int MAX_TRACKED_EVENTS = 512;
+    private static final int DEDUP_SLOTS = 8;
+
+    static final class Rule {
+        final double sampleRate;
+        final double ratePerSecond;
+        final double burst;
+        final long dedupMillis;
+
+        Rule(double sampleRate, double ratePerSecond, double burst, long dedupMillis) {
+            this.sampleRate = sampleRate;
+            this.ratePerSecond = ratePerSecond;
+            this.burst = burst;
+            this.dedupMillis = dedupMillis;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Rule)) {
+                return false;
+            }
+            Rule rule = (Rule) o;
+            return Double.compare(sampleRate, rule.sampleRate) == 0
+                    && Double.compare(ratePerSecond, rule.ratePerSecond) == 0
+                    && Double.compare(burst, rule.burst) == 0
+                    && dedupMillis == rule.dedupMillis;
+        }
+
+        @Override
+        public int hashCode() {
+            long bits = Double.doubleToLongBits(sampleRate);
+            bits = 31 * bits + Double.doubleToLongBits(ratePerSecond);
+            bits = 31 * bits + Double.doubleToLongBits(burst);
+            bits = 31 * bits + dedupMillis;
+            return (int) (bits ^ (bits >>> 32));
+        }
+    }
+
+    /**
+     * Sampling state of one event Id, guarded by its own monitor.
+     */
+    private static final class EventState {
+        private Rule mRule;
+        private double mTokens;
+        private long mRefilledAt;
+        private long mRandom;
+
+        private final long[] mSignatures = new long[DEDUP_SLOTS];
+        private final long[] mSeenAt = new long[DEDUP_SLOTS];
+        // The events seen, to tell apart the ones whose signatures collide.
+        private final String[] mEventIds = new String[DEDUP_SLOTS];
+        private final List<Map<String, String>> mParameters = new ArrayList<>(DEDUP_SLOTS);
+        private int mNextSlot = 0;
+
+        long accepted = 0;
+        long sampledOut = 0;
+        long throttled = 0;
+        long deduplicated = 0;
+
+        EventState(long seed) {
+            mRandom = seed != 0 ? seed : 0x9E3779B97F4A7C15L;
+            for (int i = 0; i < DEDUP_SLOTS; i++) {
+                mParameters.add(null);
+            }
+        }
+
+        int decide(Rule rule, String eventId, @Nullable ReadableMap parameters, long signature, long now) {
+            if (mRule != rule) {
+                // Rules set again unchanged keep their token bucket and de-duplication window.
+                if (!rule.equals(mRule)) {
+                    mTokens = rule.burst;
+                    mRefilledAt = now;
+                    mNextSlot = 0;
+                    for (int i = 0; i < DEDUP_SLOTS; i++) {
+                        mSeenAt[i] = Long.MIN_VALUE;
+                        mEventIds[i] = null;
+                        mParameters.set(i, null);
+                    }
+                }
+                mRule = rule;
+            }
+
+            if (rule.dedupMillis > 0) {
+                for (int i = 0; i < DEDUP_SLOTS; i++) {
+                    if (mSignatures[i] == signature && now - mSeenAt[i] < rule.dedupMillis
+                            && eventId.equals(mEventIds[i]) && FlurryHash.matches(mParameters.get(i), parameters, null)) {
+                        deduplicated++;
+                        return DEDUPLICATED;
+                    }
+                }
+                mSignatures[mNextSlot] = signature;
+                mSeenAt[mNextSlot] = now;
+                mEventIds[mNextSlot] = eventId;
+                mParameters.set(mNextSlot, FlurryHash.copy(parameters, null));
+                mNextSlot = (mNextSlot + 1) % DEDUP_SLOTS;
+            }
+
+            if (rule.sampleRate < 1.0 && nextDouble() >= rule.sampleRate) {
+                sampledOut++;
+                return SAMPLED_OUT;
+            }
+
+            if (rule.ratePerSecond > 0) {
+                mTokens = Math.min(rule.burst, mTokens + (now - mRefilledAt) * rule.ratePerSecond / 1000.0);
+                mRefilledAt = now;
+                if (mTokens < 1.0) {
+                    throttled++;
+                    return THROTTLED;
+                }
+                mTokens -= 1.0;
+            }
+
+            accepted++;
+            return ACCEPTED;
+        }
+
+        // xorshift64*, the state is guarded by the monitor so no shared Random is contended.
+        private double nextDouble() {
+            long x = mRandom;
+            x ^= x >>> 12;
+            x ^= x << 25;
+            x ^= x >>> 27;
+            mRandom = x;
+            return ((x * 0x2545F4914F6CDD1DL) >>> 11) * 0x1.0p-53;
+        }
+    }
+
+    private volatile Map<String, Rule> mRules = Collections.emptyMap();
+    private final ConcurrentHashMap<String, EventState> mStates = new ConcurrentHashMap<>();
+
+    private final AtomicLong mSampledOut = new AtomicLong();
+    private final AtomicLong mThrottled = new AtomicLong();
+    private final AtomicLong mDeduplicated = new AtomicLong();
+
+    /**
+     * Replace the rules. An empty string or object removes all rules.
+     *
+     * @return false if the rules cannot be parsed, the current rules are kept.
+     */
+    boolean setRules(@Nullable String json) {
+        if (json == null || json.trim().isEmpty()) {
+            mRules = Collections.emptyMap();
+            return true;
+        }
+
+        Map<String, Rule> rules = new HashMap<>();
+        try {
+            JSONObject root = new JSONObject(json);
+            Iterator<String> eventIds = root.keys();
+            while (eventIds.hasNext()) {
+                String eventId = eventIds.next();
+                JSONObject object = root.optJSONObject(eventId);
+                Rule rule = object != null ? parseRule(object) : null;
+                if (rule == null) {
+                    Log.w(TAG, "Invalid sampling rule for event: " + eventId);
+                    continue;
+                }
+                rules.put(eventId, rule);
+            }
+        } catch (JSONException e) {
+            Log.e(TAG, "Failed to parse sampling rules.", e);
+            return false;
+        }
+
+        mRules = Collections.unmodifiableMap(rules);
+        return true;
+    }
+
+    @Nullable
+    private static Rule parseRule(@NonNull JSONObject object) {
+        double sampleRate = object.optDouble("sampleRate", 1.0);
+        double ratePerSecond = object.optDouble("ratePerSecond", 0.0);
+        double burst = object.optDouble("burst", Math.max(1.0, ratePerSecond));
+        long dedupMillis = object.optLong("dedupMillis", 0);
+        if (!(sampleRate >= 0.0 && sampleRate <= 1.0) || !(ratePerSecond >= 0.0) || !(burst >= 1.0)
+                || dedupMillis < 0) {
+            return null;
+        }
+        return new Rule(sampleRate, ratePerSecond, burst, dedupMillis);
+    }
+
+    /**
+     * Whether the rule of an event reads its parameters, i.e. de-duplicates it.
+     */
+    boolean usesParameters(@NonNull String eventId) {
+        Map<String, Rule> rules = mRules;
+        if (rules.isEmpty()) {
+            return false;
+        }
+        Rule rule = rules.get(eventId);
+        if (rule == null) {
+            rule = rules.get(DEFAULT_RULE);
+        }
+        return rule != null && rule.dedupMillis > 0;
+    }
+
+    /**
+     * Decide whether an event is sent to Flurry.
+     *
+     * @return ACCEPTED, SAMPLED_OUT, THROTTLED or DEDUPLICATED.
+     */
+    int sample(@NonNull String eventId, @Nullable ReadableMap parameters) {
+        Map<String, Rule> rules = mRules;
+        if (rules.isEmpty()) {
+            return ACCEPTED;
+        }
+
+        String stateKey = eventId;
+        boolean defaultRule = false;
+        Rule rule = rules.get(eventId);
+        if (rule == null) {
+            rule = rules.get(DEFAULT_RULE);
+            if (rule == null) {
+                return ACCEPTED;
+            }
+            defaultRule = true;
+        }
+
+        EventState state = mStates.get(stateKey);
+        if (state == null) {
+            if (defaultRule && mStates.size() >= MAX_TRACKED_EVENTS) {
+                stateKey = DEFAULT_RULE;
+                state = mStates.get(stateKey);
+            }
+            if (state == null) {
+                EventState created = new EventState(System.nanoTime() ^ eventId.hashCode());
+                state = mStates.putIfAbsent(stateKey, created);
+                if (state == null) {
+                    state = created;
+                }
+            }
+        }
+
+        long signature = rule.dedupMillis > 0 ? FlurryHash.signature(eventId, parameters, null) : 0;
+        int result;
+        synchronized (state) {
+            result = state.decide(rule, eventId, parameters, signature, SystemClock.elapsedRealtime());
+        }
+
+        switch (result) {
+            case SAMPLED_OUT:
+                mSampledOut.incrementAndGet();
+                break;
+            case THROTTLED:
+                mThrottled.incrementAndGet();
+                break;
+            case DEDUPLICATED:
+                mDeduplicated.incrementAndGet();
+                break;
+            default:
+                break;
+        }
+        return result;
+    }
+
+    long getSampledOutCount() {
+        return mSampledOut.get();
+    }
+
+    long getThrottledCount() {
+        return mThrottled.get();
+    }
+
+    long getDeduplicatedCount() {
+        return mDeduplicated.get();
+    }
+
+    /**
+     * Counters of every tracked event, as { accepted, sampledOut, throttled, deduplicated }.
+     */
+    @NonNull
+    Map<String, long[]> getEventCounts() {
+        Map<String, long[]> counts = new HashMap<>(mStates.size());
+        for (Map.Entry<String, EventState> entry : mStates.entrySet()) {
+            EventState state = entry.getValue();
+            synchronized (state) {
+                counts.put(entry.getKey(), new long[]{
+                        state.accepted, state.sampledOut, state.throttled, state.deduplicated});
+            }
+        }
+        return counts;
+    }
+}
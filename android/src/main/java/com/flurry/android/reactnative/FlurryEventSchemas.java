@@ -0,0 +1,121 @@
+/*
+ * Copyright 2019, Oath Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flurry.android.reactnative;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Interned event Ids and parameter keys, registered once from JS.
+ *
+ * Compact calls send a schema Id and the parameter values by position, the event Id and keys are
+ * taken from the table instead of being sent and decoded as new strings on every call.
+ */
+final class FlurryEventSchemas {
+
+    // Schema Ids are assigned sequentially by the JS module.
+    static final int MAX_SCHEMAS = 4096;
+
+    static final class Schema {
+        final String eventId;
+        final String[] keys;
+
+        Schema(String eventId, String[] keys) {
+            this.eventId = eventId;
+            this.keys = keys;
+        }
+
+        /**
+         * Convert positional values into the pooled map of the calling thread, null values are left out.
+         */
+        @Nullable
+        Map<String, String> toMap(@Nullable ReadableArray values) {
+            if (values == null) {
+                return null;
+            }
+
+            long start = FlurryPluginMetrics.start();
+            FlurryParams params = FlurryParams.obtain();
+            int count = Math.min(keys.length, values.size());
+            for (int i = 0; i < count; i++) {
+                FlurryParamValues.append(params, keys[i], values, i);
+            }
+
+            FlurryPluginMetrics.record(FlurryPluginMetrics.sToMap, start);
+            return params.isEmpty() ? null : params;
+        }
+
+        /**
+         * Convert positional values into a map for the paths that keep the parameters,
+         * e.g. aggregation and the journal.
+         */
+        @NonNull
+        WritableMap toReadableMap(@Nullable ReadableArray values) {
+            WritableMap map = Arguments.createMap();
+            if (values == null) {
+                return map;
+            }
+
+            int count = Math.min(keys.length, values.size());
+            for (int i = 0; i < count; i++) {
+                FlurryParamValues.put(map, keys[i], values, i);
+            }
+            return map;
+        }
+    }
+
+    private volatile Schema[] mSchemas = new Schema[0];
+
+    /**
+     * Register a schema, replacing the one with the same Id.
+     *
+     * @return false if the Id is out of range.
+     */
+    synchronized boolean register(int schemaId, @NonNull String eventId, @NonNull ReadableArray keys) {
+        if (schemaId < 0 || schemaId >= MAX_SCHEMAS) {
+            return false;
+        }
+
+        String[] interned = new String[keys.size()];
+        for (int i = 0; i < interned.length; i++) {
+            interned[i] = keys.getString(i);
+        }
+
+        Schema[] schemas = mSchemas;
+        if (schemaId >= schemas.length) {
+            schemas = Arrays.copyOf(schemas, Math.min(MAX_SCHEMAS, Math.max(schemaId + 1, schemas.length * 2)));
+        } else {
+            schemas = schemas.clone();
+        }
+        schemas[schemaId] = new Schema(eventId, interned);
+        mSchemas = schemas;
+        return true;
+    }
+
+    @Nullable
+    Schema get(int schemaId) {
+        Schema[] schemas = mSchemas;
+        return schemaId >= 0 && schemaId < schemas.length ? schemas[schemaId] : null;
+    }
+}
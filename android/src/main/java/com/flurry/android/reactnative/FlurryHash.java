@@ -0,0 +1,119 @@
+/*
+ * Copyright 2019, Oath Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flurry.android.reactnative;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableMapKeySetIterator;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 64-bit signatures of events, used as primitive keys instead of building a key object per event.
+ * Distinct events can share a signature, a match is confirmed by comparing the parameters.
+ */
+final class FlurryHash {
+
+    private FlurryHash() {
+    }
+
+    /**
+     * Signature of an event Id and its parameters, independent of the parameter order.
+     *
+     * @param excludedKey parameter left out of the signature, or null.
+     */
+    static long signature(@NonNull String eventId, @Nullable ReadableMap parameters, @Nullable String excludedKey) {
+        long signature = mix(eventId.hashCode());
+        if (parameters == null) {
+            return signature;
+        }
+
+        ReadableMapKeySetIterator iterator = parameters.keySetIterator();
+        while (iterator.hasNextKey()) {
+            String key = iterator.nextKey();
+            if (key.equals(excludedKey)) {
+                continue;
+            }
+            String value = FlurryParamValues.get(parameters, key);
+            signature += mix(((long) key.hashCode() << 32) ^ (value != null ? value.hashCode() : 0));
+        }
+        return signature;
+    }
+
+    /**
+     * Copy of the parameters to confirm later signature matches with. Nested values are left out.
+     *
+     * @param excludedKey parameter left out of the copy, or null.
+     */
+    @NonNull
+    static Map<String, String> copy(@Nullable ReadableMap parameters, @Nullable String excludedKey) {
+        Map<String, String> copy = new HashMap<>();
+        if (parameters == null) {
+            return copy;
+        }
+
+        ReadableMapKeySetIterator iterator = parameters.keySetIterator();
+        while (iterator.hasNextKey()) {
+            String key = iterator.nextKey();
+            if (!key.equals(excludedKey) && !FlurryParamValues.isNested(parameters.getType(key))) {
+                copy.put(key, FlurryParamValues.get(parameters, key));
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Whether the parameters are the same as a copy, ignoring nested values and the excluded key as the copy does.
+     */
+    static boolean matches(@NonNull Map<String, String> copy, @Nullable ReadableMap parameters,
+                           @Nullable String excludedKey) {
+        if (parameters == null) {
+            return copy.isEmpty();
+        }
+
+        int count = 0;
+        ReadableMapKeySetIterator iterator = parameters.keySetIterator();
+        while (iterator.hasNextKey()) {
+            String key = iterator.nextKey();
+            if (key.equals(excludedKey) || FlurryParamValues.isNested(parameters.getType(key))) {
+                continue;
+            }
+            String value = FlurryParamValues.get(parameters, key);
+            String copied = copy.get(key);
+            if (copied == null ? value != null || !copy.containsKey(key) : !copied.equals(value)) {
+                return false;
+            }
+            count++;
+        }
+        return count == copy.size();
+    }
+
+    /**
+     * MurmurHash3 64-bit finalizer.
+     */
+    static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -22,12 +22,15 @@ import androidx.annotation.Nullable;
 
 import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.Callback;
+import com.facebook.react.bridge.LifecycleEventListener;
 import com.facebook.react.bridge.Promise;
 import com.facebook.react.bridge.ReactApplicationContext;
 import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.ReadableArray;
 import com.facebook.react.bridge.ReadableMap;
 import com.facebook.react.bridge.ReadableMapKeySetIterator;
+import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.modules.core.DeviceEventManagerModule;
 import com.facebook.react.uimanager.IllegalViewOperationException;
@@ -41,11 +44,20 @@ import com.flurry.android.marketing.FlurryMarketingOptions;
 import com.flurry.android.marketing.messaging.FlurryMessagingListener;
 import com.flurry.android.marketing.messaging.notification.FlurryMessage;
 
-import java.util.HashMap;
+import java.io.File;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import android.os.SystemClock;
 import android.util.Log;
 
-public class FlurryModule extends ReactContextBaseJavaModule {
+public class FlurryModule extends ReactContextBaseJavaModule implements LifecycleEventListener {
     private static final String TAG = "FlurryModule";
 
     private static final String REACT_CLASS = "ReactNativeFlurry";
@@ -57,11 +69,77 @@ public class FlurryModule extends ReactContextBaseJavaModule {
 
     private FlurryAgent.Builder mFlurryAgentBuilder;
 
-    private static ReactApplicationContext sReactApplicationContext = null;
-    private static boolean sEnableMessagingListener = false;
+    // Each React context registers its own JS listeners, SDK callbacks are emitted to the live ones.
+    private static final FlurryReactContexts sReactContexts = new FlurryReactContexts();
+    private final FlurryReactContexts.Registration mRegistration;
 
-    private static RNFlurryConfigListener sRNFlurryConfigListener = null;
-    private static int sRequestConfigListener = 0;
+    private static volatile RNFlurryConfigListener sRNFlurryConfigListener = null;
+
+    private static final FlurryConfigCache sConfigCache = new FlurryConfigCache();
+
+    // Last activated config values, persisted so that cold start reads do not wait for an activation.
+    private static volatile File sConfigSnapshotFile = null;
+    private static final AtomicBoolean sStartupFilesOpened = new AtomicBoolean(false);
+
+    // Config and messaging events are coalesced per frame, and dropped without a JS listener.
+    private static final FlurryEventEmitter sEventEmitter = new FlurryEventEmitter(new ContextSink(sReactContexts));
+
+    // Flurry SDK calls are executed in order by the dispatcher worker thread.
+    private static int sDispatchCapacity = FlurryDispatcher.DEFAULT_CAPACITY;
+    private static FlurryDispatcher.OverflowPolicy sDispatchOverflowPolicy = FlurryDispatcher.OverflowPolicy.DROP_OLDEST;
+    private static volatile FlurryDispatcher sDispatcher = null;
+
+    // Calls made before the agent session has started are held, and replayed once it starts.
+    private static final FlurryPreInitBuffer sPreInitBuffer =
+            new FlurryPreInitBuffer(FlurryPreInitBuffer.DEFAULT_CAPACITY);
+    private static volatile boolean sSessionStarted = false;
+
+    // The agent may also have been built by the application without this plugin's listener. Its session is
+    // then detected by polling on the scheduler thread while calls are held, never on the bridge thread.
+    private static final long SESSION_PROBE_MILLIS = 1000;
+    private static final AtomicBoolean sSessionProbe = new AtomicBoolean(false);
+
+    // Sampling and rate limiting of untimed events, optionally loaded from a Flurry Config key.
+    private static final FlurryEventSampler sEventSampler = new FlurryEventSampler();
+    private static volatile String sEventSamplingConfigKey = null;
+
+    // Registered counter-like events are folded into summary events, flushed periodically and on pause.
+    private static final FlurryEventAggregator sEventAggregator = new FlurryEventAggregator();
+    private static long sAggregationFlushIntervalMillis = FlurryEventAggregator.DEFAULT_FLUSH_INTERVAL_MILLIS;
+    private static ScheduledFuture<?> sAggregationFlushTask = null;
+
+    // Timed events are also measured locally, orphaned timers are ended after a timeout.
+    private static final FlurryTimedEvents sTimedEvents = new FlurryTimedEvents();
+    private static final String DURATION_PARAM = "durationMillis";
+    private static final long TIMED_EVENT_SWEEP_MILLIS = 60000;
+    private static FlurryScheduler.ForegroundTask sTimedEventSweepTask = null;
+
+    // Optionally build the agent on a background thread, after the first frame or a delay.
+    private static boolean sDeferredStart = false;
+    private static long sDeferredStartDelayMillis = 0;
+
+    // Optional journal of logEvent, onError and logPayment calls, replayed after the session has started.
+    private static boolean sEnableEventJournal = false;
+
+    private static volatile FlurryEventJournal sEventJournal = null;
+    private static final AtomicBoolean sEventJournalOpening = new AtomicBoolean(false);
+
+    // Recent payment transaction Ids, persisted so that retried and restored purchases are logged once.
+    private static final FlurryPaymentLedger sPaymentLedger = new FlurryPaymentLedger(FlurryPaymentLedger.DEFAULT_CAPACITY);
+
+    // Event Ids and parameter keys registered from JS, for the compact calls.
+    private static final FlurryEventSchemas sEventSchemas = new FlurryEventSchemas();
+
+    // Buffered work is flushed when the host pauses, waiting up to the budget for it to reach the agent.
+    private static final long DEFAULT_PAUSE_FLUSH_BUDGET_MILLIS = 50;
+    private static volatile long sPauseFlushBudgetMillis = DEFAULT_PAUSE_FLUSH_BUDGET_MILLIS;
+    private static final AtomicLong sPauseFlushes = new AtomicLong();
+    private static final AtomicLong sPauseFlushTimeouts = new AtomicLong();
+    private static volatile long sLastPauseFlushMillis = -1;
+
+    // Breadcrumbs are buffered and only handed to the agent with an error or a crash.
+    private static final FlurryBreadcrumbs sBreadcrumbs = new FlurryBreadcrumbs(FlurryBreadcrumbs.DEFAULT_CAPACITY);
+    private static volatile boolean sCrashReporting = true;
 
     @Override
     public String getName() {
@@ -71,268 +149,1791 @@ public class FlurryModule extends ReactContextBaseJavaModule {
     public FlurryModule(ReactApplicationContext reactContext) {
         super(reactContext);
 
-        sReactApplicationContext = reactContext;
+        mRegistration = sReactContexts.register(reactContext);
+        reactContext.addLifecycleEventListener(this);
+        openStartupFiles(reactContext);
 
         // TODO remove this call after non-Builder APIs removed.
         initBuilder();
     }
 
+    @Override
+    public void onHostResume() {
+        FlurryScheduler.setPaused(false);
+    }
+
+    @Override
+    public void onHostPause() {
+        FlurryScheduler.setPaused(true);
+        flushBufferedWork();
+    }
+
+    @Override
+    public void onHostDestroy() {
+        flushBufferedWork();
+    }
+
+    /**
+     * Hand the buffered work to the agent before the app may be killed in the background: aggregated events,
+     * pending dispatches and breadcrumbs, then sync the journal. Waits up to the pause flush budget.
+     *
+     * The flush goes through the priority lane and runs the pending calls itself, so that the overflow
+     * policy neither drops it nor blocks the UI thread.
+     */
+    private static void flushBufferedWork() {
+        long start = SystemClock.elapsedRealtime();
+
+        final CountDownLatch flushed = new CountDownLatch(1);
+        getDispatcher().dispatchPriority(new Runnable() {
+            @Override
+            public void run() {
+                if (sSessionStarted) {
+                    // Otherwise the aggregates are kept for the next flush.
+                    logAggregates();
+                    getDispatcher().drainPending();
+                    sBreadcrumbs.flush();
+                }
+                FlurryEventJournal journal = sEventJournal;
+                if (journal != null) {
+                    journal.sync();
+                }
+                flushed.countDown();
+            }
+        });
+        sPauseFlushes.incrementAndGet();
+
+        long budgetMillis = sPauseFlushBudgetMillis;
+        if (budgetMillis > 0) {
+            try {
+                if (!flushed.await(budgetMillis, TimeUnit.MILLISECONDS)) {
+                    sPauseFlushTimeouts.incrementAndGet();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        sLastPauseFlushMillis = SystemClock.elapsedRealtime() - start;
+    }
+
+    @Override
+    public void onCatalystInstanceDestroy() {
+        super.onCatalystInstanceDestroy();
+
+        // Stop emitting to this context, e.g. after a reload. The agent and its listeners stay.
+        sReactContexts.unregister(mRegistration);
+        getReactApplicationContext().removeLifecycleEventListener(this);
+    }
+
+    @NonNull
+    private static Object copyPayload(@NonNull Object payload) {
+        if (payload instanceof ReadableMap) {
+            return Arguments.makeNativeMap(((ReadableMap) payload).toHashMap());
+        }
+        if (payload instanceof ReadableArray) {
+            return Arguments.makeNativeArray(((ReadableArray) payload).toArrayList());
+        }
+        return payload;
+    }
+
+    /**
+     * Emits config events to the contexts with a config listener, and messaging events to those with
+     * messaging enabled. Batches are routed on the name of the events they hold.
+     */
+    static final class ContextSink implements FlurryEventEmitter.Sink {
+        private final FlurryReactContexts mContexts;
+
+        ContextSink(@NonNull FlurryReactContexts contexts) {
+            mContexts = contexts;
+        }
+
+        @Override
+        public boolean hasListeners(@NonNull String eventName) {
+            return FLURRY_CONFIG_EVENT.equals(eventName)
+                    ? mContexts.hasConfigListeners()
+                    : mContexts.hasMessagingListeners();
+        }
+
+        @Override
+        public void emit(@NonNull String eventName, @NonNull String jsEventName, @NonNull Object payload) {
+            long start = FlurryPluginMetrics.start();
+            List<ReactApplicationContext> contexts =
+                    mContexts.getListeningContexts(FLURRY_CONFIG_EVENT.equals(eventName));
+            for (int i = 0; i < contexts.size(); i++) {
+                // A native map or array is consumed when sent, the other contexts get a copy.
+                Object data = i == contexts.size() - 1 ? payload : copyPayload(payload);
+                contexts.get(i).getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+                        .emit(jsEventName, data);
+            }
+            FlurryPluginMetrics.record(FlurryPluginMetrics.sEmit, start);
+        }
+
+        @NonNull
+        @Override
+        public WritableArray createArray() {
+            return Arguments.createArray();
+        }
+    }
+
     @ReactMethod
     public void initBuilder() {
+        FlurryPluginMetrics.countCall("initBuilder");
         mFlurryAgentBuilder = new FlurryAgent.Builder();
     }
 
     @ReactMethod
-    public void build(@NonNull String apiKey) {
-        FlurryAgent.addOrigin(ORIGIN_NAME, ORIGIN_VERSION);
+    public void build(@NonNull final String apiKey) {
+        FlurryPluginMetrics.countCall("build");
+        FlurryStartup.onBuildRequested(sDeferredStart);
+        FlurryCallWatchdog.Slot watched = FlurryCallWatchdog.begin("FlurryAgent.addOrigin");
+        try {
+            FlurryAgent.addOrigin(ORIGIN_NAME, ORIGIN_VERSION);
+        } finally {
+            FlurryCallWatchdog.end(watched);
+        }
 
         Context context = getCurrentActivity();
         if (context == null) {
             context = getReactApplicationContext();
         }
-        mFlurryAgentBuilder
-                .withListener(new FlurryAgentListener() {
-                    @Override
-                    public void onSessionStarted() {
-                    }
-                })
-                .build(context, apiKey);
+        final FlurryAgent.Builder flurryAgentBuilder = mFlurryAgentBuilder;
+        if (sDeferredStart) {
+            FlurryStartup.deferBuild(context, sDeferredStartDelayMillis, new FlurryStartup.BuildTask() {
+                @Override
+                public void build(@NonNull Context buildContext) {
+                    buildAgent(flurryAgentBuilder, buildContext, apiKey);
+                }
+            });
+        } else {
+            buildAgent(flurryAgentBuilder, context, apiKey);
+        }
+        FlurryStartup.onBuildReturned();
+    }
+
+    @ReactMethod
+    public void withDeferredStart(boolean deferredStart, int delayMillis) {
+        FlurryPluginMetrics.countCall("withDeferredStart");
+        sDeferredStart = deferredStart;
+        sDeferredStartDelayMillis = Math.max(0, delayMillis);
+    }
+
+    @ReactMethod
+    public void withEventJournal(boolean enableEventJournal) {
+        FlurryPluginMetrics.countCall("withEventJournal");
+        if (enableEventJournal) {
+            openEventJournal(getReactApplicationContext());
+        }
     }
 
     @ReactMethod
     public void withCrashReporting(boolean crashReporting) {
+        FlurryPluginMetrics.countCall("withCrashReporting");
+        sCrashReporting = crashReporting;
         mFlurryAgentBuilder.withCaptureUncaughtExceptions(crashReporting);
     }
 
     @ReactMethod
     public void withContinueSessionMillis(int sessionMillis) {
+        FlurryPluginMetrics.countCall("withContinueSessionMillis");
         mFlurryAgentBuilder.withContinueSessionMillis(sessionMillis);
     }
 
     @ReactMethod
     public void withIncludeBackgroundSessionsInMetrics(boolean includeBackgroundSessionsInMetrics) {
+        FlurryPluginMetrics.countCall("withIncludeBackgroundSessionsInMetrics");
         mFlurryAgentBuilder.withIncludeBackgroundSessionsInMetrics(includeBackgroundSessionsInMetrics);
     }
 
     @ReactMethod
     public void withLogEnabled(boolean enableLog) {
+        FlurryPluginMetrics.countCall("withLogEnabled");
         mFlurryAgentBuilder.withLogEnabled(enableLog);
     }
 
     @ReactMethod
     public void withLogLevel(int logLevel) {
+        FlurryPluginMetrics.countCall("withLogLevel");
         mFlurryAgentBuilder.withLogLevel(logLevel);
     }
 
     @ReactMethod
     public void withMessaging(boolean enableMessaging) {
+        FlurryPluginMetrics.countCall("withMessaging");
         Log.i(TAG, "To enable Flurry Push for Android, please duplicate Builder setup in your MainApplication.java.");
     }
 
-    @ReactMethod
-    public void setAge(int age) {
-        FlurryAgent.setAge(age);
+    @ReactMethod
+    public void setAge(final int age) {
+        FlurryPluginMetrics.countCall("setAge");
+        dispatch("FlurryAgent.setAge", new Runnable() {
+            @Override
+            public void run() {
+                FlurryAgent.setAge(age);
+            }
+        });
+    }
+
+    @ReactMethod
+    public void setGender(@NonNull String gender) {
+        FlurryPluginMetrics.countCall("setGender");
+        byte _gender = Constants.UNKNOWN;
+        if (gender.equalsIgnoreCase("m")) {
+            _gender = Constants.MALE;
+        } else if (gender.equalsIgnoreCase("f")) {
+            _gender = Constants.FEMALE;
+        }
+        final byte flurryGender = _gender;
+        dispatch("FlurryAgent.setGender", new Runnable() {
+            @Override
+            public void run() {
+                FlurryAgent.setGender(flurryGender);
+            }
+        });
+    }
+
+    @ReactMethod
+    public void setReportLocation(final boolean reportLocation) {
+        FlurryPluginMetrics.countCall("setReportLocation");
+        dispatch("FlurryAgent.setReportLocation", new Runnable() {
+            @Override
+            public void run() {
+                FlurryAgent.setReportLocation(reportLocation);
+            }
+        });
+    }
+
+    @ReactMethod
+    public void setSessionOrigin(@NonNull final String originName, @Nullable final String deepLink) {
+        FlurryPluginMetrics.countCall("setSessionOrigin");
+        dispatch("FlurryAgent.setSessionOrigin", new Runnable() {
+            @Override
+            public void run() {
+                FlurryAgent.setSessionOrigin(originName, deepLink);
+            }
+        });
+    }
+
+    @ReactMethod
+    public void setUserId(@NonNull final String userId) {
+        FlurryPluginMetrics.countCall("setUserId");
+        dispatch("FlurryAgent.setUserId", new Runnable() {
+            @Override
+            public void run() {
+                FlurryAgent.setUserId(userId);
+            }
+        });
+    }
+
+    @ReactMethod
+    public void setVersionName(@NonNull final String versionName) {
+        FlurryPluginMetrics.countCall("setVersionName");
+        dispatch("FlurryAgent.setVersionName", new Runnable() {
+            @Override
+            public void run() {
+                FlurryAgent.setVersionName(versionName);
+            }
+        });
+    }
+
+    @ReactMethod
+    public void setIAPReportingEnabled(boolean enableIAP) {
+        FlurryPluginMetrics.countCall("setIAPReportingEnabled");
+        Log.i(TAG, "setIAPReportingEnabled is not supported on Android. Please use logPayment instead.");
+    }
+
+    @ReactMethod
+    public void addOrigin(@NonNull final String originName, @NonNull final String originVersion) {
+        FlurryPluginMetrics.countCall("addOrigin");
+        dispatch("FlurryAgent.addOrigin", new Runnable() {
+            @Override
+            public void run() {
+                FlurryAgent.addOrigin(originName, originVersion);
+            }
+        });
+    }
+
+    @ReactMethod
+    public void addOriginParams(@NonNull final String originName, @NonNull final String originVersion,
+                                final ReadableMap originParameters) {
+        FlurryPluginMetrics.countCall("addOriginParams");
+        dispatch("FlurryAgent.addOrigin", new Runnable() {
+            @Override
+            public void run() {
+                FlurryAgent.addOrigin(originName, originVersion, FlurryParams.detach(toMap(originParameters)));
+            }
+        });
+    }
+
+    @ReactMethod
+    public void addSessionProperty(@NonNull final String name, @Nullable final String value) {
+        FlurryPluginMetrics.countCall("addSessionProperty");
+        dispatch("FlurryAgent.addSessionProperty", new Runnable() {
+            @Override
+            public void run() {
+                FlurryAgent.addSessionProperty(name, value);
+            }
+        });
+    }
+
+    @ReactMethod
+    public void getVersions(Callback errorCallback, Callback successCallback) {
+        FlurryPluginMetrics.countCall("getVersions");
+        try {
+            WritableMap versions = getVersionsMap();
+            successCallback.invoke(versions.getInt("agentVersion"), versions.getString("releaseVersion"),
+                    versions.getString("sessionId"));
+        } catch (IllegalViewOperationException e) {
+            errorCallback.invoke(e.getMessage());
+        }
+    }
+
+    @ReactMethod
+    public void getVersionsPromise(Promise promise) {
+        FlurryPluginMetrics.countCall("getVersionsPromise");
+        try {
+            promise.resolve(getVersionsMap());
+        } catch (IllegalViewOperationException e) {
+            promise.reject("Flurry.getVersionsPromise", e);
+        }
+    }
+
+    /**
+     * The agent and release versions and the session Id, read from the agent with each call watched.
+     */
+    private static WritableMap getVersionsMap() {
+        WritableMap map = Arguments.createMap();
+        FlurryCallWatchdog.Slot watched = FlurryCallWatchdog.begin("FlurryAgent.getAgentVersion");
+        try {
+            map.putInt("agentVersion", FlurryAgent.getAgentVersion());
+        } finally {
+            FlurryCallWatchdog.end(watched);
+        }
+        watched = FlurryCallWatchdog.begin("FlurryAgent.getReleaseVersion");
+        try {
+            map.putString("releaseVersion", FlurryAgent.getReleaseVersion());
+        } finally {
+            FlurryCallWatchdog.end(watched);
+        }
+        watched = FlurryCallWatchdog.begin("FlurryAgent.getSessionId");
+        try {
+            map.putString("sessionId", FlurryAgent.getSessionId());
+        } finally {
+            FlurryCallWatchdog.end(watched);
+        }
+        return map;
+    }
+
+    @ReactMethod
+    public void logBreadcrumb(@NonNull final String crashBreadcrumb) {
+        FlurryPluginMetrics.countCall("logBreadcrumb");
+        sBreadcrumbs.append(crashBreadcrumb);
+    }
+
+    @ReactMethod
+    public void getBreadcrumbStats(Promise promise) {
+        FlurryPluginMetrics.countCall("getBreadcrumbStats");
+        try {
+            WritableMap map = Arguments.createMap();
+            map.putInt("pending", sBreadcrumbs.getPendingCount());
+            map.putDouble("overwritten", sBreadcrumbs.getOverwrittenCount());
+            map.putDouble("flushed", sBreadcrumbs.getFlushedCount());
+            promise.resolve(map);
+        } catch (IllegalViewOperationException e) {
+            promise.reject("Flurry.getBreadcrumbStats", e);
+        }
+    }
+
+    @ReactMethod
+    public void logEvent(@NonNull final String eventId) {
+        FlurryPluginMetrics.countCall("logEvent");
+        if (aggregateEvent(eventId, null) || sEventSampler.sample(eventId, null) != FlurryEventSampler.ACCEPTED) {
+            return;
+        }
+        final long handle = journalEvent(eventId, null, false);
+        dispatch("FlurryAgent.logEvent", new Runnable() {
+            @Override
+            public void run() {
+                FlurryAgent.logEvent(eventId);
+                acknowledge(handle);
+            }
+        });
+    }
+
+    @ReactMethod
+    public void logEventTimed(@NonNull final String eventId, final boolean timed) {
+        FlurryPluginMetrics.countCall("logEventTimed");
+        if (timed) {
+            startTimedEvent(eventId, null);
+        } else if (aggregateEvent(eventId, null)
+                || sEventSampler.sample(eventId, null) != FlurryEventSampler.ACCEPTED) {
+            return;
+        }
+        final long handle = journalEvent(eventId, null, timed);
+        dispatch("FlurryAgent.logEvent", new Runnable() {
+            @Override
+            public void run() {
+                FlurryAgent.logEvent(eventId, timed);
+                acknowledge(handle);
+            }
+        });
+    }
+
+    @ReactMethod
+    public void logEventParams(@NonNull final String eventId, @NonNull final ReadableMap parameters) {
+        FlurryPluginMetrics.countCall("logEventParams");
+        if (aggregateEvent(eventId, parameters)
+                || sEventSampler.sample(eventId, parameters) != FlurryEventSampler.ACCEPTED) {
+            return;
+        }
+        final long handle = journalEvent(eventId, parameters, false);
+        dispatch("FlurryAgent.logEvent", new Runnable() {
+            @Override
+            public void run() {
+                FlurryAgent.logEvent(eventId, FlurryParams.detach(toMap(parameters)));
+                acknowledge(handle);
+            }
+        });
+    }
+
+    @ReactMethod
+    public void logEventParamsTimed(@NonNull final String eventId, @NonNull final ReadableMap parameters,
+                                    final boolean timed) {
+        FlurryPluginMetrics.countCall("logEventParamsTimed");
+        logEventWithParams(eventId, parameters, timed);
+    }
+
+    private static void logEventWithParams(@NonNull final String eventId, @NonNull final ReadableMap parameters,
+                                           final boolean timed) {
+        if (timed) {
+            startTimedEvent(eventId, null);
+        } else if (aggregateEvent(eventId, parameters)
+                || sEventSampler.sample(eventId, parameters) != FlurryEventSampler.ACCEPTED) {
+            return;
+        }
+        final long handle = journalEvent(eventId, parameters, timed);
+        dispatch("FlurryAgent.logEvent", new Runnable() {
+            @Override
+            public void run() {
+                FlurryAgent.logEvent(eventId, FlurryParams.detach(toMap(parameters)), timed);
+                acknowledge(handle);
+            }
+        });
+    }
+
+    /**
+     * Register the event Id and parameter keys of a schema, for the compact calls.
+     */
+    @ReactMethod
+    public void registerEventSchema(int schemaId, @NonNull String eventId, @NonNull ReadableArray paramKeys) {
+        FlurryPluginMetrics.countCall("registerEventSchema");
+        if (!sEventSchemas.register(schemaId, eventId, paramKeys)) {
+            Log.w(TAG, "Event schema Id out of range: " + schemaId);
+        }
+    }
+
+    /**
+     * Log an event of a registered schema, with the parameter values in the order of the schema keys.
+     */
+    @ReactMethod
+    public void logEventCompact(int schemaId, @Nullable final ReadableArray values, final boolean timed) {
+        FlurryPluginMetrics.countCall("logEventCompact");
+        final FlurryEventSchemas.Schema schema = getEventSchema(schemaId);
+        if (schema == null) {
+            return;
+        }
+
+        final String eventId = schema.eventId;
+        if (sEventJournal != null || sEventAggregator.isRegistered(eventId) || sEventSampler.usesParameters(eventId)) {
+            // These paths keep or hash the parameters as a map.
+            logEventWithParams(eventId, schema.toReadableMap(values), timed);
+            return;
+        }
+
+        if (timed) {
+            startTimedEvent(eventId, null);
+        } else if (sEventSampler.sample(eventId, null) != FlurryEventSampler.ACCEPTED) {
+            return;
+        }
+        dispatch("FlurryAgent.logEvent", new Runnable() {
+            @Override
+            public void run() {
+                Map<String, String> params = schema.toMap(values);
+                if (params != null) {
+                    FlurryAgent.logEvent(eventId, FlurryParams.detach(params), timed);
+                } else {
+                    FlurryAgent.logEvent(eventId, timed);
+                }
+            }
+        });
+    }
+
+    @Nullable
+    private static FlurryEventSchemas.Schema getEventSchema(int schemaId) {
+        FlurryEventSchemas.Schema schema = sEventSchemas.get(schemaId);
+        if (schema == null) {
+            Log.w(TAG, "Unknown event schema Id: " + schemaId);
+        }
+        return schema;
+    }
+
+    /**
+     * Log a batch of events in one bridge call. Each element is a map of
+     * { eventId: string, parameters?: map, timed?: boolean }.
+     */
+    @ReactMethod
+    public void logEventsBatch(@NonNull final ReadableArray events) {
+        FlurryPluginMetrics.countCall("logEventsBatch");
+        final boolean[] rejected = filterEvents(events);
+        final long[] handles = journalEvents(events, rejected);
+        dispatch("FlurryAgent.logEvent", new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < events.size(); i++) {
+                    if (rejected != null && rejected[i]) {
+                        continue;
+                    }
+
+                    ReadableMap event = events.getMap(i);
+                    if (event == null || !event.hasKey("eventId")) {
+                        Log.w(TAG, "logEventsBatch: eventId is required, skipping event at index " + i);
+                        continue;
+                    }
+
+                    String eventId = event.getString("eventId");
+                    Map<String, String> parameters = null;
+                    if (event.hasKey("parameters") && !event.isNull("parameters")) {
+                        parameters = toMap(event.getMap("parameters"));
+                    }
+                    boolean timed = event.hasKey("timed") && !event.isNull("timed") && event.getBoolean("timed");
+
+                    if (parameters != null) {
+                        FlurryAgent.logEvent(eventId, FlurryParams.detach(parameters), timed);
+                    } else {
+                        FlurryAgent.logEvent(eventId, timed);
+                    }
+                    if (handles != null) {
+                        acknowledge(handles[i]);
+                    }
+                }
+            }
+        });
+    }
+
+    @ReactMethod
+    public void logPayment(@NonNull final String productName, @NonNull final String productId,
+                           final int quantity, final double price, @NonNull final String currency,
+                           @NonNull final String transactionId, @Nullable final ReadableMap parameters) {
+        FlurryPluginMetrics.countCall("logPayment");
+        if (!sPaymentLedger.reserve(transactionId)) {
+            Log.i(TAG, "Dropping duplicate payment: " + transactionId);
+            return;
+        }
+
+        FlurryEventJournal journal = sEventJournal;
+        final long handle = journal != null
+                ? journal.appendPayment(productName, productId, quantity, price, currency, transactionId, parameters)
+                : FlurryEventJournal.NO_HANDLE;
+        final Runnable delivery = new Runnable() {
+            @Override
+            public void run() {
+                deliverPayment(productName, productId, quantity, price, currency, transactionId,
+                        FlurryParams.detach(toMap(parameters)));
+                acknowledge(handle);
+            }
+        };
+        // Held by the ledger rather than on the worker, until the Ids of the previous runs are loaded.
+        sPaymentLedger.whenOpen(new Runnable() {
+            @Override
+            public void run() {
+                dispatchPriority("FlurryAgent.logPayment", delivery);
+            }
+        });
+    }
+
+    @ReactMethod
+    public void endTimedEvent(@NonNull final String eventId) {
+        FlurryPluginMetrics.countCall("endTimedEvent");
+        sTimedEvents.end(eventId, null);
+        dispatch("FlurryAgent.endTimedEvent", new Runnable() {
+            @Override
+            public void run() {
+                FlurryAgent.endTimedEvent(eventId);
+            }
+        });
+    }
+
+    @ReactMethod
+    public void endTimedEventParams(@NonNull final String eventId, @NonNull final ReadableMap parameters) {
+        FlurryPluginMetrics.countCall("endTimedEventParams");
+        final long duration = sTimedEvents.end(eventId, null);
+        dispatch("FlurryAgent.endTimedEvent", new Runnable() {
+            @Override
+            public void run() {
+                Map<String, String> params = withDuration(toMap(parameters), duration);
+                if (params != null) {
+                    FlurryAgent.endTimedEvent(eventId, FlurryParams.detach(params));
+                } else {
+                    FlurryAgent.endTimedEvent(eventId);
+                }
+            }
+        });
+    }
+
+    @ReactMethod
+    public void endTimedEventCompact(int schemaId, @Nullable final ReadableArray values) {
+        FlurryPluginMetrics.countCall("endTimedEventCompact");
+        final FlurryEventSchemas.Schema schema = getEventSchema(schemaId);
+        if (schema == null) {
+            return;
+        }
+
+        final long duration = sTimedEvents.end(schema.eventId, null);
+        dispatch("FlurryAgent.endTimedEvent", new Runnable() {
+            @Override
+            public void run() {
+                Map<String, String> params = withDuration(schema.toMap(values), duration);
+                if (params != null) {
+                    FlurryAgent.endTimedEvent(schema.eventId, FlurryParams.detach(params));
+                } else {
+                    FlurryAgent.endTimedEvent(schema.eventId);
+                }
+            }
+        });
+    }
+
+    /**
+     * Log a timed event measured per instance, e.g. one timer per screen being loaded.
+     * The agent still tracks one timed event per event Id.
+     */
+    @ReactMethod
+    public void logTimedEventInstance(@NonNull final String eventId, @NonNull final String instanceToken,
+                                      @Nullable final ReadableMap parameters) {
+        FlurryPluginMetrics.countCall("logTimedEventInstance");
+        startTimedEvent(eventId, instanceToken);
+        final long handle = journalEvent(eventId, parameters, true);
+        dispatch("FlurryAgent.logEvent", new Runnable() {
+            @Override
+            public void run() {
+                Map<String, String> params = toMap(parameters);
+                if (params != null) {
+                    FlurryAgent.logEvent(eventId, FlurryParams.detach(params), true);
+                } else {
+                    FlurryAgent.logEvent(eventId, true);
+                }
+                acknowledge(handle);
+            }
+        });
+    }
+
+    @ReactMethod
+    public void endTimedEventInstance(@NonNull final String eventId, @NonNull final String instanceToken,
+                                      @Nullable final ReadableMap parameters) {
+        FlurryPluginMetrics.countCall("endTimedEventInstance");
+        final long duration = sTimedEvents.end(eventId, instanceToken);
+        dispatch("FlurryAgent.endTimedEvent", new Runnable() {
+            @Override
+            public void run() {
+                Map<String, String> params = withDuration(toMap(parameters), duration);
+                if (params != null) {
+                    FlurryAgent.endTimedEvent(eventId, FlurryParams.detach(params));
+                } else {
+                    FlurryAgent.endTimedEvent(eventId);
+                }
+            }
+        });
+    }
+
+    @ReactMethod
+    public void onError(@NonNull final String errorId, @NonNull final String message,
+                        @NonNull final String errorClass) {
+        FlurryPluginMetrics.countCall("onError");
+        final long handle = journalError(errorId, message, errorClass, null);
+        dispatchPriority("FlurryAgent.onError", new Runnable() {
+            @Override
+            public void run() {
+                sBreadcrumbs.flush();
+                FlurryAgent.onError(errorId, message, errorClass);
+                acknowledge(handle);
+            }
+        });
+    }
+
+    @ReactMethod
+    public void onErrorParams(@NonNull final String errorId, @NonNull final String message,
+                              @NonNull final String errorClass, @Nullable final ReadableMap errorParams) {
+        FlurryPluginMetrics.countCall("onErrorParams");
+        final long handle = journalError(errorId, message, errorClass, errorParams);
+        dispatchPriority("FlurryAgent.onError", new Runnable() {
+            @Override
+            public void run() {
+                sBreadcrumbs.flush();
+                FlurryAgent.onError(errorId, message, errorClass, FlurryParams.detach(toMap(errorParams)));
+                acknowledge(handle);
+            }
+        });
+    }
+
+    /**
+     * Report an error of a registered schema, whose event Id is the error Id.
+     */
+    @ReactMethod
+    public void onErrorCompact(int schemaId, @NonNull final String message, @NonNull final String errorClass,
+                               @Nullable final ReadableArray values) {
+        FlurryPluginMetrics.countCall("onErrorCompact");
+        final FlurryEventSchemas.Schema schema = getEventSchema(schemaId);
+        if (schema == null) {
+            return;
+        }
+
+        final String errorId = schema.eventId;
+        final long handle = sEventJournal != null
+                ? journalError(errorId, message, errorClass, schema.toReadableMap(values))
+                : FlurryEventJournal.NO_HANDLE;
+        dispatchPriority("FlurryAgent.onError", new Runnable() {
+            @Override
+            public void run() {
+                sBreadcrumbs.flush();
+                FlurryAgent.onError(errorId, message, errorClass, FlurryParams.detach(schema.toMap(values)));
+                acknowledge(handle);
+            }
+        });
+    }
+
+    @ReactMethod
+    public void onPageView() {
+        FlurryPluginMetrics.countCall("onPageView");
+        dispatch("FlurryAgent.onPageView", new Runnable() {
+            @Override
+            public void run() {
+                FlurryAgent.onPageView();
+            }
+        });
+    }
+
+    @ReactMethod
+    public void setDispatchOverflowPolicy(@NonNull String overflowPolicy) {
+        FlurryPluginMetrics.countCall("setDispatchOverflowPolicy");
+        FlurryDispatcher.OverflowPolicy policy = FlurryDispatcher.OverflowPolicy.fromName(overflowPolicy);
+        if (policy == null) {
+            Log.w(TAG, "Unknown dispatch overflow policy: " + overflowPolicy);
+            return;
+        }
+
+        sDispatchOverflowPolicy = policy;
+        getDispatcher().setOverflowPolicy(policy);
+    }
+
+    @ReactMethod
+    public void setParamValidation(@NonNull String validation) {
+        FlurryPluginMetrics.countCall("setParamValidation");
+        FlurryParamLimits.Mode mode = FlurryParamLimits.Mode.fromName(validation);
+        if (mode == null) {
+            Log.w(TAG, "Unknown parameter validation: " + validation);
+            return;
+        }
+
+        FlurryParamLimits.setMode(mode);
+    }
+
+    @ReactMethod
+    public void getParamValidationStats(Promise promise) {
+        FlurryPluginMetrics.countCall("getParamValidationStats");
+        try {
+            WritableMap map = Arguments.createMap();
+            map.putString("validation", FlurryParamLimits.getMode().getName());
+            map.putDouble("truncatedKeys", FlurryParamLimits.getTruncatedKeyCount());
+            map.putDouble("truncatedValues", FlurryParamLimits.getTruncatedValueCount());
+            map.putDouble("rejectedParams", FlurryParamLimits.getRejectedParamCount());
+            map.putDouble("excessParams", FlurryParamLimits.getExcessParamCount());
+            map.putDouble("nestedParams", FlurryParamValues.getRejectedNestedCount());
+            promise.resolve(map);
+        } catch (IllegalViewOperationException e) {
+            promise.reject("Flurry.getParamValidationStats", e);
+        }
+    }
+
+    @ReactMethod
+    public void setPauseFlushBudget(int budgetMillis) {
+        FlurryPluginMetrics.countCall("setPauseFlushBudget");
+        sPauseFlushBudgetMillis = Math.max(0, budgetMillis);
+    }
+
+    @ReactMethod
+    public void getLifecycleStats(Promise promise) {
+        FlurryPluginMetrics.countCall("getLifecycleStats");
+        try {
+            WritableMap map = Arguments.createMap();
+            map.putBoolean("paused", FlurryScheduler.isPaused());
+            map.putDouble("pauseFlushes", sPauseFlushes.get());
+            map.putDouble("pauseFlushTimeouts", sPauseFlushTimeouts.get());
+            map.putDouble("lastPauseFlushMillis", sLastPauseFlushMillis);
+            promise.resolve(map);
+        } catch (IllegalViewOperationException e) {
+            promise.reject("Flurry.getLifecycleStats", e);
+        }
+    }
+
+    @ReactMethod
+    public void getPaymentStats(Promise promise) {
+        FlurryPluginMetrics.countCall("getPaymentStats");
+        try {
+            WritableMap map = Arguments.createMap();
+            map.putDouble("trackedTransactions", sPaymentLedger.size());
+            map.putDouble("duplicatesDropped", sPaymentLedger.getDuplicateCount());
+            promise.resolve(map);
+        } catch (IllegalViewOperationException e) {
+            promise.reject("Flurry.getPaymentStats", e);
+        }
+    }
+
+    @ReactMethod
+    public void setCallWatchdog(boolean enabled, int thresholdMillis) {
+        FlurryPluginMetrics.countCall("setCallWatchdog");
+        if (thresholdMillis <= 0) {
+            Log.w(TAG, "Invalid call watchdog threshold: " + thresholdMillis);
+            return;
+        }
+        FlurryCallWatchdog.setEnabled(enabled, thresholdMillis);
+    }
+
+    @ReactMethod
+    public void getCallWatchdogStats(Promise promise) {
+        FlurryPluginMetrics.countCall("getCallWatchdogStats");
+        try {
+            WritableMap stalls = Arguments.createMap();
+            for (Map.Entry<String, FlurryCallWatchdog.Stall> entry : FlurryCallWatchdog.getStalls().entrySet()) {
+                FlurryCallWatchdog.Stall stall = entry.getValue();
+                WritableArray stack = Arguments.createArray();
+                for (String frame : stall.stack) {
+                    stack.pushString(frame);
+                }
+
+                WritableMap map = Arguments.createMap();
+                map.putDouble("count", stall.count.get());
+                map.putMap("duration", toLatencyMap(stall.durations));
+                map.putArray("stack", stack);
+                stalls.putMap(entry.getKey(), map);
+            }
+
+            WritableMap map = Arguments.createMap();
+            map.putBoolean("enabled", FlurryCallWatchdog.isEnabled());
+            map.putDouble("thresholdMillis", FlurryCallWatchdog.getThresholdMillis());
+            map.putMap("stalls", stalls);
+            promise.resolve(map);
+        } catch (IllegalViewOperationException e) {
+            promise.reject("Flurry.getCallWatchdogStats", e);
+        }
+    }
+
+    @ReactMethod
+    public void getDispatchStats(Promise promise) {
+        FlurryPluginMetrics.countCall("getDispatchStats");
+        try {
+            FlurryDispatcher dispatcher = getDispatcher();
+            WritableMap map = Arguments.createMap();
+            map.putString("overflowPolicy", dispatcher.getOverflowPolicy().getName());
+            map.putInt("capacity", dispatcher.getCapacity());
+            map.putInt("pending", dispatcher.getPendingCount());
+            map.putDouble("enqueued", dispatcher.getEnqueuedCount());
+            map.putDouble("dropped", dispatcher.getDroppedCount());
+            map.putDouble("drained", dispatcher.getDrainedCount());
+            map.putInt("priorityPending", dispatcher.getPriorityPendingCount());
+            map.putDouble("priorityEnqueued", dispatcher.getPriorityEnqueuedCount());
+            map.putDouble("priorityDrained", dispatcher.getPriorityDrainedCount());
+            map.putInt("priorityPeak", dispatcher.getPriorityPeakCount());
+            map.putDouble("priorityOverCapacity", dispatcher.getPriorityOverCapacityCount());
+            map.putInt("preInitPending", sPreInitBuffer.size());
+            map.putDouble("preInitDropped", sPreInitBuffer.getDroppedCount());
+            promise.resolve(map);
+        } catch (IllegalViewOperationException e) {
+            promise.reject("Flurry.getDispatchStats", e);
+        }
+    }
+
+    @ReactMethod
+    public void getStartupMetrics(Promise promise) {
+        FlurryPluginMetrics.countCall("getStartupMetrics");
+        try {
+            WritableMap map = Arguments.createMap();
+            map.putBoolean("deferred", FlurryStartup.isDeferred());
+            map.putDouble("buildBlockingMillis", FlurryStartup.getBuildBlockingMillis());
+            map.putDouble("deferMillis", FlurryStartup.getDeferMillis());
+            map.putDouble("buildMillis", FlurryStartup.getBuildMillis());
+            map.putDouble("timeToSessionMillis", FlurryStartup.getTimeToSessionMillis());
+            promise.resolve(map);
+        } catch (IllegalViewOperationException e) {
+            promise.reject("Flurry.getStartupMetrics", e);
+        }
+    }
+
+    @ReactMethod
+    public void setEventSamplingRules(@Nullable String rules) {
+        FlurryPluginMetrics.countCall("setEventSamplingRules");
+        sEventSamplingConfigKey = null;
+        sEventSampler.setRules(rules);
+    }
+
+    @ReactMethod
+    public void setEventSamplingConfigKey(@Nullable String key) {
+        FlurryPluginMetrics.countCall("setEventSamplingConfigKey");
+        sEventSamplingConfigKey = key;
+        loadEventSamplingRules();
+    }
+
+    @ReactMethod
+    public void getEventSamplingStats(Promise promise) {
+        FlurryPluginMetrics.countCall("getEventSamplingStats");
+        try {
+            WritableMap events = Arguments.createMap();
+            for (Map.Entry<String, long[]> entry : sEventSampler.getEventCounts().entrySet()) {
+                long[] counts = entry.getValue();
+                WritableMap event = Arguments.createMap();
+                event.putDouble("accepted", counts[0]);
+                event.putDouble("sampledOut", counts[1]);
+                event.putDouble("throttled", counts[2]);
+                event.putDouble("deduplicated", counts[3]);
+                events.putMap(entry.getKey(), event);
+            }
+
+            WritableMap map = Arguments.createMap();
+            map.putDouble("sampledOut", sEventSampler.getSampledOutCount());
+            map.putDouble("throttled", sEventSampler.getThrottledCount());
+            map.putDouble("deduplicated", sEventSampler.getDeduplicatedCount());
+            map.putMap("events", events);
+            promise.resolve(map);
+        } catch (IllegalViewOperationException e) {
+            promise.reject("Flurry.getEventSamplingStats", e);
+        }
+    }
+
+    @ReactMethod
+    public void registerAggregatedEvent(@NonNull String eventId, @Nullable String sumKey) {
+        FlurryPluginMetrics.countCall("registerAggregatedEvent");
+        sEventAggregator.register(eventId, sumKey);
+        scheduleAggregationFlush();
+    }
+
+    @ReactMethod
+    public void unregisterAggregatedEvent(@NonNull String eventId) {
+        FlurryPluginMetrics.countCall("unregisterAggregatedEvent");
+        sEventAggregator.unregister(eventId);
+    }
+
+    @ReactMethod
+    public void setAggregationFlushInterval(int intervalMillis) {
+        FlurryPluginMetrics.countCall("setAggregationFlushInterval");
+        if (intervalMillis < 1000) {
+            Log.w(TAG, "Aggregation flush interval must be at least 1000 ms: " + intervalMillis);
+            return;
+        }
+
+        synchronized (FlurryModule.class) {
+            sAggregationFlushIntervalMillis = intervalMillis;
+            if (sAggregationFlushTask != null) {
+                sAggregationFlushTask.cancel(false);
+                sAggregationFlushTask = null;
+            }
+        }
+        if (sEventAggregator.hasRegisteredEvents()) {
+            scheduleAggregationFlush();
+        }
+    }
+
+    @ReactMethod
+    public void flushAggregatedEvents() {
+        FlurryPluginMetrics.countCall("flushAggregatedEvents");
+        flushEventAggregator();
+    }
+
+    @ReactMethod
+    public void getAggregationStats(Promise promise) {
+        FlurryPluginMetrics.countCall("getAggregationStats");
+        try {
+            WritableMap map = Arguments.createMap();
+            map.putInt("pending", sEventAggregator.getPendingCount());
+            map.putDouble("folded", sEventAggregator.getFoldedCount());
+            map.putDouble("flushed", sEventAggregator.getFlushedCount());
+            promise.resolve(map);
+        } catch (IllegalViewOperationException e) {
+            promise.reject("Flurry.getAggregationStats", e);
+        }
+    }
+
+    @ReactMethod
+    public void setTimedEventTimeout(int timeoutMillis) {
+        FlurryPluginMetrics.countCall("setTimedEventTimeout");
+        if (timeoutMillis <= 0) {
+            Log.w(TAG, "Timed event timeout must be positive: " + timeoutMillis);
+            return;
+        }
+        sTimedEvents.setTimeoutMillis(timeoutMillis);
+    }
+
+    @ReactMethod
+    public void getTimedEventStats(Promise promise) {
+        FlurryPluginMetrics.countCall("getTimedEventStats");
+        try {
+            WritableMap events = Arguments.createMap();
+            for (Map.Entry<String, LatencyHistogram> entry : sTimedEvents.getHistograms().entrySet()) {
+                events.putMap(entry.getKey(), toLatencyMap(entry.getValue()));
+            }
+
+            WritableMap map = Arguments.createMap();
+            map.putInt("active", sTimedEvents.getActiveCount());
+            map.putDouble("expired", sTimedEvents.getExpiredCount());
+            map.putMap("events", events);
+            promise.resolve(map);
+        } catch (IllegalViewOperationException e) {
+            promise.reject("Flurry.getTimedEventStats", e);
+        }
+    }
+
+    @ReactMethod
+    public void setPluginMetricsEnabled(boolean enabled) {
+        FlurryPluginMetrics.countCall("setPluginMetricsEnabled");
+        FlurryPluginMetrics.setEnabled(enabled);
+    }
+
+    @ReactMethod
+    public void setPluginMetricsLogInterval(int intervalMillis) {
+        FlurryPluginMetrics.countCall("setPluginMetricsLogInterval");
+        FlurryPluginMetrics.setLogInterval(intervalMillis);
+    }
+
+    @ReactMethod
+    public void getPluginMetrics(Promise promise) {
+        FlurryPluginMetrics.countCall("getPluginMetrics");
+        try {
+            WritableMap calls = Arguments.createMap();
+            for (Map.Entry<String, Long> entry : FlurryPluginMetrics.getCallCounts().entrySet()) {
+                calls.putDouble(entry.getKey(), entry.getValue());
+            }
+
+            WritableMap map = Arguments.createMap();
+            map.putBoolean("enabled", FlurryPluginMetrics.isEnabled());
+            map.putMap("calls", calls);
+            map.putMap("dispatchWait", toLatencyMap(FlurryPluginMetrics.sDispatchWait));
+            map.putMap("agent", toLatencyMap(FlurryPluginMetrics.sAgent));
+            map.putMap("toMap", toLatencyMap(FlurryPluginMetrics.sToMap));
+            map.putMap("emit", toLatencyMap(FlurryPluginMetrics.sEmit));
+            promise.resolve(map);
+        } catch (IllegalViewOperationException e) {
+            promise.reject("Flurry.getPluginMetrics", e);
+        }
+    }
+
+    @ReactMethod
+    public void getEmitStats(Promise promise) {
+        FlurryPluginMetrics.countCall("getEmitStats");
+        try {
+            WritableMap map = Arguments.createMap();
+            map.putDouble("events", sEventEmitter.getEventCount());
+            map.putDouble("batches", sEventEmitter.getBatchCount());
+            map.putDouble("collapsed", sEventEmitter.getCollapsedCount());
+            map.putDouble("dropped", sEventEmitter.getDroppedCount());
+            promise.resolve(map);
+        } catch (IllegalViewOperationException e) {
+            promise.reject("Flurry.getEmitStats", e);
+        }
+    }
+
+    @ReactMethod
+    public void enableMessagingListener(boolean enable) {
+        FlurryPluginMetrics.countCall("enableMessagingListener");
+        mRegistration.setMessagingEnabled(enable);
+    }
+
+    @ReactMethod
+    public void willHandleMessage(boolean handled) {
+        FlurryPluginMetrics.countCall("willHandleMessage");
+        RNFlurryMessagingListener.notifyCallbackReturn(handled);
+    }
+
+    @ReactMethod
+    public void willHandleMessageId(int messageId, boolean handled) {
+        FlurryPluginMetrics.countCall("willHandleMessageId");
+        RNFlurryMessagingListener.notifyCallbackReturn(messageId, handled);
+    }
+
+    @ReactMethod
+    public void setMessagingReplyTimeout(int timeoutMillis) {
+        FlurryPluginMetrics.countCall("setMessagingReplyTimeout");
+        if (timeoutMillis < 0) {
+            Log.w(TAG, "Messaging reply timeout must not be negative: " + timeoutMillis);
+            return;
+        }
+        RNFlurryMessagingListener.sReplyTimeoutMillis = timeoutMillis;
+    }
+
+    @ReactMethod
+    public void getMessagingMetrics(Promise promise) {
+        FlurryPluginMetrics.countCall("getMessagingMetrics");
+        try {
+            WritableMap map = Arguments.createMap();
+            map.putInt("replyTimeoutMillis", (int) RNFlurryMessagingListener.sReplyTimeoutMillis);
+            map.putInt("pending", RNFlurryMessagingListener.sPendingReplies.size());
+            map.putDouble("replies", RNFlurryMessagingListener.sReplies.get());
+            map.putDouble("timeouts", RNFlurryMessagingListener.sTimeouts.get());
+            map.putDouble("lateReplies", RNFlurryMessagingListener.sLateReplies.get());
+            map.putDouble("replyLatencyTotalMillis",
+                    RNFlurryMessagingListener.sReplyLatencyTotalNanos.get() / 1.0e6);
+            map.putDouble("replyLatencyMaxMillis",
+                    RNFlurryMessagingListener.sReplyLatencyMaxNanos.get() / 1.0e6);
+            promise.resolve(map);
+        } catch (IllegalViewOperationException e) {
+            promise.reject("Flurry.getMessagingMetrics", e);
+        }
+    }
+
+    @ReactMethod
+    public void registerConfigListener() {
+        FlurryPluginMetrics.countCall("registerConfigListener");
+        mRegistration.addConfigListener();
+        ensureConfigListener();
+    }
+
+    @ReactMethod
+    public void unregisterConfigListener() {
+        FlurryPluginMetrics.countCall("unregisterConfigListener");
+        mRegistration.removeConfigListener();
+    }
+
+    @ReactMethod
+    public void fetchConfig() {
+        FlurryPluginMetrics.countCall("fetchConfig");
+        FlurryCallWatchdog.Slot watched = FlurryCallWatchdog.begin("FlurryConfig.fetchConfig");
+        try {
+            FlurryConfig.getInstance().fetchConfig();
+        } finally {
+            FlurryCallWatchdog.end(watched);
+        }
+    }
+
+    @ReactMethod
+    public void activateConfig() {
+        FlurryPluginMetrics.countCall("activateConfig");
+        FlurryCallWatchdog.Slot watched = FlurryCallWatchdog.begin("FlurryConfig.activateConfig");
+        try {
+            FlurryConfig.getInstance().activateConfig();
+        } finally {
+            FlurryCallWatchdog.end(watched);
+        }
+    }
+
+    @ReactMethod
+    public void getConfigString(@Nullable String key, String defaultValue, Promise promise) {
+        FlurryPluginMetrics.countCall("getConfigString");
+        try {
+            WritableMap map = Arguments.createMap();
+            map.putString(key, getConfigValue(FlurryConfig.getInstance(), key, defaultValue));
+            promise.resolve(map);
+        } catch (IllegalViewOperationException e) {
+            promise.reject("Flurry.getConfigString", e);
+        }
+    }
+
+    @ReactMethod
+    public void getConfigStringMap(@Nullable ReadableMap keyAndDefault, Promise promise) {
+        FlurryPluginMetrics.countCall("getConfigStringMap");
+        try {
+            WritableMap map = Arguments.createMap();
+            if (keyAndDefault != null) {
+                // The cache is refreshed by the config listener on activation.
+                ensureConfigListener();
+                putConfigStrings(sConfigCache, FlurryConfig.getInstance(), keyAndDefault, map);
+            }
+            promise.resolve(map);
+        } catch (IllegalViewOperationException e) {
+            promise.reject("Flurry.getConfigString", e);
+        }
+    }
+
+    @ReactMethod
+    public void getConfigSnapshot(Promise promise) {
+        FlurryPluginMetrics.countCall("getConfigSnapshot");
+        try {
+            ensureConfigListener();
+
+            WritableMap values = Arguments.createMap();
+            for (Map.Entry<String, String> entry : sConfigCache.snapshot().entrySet()) {
+                values.putString(entry.getKey(), entry.getValue());
+            }
+            WritableMap map = Arguments.createMap();
+            map.putInt("version", sConfigCache.getVersion());
+            map.putMap("values", values);
+            promise.resolve(map);
+        } catch (IllegalViewOperationException e) {
+            promise.reject("Flurry.getConfigSnapshot", e);
+        }
+    }
+
+    /**
+     * Synchronous config read for the first render, served from the native config cache.
+     */
+    @ReactMethod(isBlockingSynchronousMethod = true)
+    public String getConfigStringSync(@Nullable String key, @Nullable String defaultValue) {
+        FlurryPluginMetrics.countCall("getConfigStringSync");
+        if (key != null) {
+            String value = sConfigCache.snapshot().get(key);
+            if (value != null) {
+                return value;
+            }
+        }
+        return getConfigValue(FlurryConfig.getInstance(), key, defaultValue);
+    }
+
+    /**
+     * Synchronous bulk config read for the first render, served from the native config cache.
+     */
+    @ReactMethod(isBlockingSynchronousMethod = true)
+    public WritableMap getConfigMapSync(@Nullable ReadableMap keyAndDefault) {
+        FlurryPluginMetrics.countCall("getConfigMapSync");
+        WritableMap map = Arguments.createMap();
+        if (keyAndDefault == null) {
+            return map;
+        }
+
+        Map<String, String> snapshot = sConfigCache.snapshot();
+        FlurryConfig flurryConfig = FlurryConfig.getInstance();
+        ReadableMapKeySetIterator iterator = keyAndDefault.keySetIterator();
+        while (iterator.hasNextKey()) {
+            String key = iterator.nextKey();
+            String value = snapshot.get(key);
+            if (value == null) {
+                value = getConfigValue(flurryConfig, key, keyAndDefault.getString(key));
+            }
+            map.putString(key, value);
+        }
+        return map;
+    }
+
+    /**
+     * Resolve every key of keyAndDefault through the config cache into result.
+     */
+    static void putConfigStrings(@NonNull final FlurryConfigCache configCache, @NonNull final FlurryConfig flurryConfig,
+                                 @NonNull final ReadableMap keyAndDefault, @NonNull final WritableMap result) {
+        ReadableMapKeySetIterator iterator = keyAndDefault.keySetIterator();
+        while (iterator.hasNextKey()) {
+            String key = iterator.nextKey();
+            result.putString(key, configCache.getString(flurryConfig, key, keyAndDefault.getString(key)));
+        }
+    }
+
+    private static String getConfigValue(@NonNull final FlurryConfig flurryConfig,
+                                         @Nullable final String key, @Nullable final String defaultValue) {
+        if (key == null) {
+            return flurryConfig.getString(null, defaultValue);
+        }
+
+        // The cache is refreshed by the config listener on activation.
+        ensureConfigListener();
+        return sConfigCache.getString(flurryConfig, key, defaultValue);
+    }
+
+    /**
+     * Fold a registered event into its summary, flushing early when too many keys are pending.
+     *
+     * @return false if the event is not aggregated.
+     */
+    private static boolean aggregateEvent(@NonNull String eventId, @Nullable ReadableMap parameters) {
+        if (!sEventAggregator.fold(eventId, parameters)) {
+            return false;
+        }
+        if (sEventAggregator.shouldFlushEarly()) {
+            flushEventAggregator();
+        }
+        return true;
+    }
+
+    /**
+     * Log the pending summary events. The aggregates are taken when the call is executed, so events
+     * folded while it is queued are included.
+     */
+    private static void flushEventAggregator() {
+        dispatch("FlurryAgent.logEvent", new Runnable() {
+            @Override
+            public void run() {
+                logAggregates();
+            }
+        });
+    }
+
+    private static void logAggregates() {
+        sEventAggregator.flush(new FlurryEventAggregator.Sink() {
+            @Override
+            public void logSummary(@NonNull String eventId, @NonNull Map<String, String> parameters) {
+                FlurryAgent.logEvent(eventId, parameters);
+            }
+        });
+    }
+
+    private static void scheduleAggregationFlush() {
+        synchronized (FlurryModule.class) {
+            if (sAggregationFlushTask != null) {
+                return;
+            }
+            sAggregationFlushTask = FlurryScheduler.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    flushEventAggregator();
+                }
+            }, sAggregationFlushIntervalMillis);
+        }
+    }
+
+    private static void startTimedEvent(@NonNull String eventId, @Nullable String instanceToken) {
+        sTimedEvents.start(eventId, instanceToken);
+        synchronized (FlurryModule.class) {
+            if (sTimedEventSweepTask != null) {
+                return;
+            }
+            sTimedEventSweepTask = FlurryScheduler.scheduleInForeground(new Runnable() {
+                @Override
+                public void run() {
+                    // Only event Ids without a live instance left are ended.
+                    for (final String eventId : sTimedEvents.expire()) {
+                        Log.w(TAG, "Timed event was not ended in time: " + eventId);
+                        dispatch("FlurryAgent.endTimedEvent", new Runnable() {
+                            @Override
+                            public void run() {
+                                FlurryAgent.endTimedEvent(eventId);
+                            }
+                        });
+                    }
+                }
+            }, TIMED_EVENT_SWEEP_MILLIS);
+        }
     }
 
-    @ReactMethod
-    public void setGender(@NonNull String gender) {
-        byte _gender = Constants.UNKNOWN;
-        if (gender.equalsIgnoreCase("m")) {
-            _gender = Constants.MALE;
-        } else if (gender.equalsIgnoreCase("f")) {
-            _gender = Constants.FEMALE;
+    /**
+     * Add the measured duration to the end parameters, unless the caller set it.
+     * Its slot is reserved within the Flurry parameter limit, so that the SDK does not drop it.
+     */
+    @Nullable
+    static Map<String, String> withDuration(@Nullable Map<String, String> parameters, long durationNanos) {
+        if (durationNanos < 0) {
+            return parameters;
+        }
+        if (parameters == null) {
+            parameters = FlurryParams.obtain();
         }
-        FlurryAgent.setGender(_gender);
+        if (!parameters.containsKey(DURATION_PARAM)) {
+            FlurryParamLimits.reserve(parameters, 1);
+            parameters.put(DURATION_PARAM, Long.toString(durationNanos / 1000000L));
+        }
+        return parameters;
     }
 
-    @ReactMethod
-    public void setReportLocation(boolean reportLocation) {
-        FlurryAgent.setReportLocation(reportLocation);
+    @NonNull
+    private static WritableMap toLatencyMap(@NonNull LatencyHistogram histogram) {
+        WritableMap map = Arguments.createMap();
+        map.putDouble("count", histogram.getCount());
+        map.putDouble("meanMillis", histogram.getMean() / 1.0e6);
+        map.putDouble("maxMillis", histogram.getMax() / 1.0e6);
+        map.putDouble("p50Millis", histogram.getValueAtPercentile(50) / 1.0e6);
+        map.putDouble("p90Millis", histogram.getValueAtPercentile(90) / 1.0e6);
+        map.putDouble("p99Millis", histogram.getValueAtPercentile(99) / 1.0e6);
+        return map;
     }
 
-    @ReactMethod
-    public void setSessionOrigin(@NonNull String originName, @Nullable String deepLink) {
-        FlurryAgent.setSessionOrigin(originName, deepLink);
-    }
+    /**
+     * Load the sampling rules from the Flurry Config key, if set. A missing key keeps the current rules.
+     */
+    private static void loadEventSamplingRules() {
+        String key = sEventSamplingConfigKey;
+        if (key == null) {
+            return;
+        }
 
-    @ReactMethod
-    public void setUserId(@NonNull String userId) {
-        FlurryAgent.setUserId(userId);
+        String rules = getConfigValue(FlurryConfig.getInstance(), key, null);
+        if (rules != null) {
+            sEventSampler.setRules(rules);
+        }
     }
 
-    @ReactMethod
-    public void setVersionName(@NonNull String versionName) {
-        FlurryAgent.setVersionName(versionName);
+    private static void ensureConfigListener() {
+        if (sRNFlurryConfigListener == null) {
+            synchronized (FlurryModule.class) {
+                if (sRNFlurryConfigListener == null) {
+                    sRNFlurryConfigListener = new RNFlurryConfigListener();
+                    FlurryConfig.getInstance().registerListener(sRNFlurryConfigListener);
+                }
+            }
+        }
     }
 
-    @ReactMethod
-    public void setIAPReportingEnabled(boolean enableIAP) {
-        Log.i(TAG, "setIAPReportingEnabled is not supported on Android. Please use logPayment instead.");
+    private static FlurryDispatcher getDispatcher() {
+        if (sDispatcher == null) {
+            synchronized (FlurryModule.class) {
+                if (sDispatcher == null) {
+                    sDispatcher = new FlurryDispatcher(sDispatchCapacity, sDispatchOverflowPolicy);
+                }
+            }
+        }
+        return sDispatcher;
     }
 
-    @ReactMethod
-    public void addOrigin(@NonNull String originName, @NonNull String originVersion) {
-        FlurryAgent.addOrigin(originName, originVersion);
+    private static void dispatch(String name, Runnable call) {
+        dispatch(name, call, false);
     }
 
-    @ReactMethod
-    public void addOriginParams(@NonNull String originName, @NonNull String originVersion,
-                                final ReadableMap originParameters) {
-        FlurryAgent.addOrigin(originName, originVersion, toMap(originParameters));
+    /**
+     * Dispatch a call in the high-priority lane, e.g. errors and payments.
+     * Such calls are never dropped and run before the pending regular calls.
+     */
+    private static void dispatchPriority(String name, Runnable call) {
+        dispatch(name, call, true);
     }
 
-    @ReactMethod
-    public void addSessionProperty(@NonNull String name, @Nullable String value) {
-        FlurryAgent.addSessionProperty(name, value);
+    /**
+     * @param name the Flurry SDK method the call runs, reported by the watchdog if its stack does not tell.
+     */
+    private static void dispatch(String name, Runnable call, boolean priority) {
+        if (FlurryPluginMetrics.isEnabled()) {
+            call = FlurryPluginMetrics.instrument(call);
+        }
+        if (FlurryCallWatchdog.isEnabled()) {
+            call = FlurryCallWatchdog.watch(name, call);
+        }
+        if (!sSessionStarted && sPreInitBuffer.offer(call, priority)) {
+            probeSession();
+            return;
+        }
+        if (priority) {
+            getDispatcher().dispatchPriority(call);
+        } else {
+            getDispatcher().dispatch(call);
+        }
     }
 
-    @ReactMethod
-    public void getVersions(Callback errorCallback, Callback successCallback) {
+    /**
+     * Build the agent with this plugin's session listener, either directly or on the scheduler thread
+     * in deferred start mode.
+     */
+    private static void buildAgent(@NonNull FlurryAgent.Builder flurryAgentBuilder,
+                                   @NonNull Context context, @NonNull String apiKey) {
+        FlurryStartup.onBuildStarted();
+        openStartupFiles(context);
+        FlurryCallWatchdog.Slot watched = FlurryCallWatchdog.begin("FlurryAgent.Builder.build");
         try {
-            successCallback.invoke(FlurryAgent.getAgentVersion(), FlurryAgent.getReleaseVersion(),
-                    FlurryAgent.getSessionId());
-        } catch (IllegalViewOperationException e) {
-            errorCallback.invoke(e.getMessage());
+            flurryAgentBuilder
+                    .withListener(new RNFlurryAgentListener())
+                    .build(context, apiKey);
+        } finally {
+            FlurryCallWatchdog.end(watched);
+        }
+        FlurryStartup.onBuildFinished();
+        if (sCrashReporting) {
+            // Installed after the agent, so that the breadcrumbs reach its crash handler.
+            sBreadcrumbs.installCrashHandler();
+        }
+        if (isSessionActive()) {
+            onSessionStarted();
         }
     }
 
-    @ReactMethod
-    public void getVersionsPromise(Promise promise) {
+    private static boolean isSessionActive() {
+        FlurryCallWatchdog.Slot watched = FlurryCallWatchdog.begin("FlurryAgent.isSessionActive");
         try {
-            WritableMap map = Arguments.createMap();
-            map.putInt("agentVersion", FlurryAgent.getAgentVersion());
-            map.putString("releaseVersion", FlurryAgent.getReleaseVersion());
-            map.putString("sessionId", FlurryAgent.getSessionId());
-            promise.resolve(map);
-        } catch (IllegalViewOperationException e) {
-            promise.reject("Flurry.getVersionsPromise", e);
+            return FlurryAgent.isSessionActive();
+        } finally {
+            FlurryCallWatchdog.end(watched);
         }
     }
 
-    @ReactMethod
-    public void logBreadcrumb(@NonNull String crashBreadcrumb) {
-        FlurryAgent.logBreadcrumb(crashBreadcrumb);
-    }
+    /**
+     * Load the files kept by the previous runs on the scheduler thread, once per process, so that neither
+     * the module constructor nor the build on the main thread waits on the disk. Until they are loaded,
+     * config values come from Flurry Config alone and payments are held by the payment ledger.
+     */
+    private static void openStartupFiles(@NonNull Context context) {
+        if (!sStartupFilesOpened.compareAndSet(false, true)) {
+            return;
+        }
 
-    @ReactMethod
-    public void logEvent(@NonNull String eventId) {
-        FlurryAgent.logEvent(eventId);
+        final Context applicationContext = context.getApplicationContext();
+        FlurryScheduler.execute(new Runnable() {
+            @Override
+            public void run() {
+                openConfigSnapshot(applicationContext);
+                openPaymentLedger(applicationContext);
+            }
+        });
     }
 
-    @ReactMethod
-    public void logEventTimed(@NonNull String eventId, boolean timed) {
-        FlurryAgent.logEvent(eventId, timed);
+    /**
+     * Seed the config cache with the values persisted by the previous run, on the scheduler thread.
+     * Config data activated in the meantime takes precedence over the seed.
+     */
+    private static void openConfigSnapshot(@NonNull Context context) {
+        File file = new File(context.getFilesDir(), FlurryConfigSnapshotFile.FILE_NAME);
+        Map<String, String> persisted = FlurryConfigSnapshotFile.read(file);
+        if (persisted != null) {
+            sConfigCache.seed(persisted);
+        }
+        sConfigSnapshotFile = file;
     }
 
-    @ReactMethod
-    public void logEventParams(@NonNull String eventId, @NonNull ReadableMap parameters) {
-        FlurryAgent.logEvent(eventId, toMap(parameters));
+    private static void openPaymentLedger(@NonNull Context context) {
+        sPaymentLedger.open(new File(context.getFilesDir(), FlurryPaymentLedger.FILE_NAME));
     }
 
-    @ReactMethod
-    public void logEventParamsTimed(@NonNull String eventId, @NonNull ReadableMap parameters,
-                                    boolean timed) {
-        FlurryAgent.logEvent(eventId, toMap(parameters), timed);
+    /**
+     * Write the activated values on the scheduler thread, where the snapshot file has been opened
+     * before, even if the values were activated while it was being read.
+     */
+    private static void persistConfigSnapshot() {
+        final Map<String, String> values = sConfigCache.snapshot();
+        FlurryScheduler.execute(new Runnable() {
+            @Override
+            public void run() {
+                File file = sConfigSnapshotFile;
+                if (file != null) {
+                    FlurryConfigSnapshotFile.write(file, values);
+                }
+            }
+        });
     }
 
-    @ReactMethod
-    public void logPayment(@NonNull String productName, @NonNull String productId,
-                           int quantity, double price, @NonNull String currency,
-                           @NonNull String transactionId, @Nullable ReadableMap parameters) {
-        FlurryAgent.logPayment(productName, productId, quantity, price, currency, transactionId,
-                toMap(parameters));
-    }
+    /**
+     * Open the journal on the scheduler thread, once per process, as it maps its files.
+     * Calls made before it is open are not journaled.
+     */
+    private static void openEventJournal(@NonNull Context context) {
+        // The payment ledger is loaded first on the same thread, for the journaled payments to be checked.
+        openStartupFiles(context);
+        if (!sEventJournalOpening.compareAndSet(false, true)) {
+            return;
+        }
 
-    @ReactMethod
-    public void endTimedEvent(@NonNull String eventId) {
-        FlurryAgent.endTimedEvent(eventId);
+        final Context applicationContext = context.getApplicationContext();
+        FlurryScheduler.execute(new Runnable() {
+            @Override
+            public void run() {
+                onEventJournalOpened(FlurryEventJournal.open(applicationContext.getFilesDir()));
+            }
+        });
     }
 
-    @ReactMethod
-    public void endTimedEventParams(@NonNull String eventId, @NonNull ReadableMap parameters) {
-        FlurryAgent.endTimedEvent(eventId, toMap(parameters));
+    /**
+     * Publish the opened journal. Opened after the session has started, it replays the calls left by the
+     * previous runs right away, as onSessionStarted did not see it.
+     */
+    private static synchronized void onEventJournalOpened(@Nullable FlurryEventJournal journal) {
+        if (journal == null) {
+            Log.w(TAG, "Event journal could not be opened, calls are not journaled.");
+            // Let a later withEventJournal call try again.
+            sEventJournalOpening.set(false);
+            return;
+        }
+
+        sEventJournal = journal;
+        if (sSessionStarted) {
+            getDispatcher().dispatchPriority(replayEventJournal(journal));
+        }
     }
 
-    @ReactMethod
-    public void onError(@NonNull String errorId, @NonNull String message, @NonNull String errorClass) {
-        FlurryAgent.onError(errorId, message, errorClass);
+    /**
+     * Replay the journaled calls of the previous runs. Calls of this run are either buffered or dispatched,
+     * they are acknowledged by themselves.
+     */
+    @NonNull
+    private static Runnable replayEventJournal(@NonNull final FlurryEventJournal journal) {
+        final long before = journal.getOpenedAt();
+        return new Runnable() {
+            @Override
+            public void run() {
+                journal.replay(before, new JournalReplayer());
+            }
+        };
     }
 
-    @ReactMethod
-    public void onErrorParams(@NonNull String errorId, @NonNull String message, @NonNull String errorClass,
-                              @Nullable ReadableMap errorParams) {
-        FlurryAgent.onError(errorId, message, errorClass, toMap(errorParams));
+    /**
+     * Poll the agent session from the scheduler thread until it has started, once calls are held.
+     */
+    private static void probeSession() {
+        if (!sSessionProbe.compareAndSet(false, true)) {
+            return;
+        }
+
+        FlurryScheduler.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (sSessionStarted) {
+                    return;
+                }
+                if (isSessionActive()) {
+                    onSessionStarted();
+                } else {
+                    FlurryScheduler.schedule(this, SESSION_PROBE_MILLIS);
+                }
+            }
+        });
     }
 
-    @ReactMethod
-    public void onPageView() {
-        FlurryAgent.onPageView();
+    /**
+     * Replay the journaled calls of previous runs that did not reach the agent, then the calls held
+     * by the pre-init buffer. Subsequent calls are dispatched directly.
+     */
+    private static synchronized void onSessionStarted() {
+        if (sSessionStarted) {
+            return;
+        }
+
+        FlurryEventJournal journal = sEventJournal;
+        sPreInitBuffer.open(getDispatcher(), journal != null ? replayEventJournal(journal) : null);
+        sSessionStarted = true;
+        FlurryStartup.onSessionStarted();
     }
 
-    @ReactMethod
-    public void enableMessagingListener(boolean enable) {
-        sEnableMessagingListener = enable;
+    private static long journalEvent(@NonNull String eventId, @Nullable ReadableMap parameters, boolean timed) {
+        FlurryEventJournal journal = sEventJournal;
+        return journal != null ? journal.appendEvent(eventId, parameters, timed) : FlurryEventJournal.NO_HANDLE;
     }
 
-    @ReactMethod
-    public void willHandleMessage(boolean handled) {
-        RNFlurryMessagingListener.notifyCallbackReturn(handled);
+    private static long journalError(@NonNull String errorId, @Nullable String message, @Nullable String errorClass,
+                                     @Nullable ReadableMap parameters) {
+        FlurryEventJournal journal = sEventJournal;
+        return journal != null
+                ? journal.appendError(errorId, message, errorClass, parameters)
+                : FlurryEventJournal.NO_HANDLE;
     }
 
-    @ReactMethod
-    public void registerConfigListener() {
-        sRequestConfigListener++;
-        if (sRNFlurryConfigListener == null) {
-            sRNFlurryConfigListener = new RNFlurryConfigListener();
-            FlurryConfig.getInstance().registerListener(sRNFlurryConfigListener);
+    /**
+     * Aggregate or sample the untimed events of a batch, and start the timers of the timed ones.
+     *
+     * @return the events that are not sent as is, or null if all are.
+     */
+    @Nullable
+    private static boolean[] filterEvents(@NonNull ReadableArray events) {
+        boolean[] rejected = null;
+        for (int i = 0; i < events.size(); i++) {
+            ReadableMap event = events.getMap(i);
+            if (event == null || !event.hasKey("eventId")) {
+                continue;
+            }
+            if (event.hasKey("timed") && !event.isNull("timed") && event.getBoolean("timed")) {
+                startTimedEvent(event.getString("eventId"), null);
+                continue;
+            }
+
+            ReadableMap parameters = event.hasKey("parameters") && !event.isNull("parameters")
+                    ? event.getMap("parameters") : null;
+            String eventId = event.getString("eventId");
+            if (aggregateEvent(eventId, parameters)
+                    || sEventSampler.sample(eventId, parameters) != FlurryEventSampler.ACCEPTED) {
+                if (rejected == null) {
+                    rejected = new boolean[events.size()];
+                }
+                rejected[i] = true;
+            }
         }
+        return rejected;
     }
 
-    @ReactMethod
-    public void unregisterConfigListener() {
-        sRequestConfigListener--;
-    }
+    @Nullable
+    private static long[] journalEvents(@NonNull ReadableArray events, @Nullable boolean[] rejected) {
+        FlurryEventJournal journal = sEventJournal;
+        if (journal == null) {
+            return null;
+        }
 
-    @ReactMethod
-    public void fetchConfig() {
-        FlurryConfig.getInstance().fetchConfig();
+        long[] handles = new long[events.size()];
+        for (int i = 0; i < handles.length; i++) {
+            ReadableMap event = events.getMap(i);
+            if (event == null || !event.hasKey("eventId") || (rejected != null && rejected[i])) {
+                handles[i] = FlurryEventJournal.NO_HANDLE;
+                continue;
+            }
+            ReadableMap parameters = event.hasKey("parameters") && !event.isNull("parameters")
+                    ? event.getMap("parameters") : null;
+            boolean timed = event.hasKey("timed") && !event.isNull("timed") && event.getBoolean("timed");
+            handles[i] = journal.appendEvent(event.getString("eventId"), parameters, timed);
+        }
+        return handles;
     }
 
-    @ReactMethod
-    public void activateConfig() {
-        FlurryConfig.getInstance().activateConfig();
+    /**
+     * Mark a journaled call as delivered, called once the call has been made to the agent.
+     */
+    private static void acknowledge(long handle) {
+        FlurryEventJournal journal = sEventJournal;
+        if (journal != null) {
+            journal.acknowledge(handle);
+        }
     }
 
-    @ReactMethod
-    public void getConfigString(@Nullable String key, String defaultValue, Promise promise) {
-        try {
-            WritableMap map = Arguments.createMap();
-            map.putString(key, FlurryConfig.getInstance().getString(key, defaultValue));
-            promise.resolve(map);
-        } catch (IllegalViewOperationException e) {
-            promise.reject("Flurry.getConfigString", e);
+    /**
+     * Replays journaled calls directly to the agent, on the dispatcher worker thread.
+     */
+    private static final class JournalReplayer implements FlurryEventJournal.Replayer {
+        @Override
+        public void replayEvent(@NonNull String eventId, @Nullable Map<String, String> parameters,
+                                boolean timed) {
+            if (parameters != null) {
+                FlurryAgent.logEvent(eventId, parameters, timed);
+            } else {
+                FlurryAgent.logEvent(eventId, timed);
+            }
+        }
+
+        @Override
+        public void replayError(@NonNull String errorId, @Nullable String message, @Nullable String errorClass,
+                                @Nullable Map<String, String> parameters) {
+            FlurryAgent.onError(errorId, message, errorClass, parameters);
+        }
+
+        @Override
+        public void replayPayment(@NonNull final String productName, @NonNull final String productId,
+                                  final int quantity, final double price, @NonNull final String currency,
+                                  @NonNull final String transactionId, @Nullable final Map<String, String> parameters) {
+            // Reserve the Id as logPayment does, so that deliverPayment only releases an Id reserved here.
+            if (!sPaymentLedger.reserve(transactionId)) {
+                Log.i(TAG, "Dropping duplicate payment: " + transactionId);
+                return;
+            }
+
+            // The ledger is opened on the scheduler thread before the journal, so the payment is delivered
+            // right away, before the journal record is acknowledged.
+            sPaymentLedger.whenOpen(new Runnable() {
+                @Override
+                public void run() {
+                    deliverPayment(productName, productId, quantity, price, currency, transactionId, parameters);
+                }
+            });
         }
     }
 
-    @ReactMethod
-    public void getConfigStringMap(@Nullable ReadableMap keyAndDefault, Promise promise) {
+    /**
+     * Log a payment whose Id has been reserved, once the persisted transaction Ids are loaded, and commit
+     * its Id to the ledger only if it has been handed to the agent.
+     */
+    private static void deliverPayment(@NonNull String productName, @NonNull String productId, int quantity,
+                                       double price, @NonNull String currency, @NonNull String transactionId,
+                                       @Nullable Map<String, String> parameters) {
+        if (sPaymentLedger.isCommitted(transactionId)) {
+            sPaymentLedger.release(transactionId);
+            Log.i(TAG, "Dropping duplicate payment: " + transactionId);
+            return;
+        }
+
+        boolean delivered = false;
         try {
-            WritableMap map = Arguments.createMap();
-            if (keyAndDefault != null) {
-                ReadableMapKeySetIterator iterator = keyAndDefault.keySetIterator();
-                while (iterator.hasNextKey()) {
-                    String key = iterator.nextKey();
-                    String defaultValue = keyAndDefault.getString(key);
-                    map.putString(key, FlurryConfig.getInstance().getString(key, defaultValue));
-                }
+            FlurryAgent.logPayment(productName, productId, quantity, price, currency, transactionId, parameters);
+            delivered = true;
+        } finally {
+            if (delivered) {
+                sPaymentLedger.commit(transactionId);
+            } else {
+                sPaymentLedger.release(transactionId);
             }
-            promise.resolve(map);
-        } catch (IllegalViewOperationException e) {
-            promise.reject("Flurry.getConfigString", e);
         }
     }
 
-    private static Map<String, String> toMap(final ReadableMap readableMap) {
+    /**
+     * Convert parameters into the pooled map of the calling thread, valid until the next conversion.
+     * The Flurry parameter limits are applied in the same pass, see FlurryParamLimits.
+     */
+    static Map<String, String> toMap(final ReadableMap readableMap) {
         if (readableMap == null) {
             return null;
         }
@@ -342,12 +1943,14 @@ public class FlurryModule extends ReactContextBaseJavaModule {
             return null;
         }
 
-        Map<String, String> result = new HashMap<>();
+        long start = FlurryPluginMetrics.start();
+        FlurryParams result = FlurryParams.obtain();
         while (iterator.hasNextKey()) {
             String key = iterator.nextKey();
-            result.put(key, readableMap.getString(key));
+            FlurryParamValues.append(result, readableMap, key);
         }
 
+        FlurryPluginMetrics.record(FlurryPluginMetrics.sToMap, start);
         return result;
     }
 
@@ -369,6 +1972,7 @@ public class FlurryModule extends ReactContextBaseJavaModule {
          * @return The Builder instance.
          */
         public Builder withCrashReporting(final boolean captureExceptions) {
+            sCrashReporting = captureExceptions;
             mFlurryAgentBuilder.withCaptureUncaughtExceptions(captureExceptions);
             return this;
         }
@@ -480,8 +2084,108 @@ public class FlurryModule extends ReactContextBaseJavaModule {
             return this;
         }
 
+        /**
+         * Configure the queue that executes Flurry calls off the React Native modules thread.
+         * Must be called before the React Native module is created.
+         *
+         * @param capacity       maximum number of pending calls, rounded up to a power of two.
+         * @param overflowPolicy one of "dropOldest" (default), "dropNewest" or "block".
+         * @return The Builder instance.
+         */
+        public Builder withDispatchQueue(final int capacity, @NonNull final String overflowPolicy) {
+            FlurryDispatcher.OverflowPolicy policy = FlurryDispatcher.OverflowPolicy.fromName(overflowPolicy);
+            if (policy == null) {
+                Log.w(TAG, "Unknown dispatch overflow policy: " + overflowPolicy);
+            } else {
+                sDispatchOverflowPolicy = policy;
+            }
+            if (capacity > 0) {
+                sDispatchCapacity = capacity;
+            }
+            return this;
+        }
+
+        /**
+         * True to record logEvent, onError and logPayment calls in an on-disk journal before they are
+         * dispatched. Calls that did not reach Flurry, e.g. lost when the process was killed before the
+         * session started, are replayed on the next start.
+         *
+         * @param enableEventJournal true to enable the journal, false to disable it.
+         * @return The Builder instance.
+         */
+        public Builder withEventJournal(final boolean enableEventJournal) {
+            sEnableEventJournal = enableEventJournal;
+            return this;
+        }
+
+        /**
+         * Set the maximum number of Flurry calls held until the agent session has started.
+         * When the buffer is full, the oldest call is dropped.
+         *
+         * @param capacity maximum number of calls, default is 512.
+         * @return The Builder instance.
+         */
+        public Builder withPreInitBuffer(final int capacity) {
+            if (capacity > 0) {
+                sPreInitBuffer.setCapacity(capacity);
+            }
+            return this;
+        }
+
+        /**
+         * Build the agent on a low priority background thread, after the first activity frame has been
+         * drawn, instead of during Application.onCreate. Flurry calls are held until the session starts.
+         *
+         * @param deferredStart true to defer the agent initialization.
+         * @return The Builder instance.
+         */
+        public Builder withDeferredStart(final boolean deferredStart) {
+            return withDeferredStart(deferredStart, 0);
+        }
+
+        /**
+         * Build the agent on a low priority background thread, after a delay instead of the first frame.
+         *
+         * @param deferredStart true to defer the agent initialization.
+         * @param delayMillis   delay in milliseconds after the build call, 0 to wait for the first frame.
+         * @return The Builder instance.
+         */
+        public Builder withDeferredStart(final boolean deferredStart, final long delayMillis) {
+            sDeferredStart = deferredStart;
+            sDeferredStartDelayMillis = Math.max(0, delayMillis);
+            return this;
+        }
+
         public void build(@NonNull final Context context, @NonNull final String apiKey) {
-            mFlurryAgentBuilder.build(context, apiKey);
+            FlurryStartup.onBuildRequested(sDeferredStart);
+            if (sDeferredStart) {
+                FlurryStartup.deferBuild(context, sDeferredStartDelayMillis, new FlurryStartup.BuildTask() {
+                    @Override
+                    public void build(@NonNull Context buildContext) {
+                        if (sEnableEventJournal) {
+                            openEventJournal(buildContext);
+                        }
+                        buildAgent(mFlurryAgentBuilder, buildContext, apiKey);
+                    }
+                });
+            } else {
+                if (sEnableEventJournal) {
+                    openEventJournal(context);
+                }
+                buildAgent(mFlurryAgentBuilder, context, apiKey);
+            }
+            FlurryStartup.onBuildReturned();
+        }
+    }
+
+    /**
+     * Releases the calls held by the pre-init buffer when the agent session starts.
+     */
+    static class RNFlurryAgentListener implements FlurryAgentListener {
+
+        @Override
+        public void onSessionStarted() {
+            FlurryModule.onSessionStarted();
         }
     }
 
@@ -509,28 +2213,32 @@ public class FlurryModule extends ReactContextBaseJavaModule {
 
         @Override
         public void onFetchSuccess() {
-            if ((sRequestConfigListener > 0) && (sReactApplicationContext != null)) {
+            if (sReactContexts.hasConfigListeners()) {
                 sendEvent(EventType.FetchSuccess);
             }
         }
 
         @Override
         public void onFetchNoChange() {
-            if ((sRequestConfigListener > 0) && (sReactApplicationContext != null)) {
+            if (sReactContexts.hasConfigListeners()) {
                 sendEvent(EventType.FetchNoChange);
             }
         }
 
         @Override
         public void onFetchError(boolean value) {
-            if ((sRequestConfigListener > 0) && (sReactApplicationContext != null)) {
+            if (sReactContexts.hasConfigListeners()) {
                 sendEvent(EventType.FetchError, "isRetrying", value);
             }
         }
 
         @Override
         public void onActivateComplete(boolean value) {
-            if ((sRequestConfigListener > 0) && (sReactApplicationContext != null)) {
+            sConfigCache.activate(FlurryConfig.getInstance());
+            persistConfigSnapshot();
+            loadEventSamplingRules();
+
+            if (sReactContexts.hasConfigListeners()) {
                 sendEvent(EventType.ActivateComplete, "isCache", value);
             }
         }
@@ -542,12 +2250,14 @@ public class FlurryModule extends ReactContextBaseJavaModule {
         private void sendEvent(EventType type, String key, boolean value) {
             WritableMap params = Arguments.createMap();
             params.putString("Type", type.getName());
+            params.putInt("version", sConfigCache.getVersion());
             if (key != null) {
                 params.putBoolean(key, value);
             }
 
-            sReactApplicationContext.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
-                    .emit(FLURRY_CONFIG_EVENT, params);
+            // Repeated states within a frame, e.g. retrying fetch errors, collapse into the latest one.
+            String collapseKey = key != null ? type.getName() + ":" + value : type.getName();
+            sEventEmitter.enqueue(FLURRY_CONFIG_EVENT, collapseKey, params);
         }
 
     }
@@ -556,8 +2266,24 @@ public class FlurryModule extends ReactContextBaseJavaModule {
      * Wrapper Flurry Messaging listenet.
      */
     static class RNFlurryMessagingListener implements FlurryMessagingListener {
-        private volatile static boolean sCallbackReturnValue = false;
-        private volatile static boolean sIsCallbackReturn = false;
+        private static final AtomicInteger sNextMessageId = new AtomicInteger(1);
+        private static final ConcurrentHashMap<Integer, PendingReply> sPendingReplies = new ConcurrentHashMap<>();
+        private volatile static long sReplyTimeoutMillis = 300;
+
+        private static final AtomicLong sReplies = new AtomicLong();
+        private static final AtomicLong sTimeouts = new AtomicLong();
+        private static final AtomicLong sLateReplies = new AtomicLong();
+        private static final AtomicLong sReplyLatencyTotalNanos = new AtomicLong();
+        private static final AtomicLong sReplyLatencyMaxNanos = new AtomicLong();
+
+        /**
+         * JS answer to one messaging event, matched by the message Id.
+         */
+        private static final class PendingReply {
+            final CountDownLatch latch = new CountDownLatch(1);
+            final long startNanos = System.nanoTime();
+            volatile boolean handled = false;
+        }
 
         enum EventType {
             NotificationReceived("NotificationReceived"),
@@ -579,7 +2305,7 @@ public class FlurryModule extends ReactContextBaseJavaModule {
 
         @Override
         public boolean onNotificationReceived(FlurryMessage flurryMessage) {
-            if (sEnableMessagingListener && (sReactApplicationContext != null)) {
+            if (sReactContexts.hasMessagingListeners()) {
                 return sendEvent(EventType.NotificationReceived, flurryMessage, true);
             }
             return false;
@@ -587,7 +2313,7 @@ public class FlurryModule extends ReactContextBaseJavaModule {
 
         @Override
         public boolean onNotificationClicked(FlurryMessage flurryMessage) {
-            if (sEnableMessagingListener && (sReactApplicationContext != null)) {
+            if (sReactContexts.hasMessagingListeners()) {
                 return sendEvent(EventType.NotificationClicked, flurryMessage, true);
             }
             return false;
@@ -595,14 +2321,14 @@ public class FlurryModule extends ReactContextBaseJavaModule {
 
         @Override
         public void onNotificationCancelled(FlurryMessage flurryMessage) {
-            if (sEnableMessagingListener && (sReactApplicationContext != null)) {
+            if (sReactContexts.hasMessagingListeners()) {
                 sendEvent(EventType.NotificationCancelled, flurryMessage, false);
             }
         }
 
         @Override
         public void onTokenRefresh(String token) {
-            if (sEnableMessagingListener && (sReactApplicationContext != null)) {
+            if (sReactContexts.hasMessagingListeners()) {
                 sendEvent(EventType.TokenRefresh, token);
             }
         }
@@ -613,25 +2339,47 @@ public class FlurryModule extends ReactContextBaseJavaModule {
         }
 
         private boolean sendEvent(EventType type, FlurryMessage flurryMessage, boolean waitReturn) {
-            WritableMap params = Arguments.createMap();
+            WritableMap params = toMessageMap(type, flurryMessage);
+            if (!waitReturn) {
+                sEventEmitter.enqueue(FLURRY_MESSAGING_EVENT, null, params);
+                return false;
+            }
+
+            int messageId = sNextMessageId.getAndIncrement();
+            params.putInt("Id", messageId);
+            PendingReply reply = new PendingReply();
+            sPendingReplies.put(messageId, reply);
+
+            // The Flurry SDK thread is blocked until JS replies, do not wait for the next frame.
+            sEventEmitter.emitNow(FLURRY_MESSAGING_EVENT, params);
+            return waitCallbackReturn(messageId, reply);
+        }
+
+        /**
+         * Build the JS event payload of a Flurry message.
+         */
+        static WritableMap toMessageMap(EventType type, FlurryMessage flurryMessage) {
+            return putMessage(Arguments.createMap(), Arguments.createMap(), type, flurryMessage.getTitle(),
+                    flurryMessage.getBody(), flurryMessage.getClickAction(), flurryMessage.getAppData());
+        }
+
+        /**
+         * Fill the JS event payload of a message into params, with its app data in data.
+         */
+        static WritableMap putMessage(WritableMap params, WritableMap data, EventType type, String title,
+                                      String body, String clickAction, @Nullable Map<String, String> appData) {
             params.putString("Type", type.getName());
-            params.putString("Title", flurryMessage.getTitle());
-            params.putString("Body", flurryMessage.getBody());
-            params.putString("ClickAction", flurryMessage.getClickAction());
+            params.putString("Title", title);
+            params.putString("Body", body);
+            params.putString("ClickAction", clickAction);
 
-            Map<String, String> appData = flurryMessage.getAppData();
-            WritableMap data = Arguments.createMap();
-            for (String key : appData.keySet()) {
-                data.putString(key, appData.get(key));
+            if (appData != null) {
+                for (Map.Entry<String, String> entry : appData.entrySet()) {
+                    data.putString(entry.getKey(), entry.getValue());
+                }
             }
             params.putMap("Data", data);
-
-            sCallbackReturnValue = false;
-            sIsCallbackReturn = !waitReturn;
-            sReactApplicationContext.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
-                    .emit(FLURRY_MESSAGING_EVENT, params);
-            waitCallbackReturn();
-            return sCallbackReturnValue;
+            return params;
         }
 
         private void sendEvent(EventType type, String token) {
@@ -639,28 +2387,59 @@ public class FlurryModule extends ReactContextBaseJavaModule {
             params.putString("Type", type.getName());
             params.putString("Token", token);
 
-            sReactApplicationContext.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
-                    .emit(FLURRY_MESSAGING_EVENT, params);
+            sEventEmitter.enqueue(FLURRY_MESSAGING_EVENT, type.getName(), params);
         }
 
-        private static void waitCallbackReturn() {
-            synchronized (sReactApplicationContext) {
-                if (!sIsCallbackReturn) {
-                    try {
-                        sReactApplicationContext.wait(300);
-                    } catch (InterruptedException e) {
-                        Log.e(TAG, "Interrupted Exception!", e);
-                    }
-                }
+        private static boolean waitCallbackReturn(int messageId, PendingReply reply) {
+            boolean replied = false;
+            try {
+                replied = reply.latch.await(sReplyTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Log.e(TAG, "Interrupted Exception!", e);
+                Thread.currentThread().interrupt();
+            }
+            sPendingReplies.remove(messageId);
+
+            if (!replied) {
+                sTimeouts.incrementAndGet();
+                return false;
             }
+
+            long latency = System.nanoTime() - reply.startNanos;
+            sReplies.incrementAndGet();
+            sReplyLatencyTotalNanos.addAndGet(latency);
+            long max;
+            do {
+                max = sReplyLatencyMaxNanos.get();
+            } while (latency > max && !sReplyLatencyMaxNanos.compareAndSet(max, latency));
+            return reply.handled;
+        }
+
+        private static void notifyCallbackReturn(int messageId, boolean returnValue) {
+            PendingReply reply = sPendingReplies.remove(messageId);
+            if (reply == null) {
+                // Already timed out.
+                sLateReplies.incrementAndGet();
+                return;
+            }
+
+            reply.handled = returnValue;
+            reply.latch.countDown();
         }
 
+        /**
+         * Answer without a message Id, applied to the oldest message still waiting.
+         */
         private static void notifyCallbackReturn(boolean returnValue) {
-            synchronized (sReactApplicationContext) {
-                sCallbackReturnValue = returnValue;
-                sIsCallbackReturn = true;
-                sReactApplicationContext.notifyAll();
+            int oldest = Integer.MAX_VALUE;
+            for (Integer messageId : sPendingReplies.keySet()) {
+                oldest = Math.min(oldest, messageId);
+            }
+            if (oldest == Integer.MAX_VALUE) {
+                sLateReplies.incrementAndGet();
+                return;
             }
+            notifyCallbackReturn(oldest, returnValue);
         }
     }
 
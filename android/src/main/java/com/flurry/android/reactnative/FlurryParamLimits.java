@@ -0,0 +1,167 @@
+/*
+ * Copyright 2019, Oath Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flurry.android.reactnative;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Enforces the Flurry parameter limits while the parameter map is built.
+ *
+ * Flurry keeps up to 10 parameters per event, with keys and values of up to 255 characters.
+ * Parameters beyond the count are left out; overlong keys and values are truncated or left out,
+ * depending on the mode. Each check is a length comparison, so it can be left enabled.
+ */
+final class FlurryParamLimits {
+
+    static final int MAX_PARAMS = 10;
+    static final int MAX_LENGTH = 255;
+
+    enum Mode {
+        OFF("off"),
+        TRUNCATE("truncate"),
+        REJECT("reject");
+
+        private final String name;
+
+        Mode(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        @Nullable
+        static Mode fromName(@Nullable String name) {
+            for (Mode mode : values()) {
+                if (mode.name.equalsIgnoreCase(name)) {
+                    return mode;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static volatile Mode sMode = Mode.OFF;
+
+    private static final AtomicLong sTruncatedKeys = new AtomicLong();
+    private static final AtomicLong sTruncatedValues = new AtomicLong();
+    private static final AtomicLong sRejectedParams = new AtomicLong();
+    private static final AtomicLong sExcessParams = new AtomicLong();
+
+    private FlurryParamLimits() {
+    }
+
+    static void setMode(@NonNull Mode mode) {
+        sMode = mode;
+    }
+
+    @NonNull
+    static Mode getMode() {
+        return sMode;
+    }
+
+    static long getTruncatedKeyCount() {
+        return sTruncatedKeys.get();
+    }
+
+    static long getTruncatedValueCount() {
+        return sTruncatedValues.get();
+    }
+
+    static long getRejectedParamCount() {
+        return sRejectedParams.get();
+    }
+
+    static long getExcessParamCount() {
+        return sExcessParams.get();
+    }
+
+    /**
+     * Append a parameter whose key is unique among the appended ones, applying the limits.
+     */
+    static void append(@NonNull FlurryParams params, @NonNull String key, @Nullable String value) {
+        Mode mode = sMode;
+        if (mode == Mode.OFF) {
+            params.append(key, value);
+            return;
+        }
+
+        if (params.size() >= MAX_PARAMS) {
+            sExcessParams.incrementAndGet();
+            return;
+        }
+
+        boolean keyTooLong = key.length() > MAX_LENGTH;
+        boolean valueTooLong = value != null && value.length() > MAX_LENGTH;
+        if (!keyTooLong && !valueTooLong) {
+            params.append(key, value);
+            return;
+        }
+
+        if (mode == Mode.REJECT) {
+            sRejectedParams.incrementAndGet();
+            return;
+        }
+
+        if (valueTooLong) {
+            value = truncate(value);
+            sTruncatedValues.incrementAndGet();
+        }
+        if (keyTooLong) {
+            // Keys sharing the truncated prefix collapse into one parameter.
+            params.put(truncate(key), value);
+            sTruncatedKeys.incrementAndGet();
+        } else {
+            params.append(key, value);
+        }
+    }
+
+    /**
+     * Leave room for parameters added by the plugin, e.g. the count of an aggregated event, whatever the mode.
+     * The excess parameters are left out in key order, so that the same ones are kept every time.
+     */
+    static void reserve(@NonNull Map<String, String> params, int reserved) {
+        int excess = params.size() - (MAX_PARAMS - reserved);
+        if (excess <= 0) {
+            return;
+        }
+
+        List<String> keys = new ArrayList<>(params.keySet());
+        Collections.sort(keys);
+        for (int i = keys.size() - excess; i < keys.size(); i++) {
+            params.remove(keys.get(i));
+        }
+        sExcessParams.addAndGet(excess);
+    }
+
+    private static String truncate(String value) {
+        int end = MAX_LENGTH;
+        if (Character.isHighSurrogate(value.charAt(end - 1))) {
+            // Do not split a surrogate pair.
+            end--;
+        }
+        return value.substring(0, end);
+    }
+}
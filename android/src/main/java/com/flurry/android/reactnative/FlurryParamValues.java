@@ -0,0 +1,171 @@
+/*
+ * Copyright 2019, Oath Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flurry.android.reactnative;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableType;
+import com.facebook.react.bridge.WritableMap;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Converts typed parameter values sent from JS into the strings Flurry expects.
+ *
+ * Strings are passed through, booleans map to constants, and numbers are formatted natively,
+ * integral ones without a fraction. Nested objects and arrays are rejected on their type alone.
+ */
+final class FlurryParamValues {
+
+    // Larger magnitudes are not exact integers in a double.
+    private static final double MAX_INTEGRAL = 9007199254740992.0;
+
+    // JS uses the exponent notation outside of this range of magnitudes.
+    private static final double MIN_PLAIN = 1e-6;
+    private static final double MIN_EXPONENT = 1e21;
+
+    private static final AtomicLong sRejectedNested = new AtomicLong();
+
+    private FlurryParamValues() {
+    }
+
+    static long getRejectedNestedCount() {
+        return sRejectedNested.get();
+    }
+
+    static boolean isNested(@NonNull ReadableType type) {
+        return type == ReadableType.Map || type == ReadableType.Array;
+    }
+
+    /**
+     * Check a value for the paths building the parameters Flurry receives, counting the rejected nested values.
+     *
+     * @return true if the value is nested and must be left out.
+     */
+    static boolean reject(@NonNull ReadableType type) {
+        if (isNested(type)) {
+            sRejectedNested.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Append a parameter to the map being built, leaving out and counting a nested value.
+     */
+    static void append(@NonNull FlurryParams params, @NonNull ReadableMap map, @NonNull String key) {
+        ReadableType type = map.getType(key);
+        if (!reject(type)) {
+            FlurryParamLimits.append(params, key, get(map, key, type));
+        }
+    }
+
+    /**
+     * Append a positional parameter to the map being built, leaving out null values
+     * and counting nested ones.
+     */
+    static void append(@NonNull FlurryParams params, @NonNull String key, @NonNull ReadableArray array, int index) {
+        ReadableType type = array.getType(index);
+        if (type != ReadableType.Null && !reject(type)) {
+            FlurryParamLimits.append(params, key, get(array, index, type));
+        }
+    }
+
+    /**
+     * Copy a positional parameter into a map, keeping its type. Null values are left out, nested ones counted.
+     */
+    static void put(@NonNull WritableMap map, @NonNull String key, @NonNull ReadableArray array, int index) {
+        switch (array.getType(index)) {
+            case String:
+                map.putString(key, array.getString(index));
+                break;
+            case Number:
+                map.putDouble(key, array.getDouble(index));
+                break;
+            case Boolean:
+                map.putBoolean(key, array.getBoolean(index));
+                break;
+            case Map:
+            case Array:
+                sRejectedNested.incrementAndGet();
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * The string value of a parameter, or null for null and nested values.
+     * Used by the paths which only look at the parameters before the map is built, e.g. the journal.
+     */
+    @Nullable
+    static String get(@NonNull ReadableMap map, @NonNull String key) {
+        return get(map, key, map.getType(key));
+    }
+
+    @Nullable
+    private static String get(ReadableMap map, String key, ReadableType type) {
+        switch (type) {
+            case String:
+                return map.getString(key);
+            case Number:
+                return format(map.getDouble(key));
+            case Boolean:
+                return map.getBoolean(key) ? "true" : "false";
+            default:
+                return null;
+        }
+    }
+
+    @Nullable
+    private static String get(ReadableArray array, int index, ReadableType type) {
+        switch (type) {
+            case String:
+                return array.getString(index);
+            case Number:
+                return format(array.getDouble(index));
+            case Boolean:
+                return array.getBoolean(index) ? "true" : "false";
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Format a number as JS does, e.g. 42 and not 42.0, 1e16 as 10000000000000000 and 0.0005 as 0.0005.
+     * Only the exponent notation differs, e.g. 1.0E21 and 1.0E-7 where JS has 1e+21 and 1e-7.
+     */
+    @NonNull
+    static String format(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return Double.toString(value);
+        }
+        double magnitude = Math.abs(value);
+        if (value == Math.rint(value) && magnitude <= MAX_INTEGRAL) {
+            return Long.toString((long) value);
+        }
+        if (magnitude >= MIN_PLAIN && magnitude < MIN_EXPONENT) {
+            // The shortest digits padded with zeros, not the exact binary value.
+            return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+        }
+        return Double.toString(value);
+    }
+}
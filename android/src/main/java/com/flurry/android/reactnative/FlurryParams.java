@@ -0,0 +1,264 @@
+/*
+ * Copyright 2019, Oath Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flurry.android.reactnative;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Event parameters stored in flat key/value arrays.
+ *
+ * One instance is pooled per thread and reused for every conversion, so that reading, limiting and
+ * completing the parameters of an event does not allocate. Nothing guarantees that the Flurry SDK
+ * does not keep the map it is given, so the pooled map never crosses the FlurryAgent boundary:
+ * it is detached into an exactly sized copy first.
+ *
+ * That copy is the one allocation left per call, and the pool is what lets it be sized exactly: a map
+ * built directly from a ReadableMap, which does not tell its size, is either oversized or rehashed.
+ * See the toAgentMap and directMap benchmarks.
+ */
+final class FlurryParams extends AbstractMap<String, String> {
+
+    // Flurry accepts up to 10 parameters per event, grow beyond that only for oversized maps.
+    private static final int INITIAL_CAPACITY = 16;
+
+    private static final ThreadLocal<FlurryParams> sPool = new ThreadLocal<FlurryParams>() {
+        @Override
+        protected FlurryParams initialValue() {
+            return new FlurryParams();
+        }
+    };
+
+    private String[] mKeys = new String[INITIAL_CAPACITY];
+    private String[] mValues = new String[INITIAL_CAPACITY];
+    private int mSize = 0;
+
+    private final EntrySet mEntrySet = new EntrySet();
+
+    /**
+     * Get the cleared parameters map of the current thread.
+     */
+    @NonNull
+    static FlurryParams obtain() {
+        FlurryParams params = sPool.get();
+        params.clear();
+        return params;
+    }
+
+    /**
+     * The parameters to hand to the Flurry SDK: a copy of a pooled map, which the next conversion
+     * on this thread would overwrite, or the given map itself.
+     */
+    @Nullable
+    static Map<String, String> detach(@Nullable Map<String, String> parameters) {
+        if (!(parameters instanceof FlurryParams)) {
+            return parameters;
+        }
+
+        FlurryParams params = (FlurryParams) parameters;
+        // Sized so that the copy never rehashes at the default load factor.
+        Map<String, String> copy = new HashMap<>((params.mSize * 4 + 2) / 3);
+        for (int i = 0; i < params.mSize; i++) {
+            copy.put(params.mKeys[i], params.mValues[i]);
+        }
+        return copy;
+    }
+
+    /**
+     * Append a parameter whose key is known to be unique, e.g. read from a ReadableMap.
+     */
+    void append(String key, String value) {
+        if (mSize == mKeys.length) {
+            int capacity = mSize << 1;
+            mKeys = Arrays.copyOf(mKeys, capacity);
+            mValues = Arrays.copyOf(mValues, capacity);
+        }
+        mKeys[mSize] = key;
+        mValues[mSize] = value;
+        mSize++;
+    }
+
+    private int indexOf(Object key) {
+        for (int i = 0; i < mSize; i++) {
+            String k = mKeys[i];
+            if (k == null ? key == null : k.equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int size() {
+        return mSize;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public String get(Object key) {
+        int index = indexOf(key);
+        return index >= 0 ? mValues[index] : null;
+    }
+
+    @Override
+    public String put(String key, String value) {
+        int index = indexOf(key);
+        if (index >= 0) {
+            String old = mValues[index];
+            mValues[index] = value;
+            return old;
+        }
+        append(key, value);
+        return null;
+    }
+
+    @Override
+    public String remove(Object key) {
+        int index = indexOf(key);
+        if (index < 0) {
+            return null;
+        }
+        String old = mValues[index];
+        removeAt(index);
+        return old;
+    }
+
+    private void removeAt(int index) {
+        int moved = mSize - index - 1;
+        if (moved > 0) {
+            System.arraycopy(mKeys, index + 1, mKeys, index, moved);
+            System.arraycopy(mValues, index + 1, mValues, index, moved);
+        }
+        mSize--;
+        mKeys[mSize] = null;
+        mValues[mSize] = null;
+    }
+
+    @Override
+    public void clear() {
+        // Release the strings of the previous event, the arrays themselves are kept.
+        Arrays.fill(mKeys, 0, mSize, null);
+        Arrays.fill(mValues, 0, mSize, null);
+        mSize = 0;
+    }
+
+    @NonNull
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        return mEntrySet;
+    }
+
+    private final class EntrySet extends AbstractSet<Entry<String, String>> {
+        @NonNull
+        @Override
+        public Iterator<Entry<String, String>> iterator() {
+            return new EntryIterator();
+        }
+
+        @Override
+        public int size() {
+            return mSize;
+        }
+    }
+
+    /**
+     * The iterator is also the entry it returns, like android.util.ArrayMap, one object per iteration.
+     */
+    private final class EntryIterator implements Iterator<Entry<String, String>>, Entry<String, String> {
+        private int mIndex = -1;
+        private boolean mRemoved = false;
+
+        @Override
+        public boolean hasNext() {
+            return mIndex + 1 < mSize;
+        }
+
+        @Override
+        public Entry<String, String> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            mIndex++;
+            mRemoved = false;
+            return this;
+        }
+
+        @Override
+        public void remove() {
+            if (mIndex < 0 || mRemoved) {
+                throw new IllegalStateException();
+            }
+            removeAt(mIndex);
+            mIndex--;
+            mRemoved = true;
+        }
+
+        @Override
+        public String getKey() {
+            return mKeys[mIndex];
+        }
+
+        @Override
+        public String getValue() {
+            return mValues[mIndex];
+        }
+
+        @Override
+        public String setValue(String value) {
+            String old = mValues[mIndex];
+            mValues[mIndex] = value;
+            return old;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+            String key = getKey();
+            String value = getValue();
+            return (key == null ? e.getKey() == null : key.equals(e.getKey()))
+                    && (value == null ? e.getValue() == null : value.equals(e.getValue()));
+        }
+
+        @Override
+        public int hashCode() {
+            String key = getKey();
+            String value = getValue();
+            return (key == null ? 0 : key.hashCode()) ^ (value == null ? 0 : value.hashCode());
+        }
+
+        @Override
+        public String toString() {
+            return getKey() + "=" + getValue();
+        }
+    }
+}
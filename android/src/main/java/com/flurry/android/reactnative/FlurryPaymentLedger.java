@@ -0,0 +1,300 @@
+/*
+ * Copyright 2019, Oath Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flurry.android.reactnative;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import android.util.Log;
+
+/**
+ * The most recent payment transaction Ids, so that retried and restored purchases are logged once.
+ *
+ * An Id is reserved when the payment is requested, which rejects a retry while it is in flight, and
+ * committed once the payment has been handed to the agent, or released if it has not. Payments are held
+ * until the persisted Ids are loaded, so that they are checked against the previous runs too.
+ *
+ * The committed Ids are kept in insertion order and the oldest is evicted beyond the capacity. New Ids are
+ * appended to a file on the scheduler thread, which is rewritten with the live Ids once it holds
+ * twice the capacity, so that the Ids survive restarts.
+ */
+final class FlurryPaymentLedger {
+    private static final String TAG = "FlurryPaymentLedger";
+
+    static final String FILE_NAME = "flurry-rn-payments.ledger";
+    static final int DEFAULT_CAPACITY = 1024;
+
+    private final int mCapacity;
+    private final LinkedHashSet<String> mTransactionIds = new LinkedHashSet<>();
+    private final Set<String> mPending = new HashSet<>();
+    private final AtomicLong mDuplicates = new AtomicLong();
+    private final List<Runnable> mHeld = new ArrayList<>();
+    private boolean mOpened = false;
+
+    private File mFile = null;
+    private int mFileEntries = 0;
+
+    FlurryPaymentLedger(int capacity) {
+        mCapacity = capacity;
+    }
+
+    /**
+     * Load the Ids persisted by the previous runs, once per process, on a background thread.
+     * The Ids committed before are kept as the most recent ones, and written to the file.
+     */
+    void open(@NonNull File file) {
+        List<Runnable> held;
+        try {
+            load(file);
+        } finally {
+            synchronized (this) {
+                mOpened = true;
+                held = new ArrayList<>(mHeld);
+                mHeld.clear();
+            }
+        }
+        for (Runnable payment : held) {
+            payment.run();
+        }
+    }
+
+    /**
+     * Run a payment once the persisted Ids are loaded: right away on the calling thread if they are,
+     * or else on the thread loading them, which must not be held up.
+     */
+    void whenOpen(@NonNull Runnable payment) {
+        synchronized (this) {
+            if (!mOpened) {
+                mHeld.add(payment);
+                return;
+            }
+        }
+        payment.run();
+    }
+
+    private void load(File file) {
+        synchronized (this) {
+            if (mFile != null) {
+                return;
+            }
+        }
+
+        // Read without holding the lock, so that payments are not held up by the disk.
+        List<String> persisted = new ArrayList<>();
+        if (file.isFile()) {
+            DataInputStream input = null;
+            try {
+                input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+                while (true) {
+                    persisted.add(input.readUTF());
+                }
+            } catch (EOFException e) {
+                // End of the file, or an entry cut short by the process being killed.
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to read payment ledger: " + e.getMessage());
+            } finally {
+                close(input);
+            }
+        }
+
+        synchronized (this) {
+            if (mFile != null) {
+                return;
+            }
+            mFile = file;
+
+            List<String> recorded = new ArrayList<>(mTransactionIds);
+            mTransactionIds.clear();
+            for (String transactionId : persisted) {
+                remember(transactionId);
+            }
+            for (String transactionId : recorded) {
+                mTransactionIds.remove(transactionId);
+                remember(transactionId);
+            }
+            // Rewrite the live Ids, dropping the evicted ones and any partial entry before appending.
+            compact();
+        }
+    }
+
+    /**
+     * Reserve a transaction Id for a payment about to be dispatched.
+     *
+     * @return false if the Id has been committed or is reserved, i.e. the payment is a duplicate.
+     */
+    boolean reserve(@Nullable String transactionId) {
+        if (isUnmatched(transactionId)) {
+            return true;
+        }
+
+        synchronized (this) {
+            if (mTransactionIds.contains(transactionId) || !mPending.add(transactionId)) {
+                mDuplicates.incrementAndGet();
+                return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Check a transaction Id before its payment is handed to the agent, e.g. against the Ids loaded
+     * after it was reserved.
+     *
+     * @return true if the Id has already been committed, i.e. the payment is a duplicate.
+     */
+    boolean isCommitted(@Nullable String transactionId) {
+        if (isUnmatched(transactionId)) {
+            return false;
+        }
+
+        synchronized (this) {
+            if (mTransactionIds.contains(transactionId)) {
+                mDuplicates.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Release a reserved transaction Id whose payment has not been handed to the agent, so that it can be retried.
+     */
+    synchronized void release(@Nullable String transactionId) {
+        if (!isUnmatched(transactionId)) {
+            mPending.remove(transactionId);
+        }
+    }
+
+    /**
+     * Commit a transaction Id once its payment has been handed to the agent.
+     */
+    void commit(@Nullable String transactionId) {
+        if (isUnmatched(transactionId)) {
+            return;
+        }
+
+        synchronized (this) {
+            mPending.remove(transactionId);
+            if (mTransactionIds.contains(transactionId)) {
+                return;
+            }
+
+            remember(transactionId);
+            if (mFile != null) {
+                if (++mFileEntries > mCapacity * 2) {
+                    compact();
+                } else {
+                    append(mFile, transactionId);
+                }
+            }
+        }
+    }
+
+    long getDuplicateCount() {
+        return mDuplicates.get();
+    }
+
+    synchronized int size() {
+        return mTransactionIds.size();
+    }
+
+    // Payments without an Id cannot be matched.
+    private static boolean isUnmatched(@Nullable String transactionId) {
+        return transactionId == null || transactionId.isEmpty();
+    }
+
+    private void remember(String transactionId) {
+        mTransactionIds.add(transactionId);
+        if (mTransactionIds.size() > mCapacity) {
+            Iterator<String> oldest = mTransactionIds.iterator();
+            oldest.next();
+            oldest.remove();
+        }
+    }
+
+    private void compact() {
+        final File file = mFile;
+        final List<String> transactionIds = new ArrayList<>(mTransactionIds);
+        mFileEntries = transactionIds.size();
+        FlurryScheduler.execute(new Runnable() {
+            @Override
+            public void run() {
+                File temp = new File(file.getPath() + ".tmp");
+                if (write(temp, transactionIds, false) && !temp.renameTo(file)) {
+                    Log.w(TAG, "Failed to rename " + temp);
+                }
+            }
+        });
+    }
+
+    private static void append(final File file, final String transactionId) {
+        FlurryScheduler.execute(new Runnable() {
+            @Override
+            public void run() {
+                List<String> transactionIds = new ArrayList<>(1);
+                transactionIds.add(transactionId);
+                write(file, transactionIds, true);
+            }
+        });
+    }
+
+    private static boolean write(File file, List<String> transactionIds, boolean append) {
+        DataOutputStream output = null;
+        try {
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, append)));
+            for (String transactionId : transactionIds) {
+                output.writeUTF(transactionId);
+            }
+            output.close();
+            output = null;
+            return true;
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write payment ledger.", e);
+            return false;
+        } finally {
+            close(output);
+        }
+    }
+
+    private static void close(@Nullable Closeable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // Nothing left to do.
+        }
+    }
+}
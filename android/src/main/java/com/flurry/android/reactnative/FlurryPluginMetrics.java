@@ -0,0 +1,159 @@
+/*
+ * Copyright 2019, Oath Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flurry.android.reactnative;
+
+import androidx.annotation.NonNull;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import android.util.Log;
+
+/**
+ * Instrumentation of the plugin itself: bridge call counts, time spent executing Flurry calls,
+ * parameter conversion and event emitting.
+ *
+ * Disabled by default, every hook is then a single volatile read.
+ */
+final class FlurryPluginMetrics {
+    private static final String TAG = "FlurryPluginMetrics";
+
+    private static volatile boolean sEnabled = false;
+
+    private static final ConcurrentHashMap<String, StripedCounter> sCalls = new ConcurrentHashMap<>();
+
+    // Time a dispatched call waited in the queue, and the time it took to execute.
+    static final LatencyHistogram sDispatchWait = new LatencyHistogram();
+    static final LatencyHistogram sAgent = new LatencyHistogram();
+    static final LatencyHistogram sToMap = new LatencyHistogram();
+    static final LatencyHistogram sEmit = new LatencyHistogram();
+
+    private static FlurryScheduler.ForegroundTask sLogTask = null;
+
+    private FlurryPluginMetrics() {
+    }
+
+    static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    static void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+    }
+
+    /**
+     * Count a bridge call.
+     */
+    static void countCall(@NonNull String method) {
+        if (!sEnabled) {
+            return;
+        }
+
+        StripedCounter counter = sCalls.get(method);
+        if (counter == null) {
+            StripedCounter created = new StripedCounter();
+            counter = sCalls.putIfAbsent(method, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        counter.increment();
+    }
+
+    /**
+     * Start time of a measurement, 0 when disabled.
+     */
+    static long start() {
+        return sEnabled ? System.nanoTime() : 0;
+    }
+
+    static void record(@NonNull LatencyHistogram histogram, long start) {
+        if (start != 0) {
+            histogram.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Wrap a dispatched call to measure its queueing and execution time.
+     */
+    @NonNull
+    static Runnable instrument(@NonNull final Runnable call) {
+        final long enqueuedAt = System.nanoTime();
+        return new Runnable() {
+            @Override
+            public void run() {
+                long start = System.nanoTime();
+                sDispatchWait.record(start - enqueuedAt);
+                try {
+                    call.run();
+                } finally {
+                    sAgent.record(System.nanoTime() - start);
+                }
+            }
+        };
+    }
+
+    /**
+     * Call counts by method name, sorted.
+     */
+    @NonNull
+    static Map<String, Long> getCallCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        for (Map.Entry<String, StripedCounter> entry : sCalls.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().sum());
+        }
+        return counts;
+    }
+
+    /**
+     * Periodically write the metrics to logcat, 0 to stop.
+     */
+    static synchronized void setLogInterval(long intervalMillis) {
+        if (sLogTask != null) {
+            sLogTask.cancel();
+            sLogTask = null;
+        }
+        if (intervalMillis <= 0) {
+            return;
+        }
+
+        sLogTask = FlurryScheduler.scheduleInForeground(new Runnable() {
+            @Override
+            public void run() {
+                if (sEnabled) {
+                    log();
+                }
+            }
+        }, intervalMillis);
+    }
+
+    private static void log() {
+        Log.i(TAG, "calls " + getCallCounts());
+        Log.i(TAG, describe("dispatchWait", sDispatchWait));
+        Log.i(TAG, describe("agent", sAgent));
+        Log.i(TAG, describe("toMap", sToMap));
+        Log.i(TAG, describe("emit", sEmit));
+    }
+
+    private static String describe(String name, LatencyHistogram histogram) {
+        return name + " count " + histogram.getCount()
+                + ", mean " + histogram.getMean() / 1000 + " us"
+                + ", p50 " + histogram.getValueAtPercentile(50) / 1000 + " us"
+                + ", p99 " + histogram.getValueAtPercentile(99) / 1000 + " us"
+                + ", max " + histogram.getMax() / 1000 + " us";
+    }
+}
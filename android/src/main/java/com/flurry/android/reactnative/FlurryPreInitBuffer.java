@@ -0,0 +1,169 @@
+/*
+ * Copyright 2019, Oath Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flurry.android.reactnative;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import android.util.Log;
+
+/**
+ * Bounded in-memory buffer for Flurry calls made before the agent session has started.
+ *
+ * Calls keep the time they were made, and are replayed on the dispatcher worker thread once the
+ * session starts: the high-priority calls first through the priority lane, then the regular calls in
+ * order. When the buffer is full, the oldest regular call is dropped; high-priority calls are never dropped.
+ */
+final class FlurryPreInitBuffer {
+    private static final String TAG = "FlurryPreInitBuffer";
+
+    static final int DEFAULT_CAPACITY = 512;
+
+    private static final class BufferedCall {
+        final Runnable call;
+        final boolean priority;
+        final long timestamp;
+
+        BufferedCall(Runnable call, boolean priority, long timestamp) {
+            this.call = call;
+            this.priority = priority;
+            this.timestamp = timestamp;
+        }
+    }
+
+    private final ArrayDeque<BufferedCall> mCalls = new ArrayDeque<>();
+    private int mCapacity;
+    private boolean mOpen = false;
+    private long mDropped = 0;
+
+    FlurryPreInitBuffer(int capacity) {
+        mCapacity = Math.max(1, capacity);
+    }
+
+    synchronized void setCapacity(int capacity) {
+        mCapacity = Math.max(1, capacity);
+        while (mCalls.size() > mCapacity) {
+            if (!dropOldest()) {
+                break;
+            }
+        }
+    }
+
+    synchronized boolean isOpen() {
+        return mOpen;
+    }
+
+    synchronized int size() {
+        return mCalls.size();
+    }
+
+    synchronized long getDroppedCount() {
+        return mDropped;
+    }
+
+    /**
+     * Hold a call until the session starts.
+     *
+     * @return false if the session has already started and the call should be dispatched directly.
+     */
+    synchronized boolean offer(@NonNull Runnable call, boolean priority) {
+        if (mOpen) {
+            return false;
+        }
+
+        if (mCalls.size() >= mCapacity && !dropOldest() && !priority) {
+            // Full of high-priority calls, which are kept over a regular one.
+            mDropped++;
+            return true;
+        }
+        mCalls.addLast(new BufferedCall(call, priority, System.currentTimeMillis()));
+        return true;
+    }
+
+    private boolean dropOldest() {
+        Iterator<BufferedCall> iterator = mCalls.iterator();
+        while (iterator.hasNext()) {
+            if (!iterator.next().priority) {
+                iterator.remove();
+                mDropped++;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Replay the buffered calls, after an optional first call, and let later calls pass through.
+     *
+     * The high-priority calls are replayed one by one through the priority lane. The regular calls
+     * are replayed together in one call, also through the priority lane so that the overflow policy
+     * neither drops them nor blocks the caller, which may be the main thread. The replay is enqueued
+     * while holding the lock, so no new call can overtake it.
+     */
+    synchronized void open(@NonNull FlurryDispatcher dispatcher, @Nullable final Runnable first) {
+        if (mOpen) {
+            return;
+        }
+        mOpen = true;
+
+        int regular = 0;
+        for (BufferedCall buffered : mCalls) {
+            if (buffered.priority) {
+                dispatcher.dispatchPriority(buffered.call);
+            } else {
+                regular++;
+            }
+        }
+
+        final BufferedCall[] calls = new BufferedCall[regular];
+        int index = 0;
+        for (BufferedCall buffered : mCalls) {
+            if (!buffered.priority) {
+                calls[index++] = buffered;
+            }
+        }
+        mCalls.clear();
+        if (first == null && calls.length == 0) {
+            return;
+        }
+
+        dispatcher.dispatchPriority(new Runnable() {
+            @Override
+            public void run() {
+                if (first != null) {
+                    first.run();
+                }
+                if (calls.length == 0) {
+                    return;
+                }
+
+                long now = System.currentTimeMillis();
+                Log.i(TAG, "Replaying " + calls.length + " Flurry calls made before the session started, oldest "
+                        + (now - calls[0].timestamp) + " ms ago.");
+                for (BufferedCall buffered : calls) {
+                    try {
+                        buffered.call.run();
+                    } catch (Throwable t) {
+                        Log.e(TAG, "Flurry call failed.", t);
+                    }
+                }
+            }
+        });
+    }
+}
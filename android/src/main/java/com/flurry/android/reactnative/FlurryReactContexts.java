@@ -0,0 +1,145 @@
+/*
+ * Copyright 2019, Oath Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flurry.android.reactnative;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.ReactApplicationContext;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The React contexts the module has been created for, with the JS listeners of each.
+ *
+ * Contexts are held weakly and unregistered when their instance is destroyed, so that SDK callbacks
+ * never reach a reloaded bridge. Several contexts can be alive at once, e.g. in brownfield apps.
+ */
+final class FlurryReactContexts {
+
+    static final class Registration {
+        private final WeakReference<ReactApplicationContext> mContext;
+        private final AtomicInteger mConfigListeners = new AtomicInteger();
+        private volatile boolean mMessagingEnabled = false;
+
+        Registration(@NonNull ReactApplicationContext context) {
+            mContext = new WeakReference<>(context);
+        }
+
+        @Nullable
+        ReactApplicationContext getContext() {
+            ReactApplicationContext context = mContext.get();
+            return context != null && context.hasActiveCatalystInstance() ? context : null;
+        }
+
+        void addConfigListener() {
+            mConfigListeners.incrementAndGet();
+        }
+
+        void removeConfigListener() {
+            int count;
+            do {
+                count = mConfigListeners.get();
+                if (count <= 0) {
+                    return;
+                }
+            } while (!mConfigListeners.compareAndSet(count, count - 1));
+        }
+
+        boolean hasConfigListeners() {
+            return mConfigListeners.get() > 0;
+        }
+
+        void setMessagingEnabled(boolean enabled) {
+            mMessagingEnabled = enabled;
+        }
+
+        boolean isMessagingEnabled() {
+            return mMessagingEnabled;
+        }
+    }
+
+    private final CopyOnWriteArrayList<Registration> mRegistrations = new CopyOnWriteArrayList<>();
+
+    @NonNull
+    Registration register(@NonNull ReactApplicationContext context) {
+        prune();
+        Registration registration = new Registration(context);
+        mRegistrations.add(registration);
+        return registration;
+    }
+
+    void unregister(@NonNull Registration registration) {
+        mRegistrations.remove(registration);
+    }
+
+    boolean hasConfigListeners() {
+        for (Registration registration : mRegistrations) {
+            if (registration.hasConfigListeners() && registration.getContext() != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    boolean hasMessagingListeners() {
+        for (Registration registration : mRegistrations) {
+            if (registration.isMessagingEnabled() && registration.getContext() != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The live contexts listening to config events, or to messaging events.
+     */
+    @NonNull
+    List<ReactApplicationContext> getListeningContexts(boolean config) {
+        List<ReactApplicationContext> contexts = new ArrayList<>(1);
+        for (Registration registration : mRegistrations) {
+            boolean listening = config ? registration.hasConfigListeners() : registration.isMessagingEnabled();
+            ReactApplicationContext context = listening ? registration.getContext() : null;
+            if (context != null) {
+                contexts.add(context);
+            }
+        }
+        return contexts;
+    }
+
+    /**
+     * Remove the registrations whose context has been garbage collected without being torn down.
+     */
+    private void prune() {
+        List<Registration> cleared = null;
+        for (Registration registration : mRegistrations) {
+            if (registration.mContext.get() == null) {
+                if (cleared == null) {
+                    cleared = new ArrayList<>();
+                }
+                cleared.add(registration);
+            }
+        }
+        if (cleared != null) {
+            mRegistrations.removeAll(cleared);
+        }
+    }
+}
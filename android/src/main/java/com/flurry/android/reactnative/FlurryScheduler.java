@@ -0,0 +1,161 @@
+/*
+ * Copyright 2019, Oath Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flurry.android.reactnative;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import android.os.Process;
+import android.util.Log;
+
+/**
+ * Low priority background thread for the plugin's housekeeping work, e.g. journal syncing and timers.
+ * Flurry SDK calls go through {@link FlurryDispatcher} instead.
+ */
+final class FlurryScheduler {
+    private static final String TAG = "FlurryScheduler";
+
+    private static final ScheduledExecutorService sExecutor;
+
+    // Guarded by FlurryScheduler.class.
+    private static final List<ForegroundTask> sForegroundTasks = new ArrayList<>();
+    private static boolean sPaused = false;
+
+    /**
+     * Periodic task that is only scheduled while the app is in the foreground.
+     */
+    static final class ForegroundTask {
+        private final Runnable mTask;
+        private final long mDelayMillis;
+        private ScheduledFuture<?> mFuture = null;
+
+        private ForegroundTask(Runnable task, long delayMillis) {
+            mTask = task;
+            mDelayMillis = delayMillis;
+        }
+
+        void cancel() {
+            synchronized (FlurryScheduler.class) {
+                sForegroundTasks.remove(this);
+                stop();
+            }
+        }
+
+        private void start() {
+            if (mFuture == null) {
+                mFuture = sExecutor.scheduleWithFixedDelay(mTask, mDelayMillis, mDelayMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private void stop() {
+            if (mFuture != null) {
+                mFuture.cancel(false);
+                mFuture = null;
+            }
+        }
+    }
+
+    static {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(@NonNull final Runnable runnable) {
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+                    }
+                }, "FlurryModule-scheduler");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        sExecutor = executor;
+    }
+
+    private FlurryScheduler() {
+    }
+
+    static void execute(@NonNull Runnable task) {
+        sExecutor.execute(safely(task));
+    }
+
+    static ScheduledFuture<?> schedule(@NonNull Runnable task, long delayMillis) {
+        return sExecutor.schedule(safely(task), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    static ScheduledFuture<?> scheduleWithFixedDelay(@NonNull Runnable task, long delayMillis) {
+        return sExecutor.scheduleWithFixedDelay(safely(task), delayMillis, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Schedule non-critical periodic work, which stops while the app is in the background.
+     */
+    @NonNull
+    static ForegroundTask scheduleInForeground(@NonNull Runnable task, long delayMillis) {
+        ForegroundTask foregroundTask = new ForegroundTask(safely(task), delayMillis);
+        synchronized (FlurryScheduler.class) {
+            sForegroundTasks.add(foregroundTask);
+            if (!sPaused) {
+                foregroundTask.start();
+            }
+        }
+        return foregroundTask;
+    }
+
+    /**
+     * Stop the foreground tasks when the app goes to the background, and restart them when it comes back.
+     */
+    static synchronized void setPaused(boolean paused) {
+        if (sPaused == paused) {
+            return;
+        }
+        sPaused = paused;
+        for (ForegroundTask foregroundTask : sForegroundTasks) {
+            if (paused) {
+                foregroundTask.stop();
+            } else {
+                foregroundTask.start();
+            }
+        }
+    }
+
+    static synchronized boolean isPaused() {
+        return sPaused;
+    }
+
+    // An exception would silently cancel a periodic task, log it and keep running instead.
+    private static Runnable safely(final Runnable task) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    Log.e(TAG, "Background task failed.", t);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright 2019, Oath Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flurry.android.reactnative;
+
+import androidx.annotation.NonNull;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicBoolean;
+import android.app.Activity;
+import android.app.Application;
+import android.content.Context;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.Choreographer;
+
+/**
+ * Deferred agent initialization and startup timing.
+ *
+ * In deferred mode the agent is built on the scheduler thread, after the first activity frame has been
+ * drawn or after a fixed delay. Flurry calls made in the meantime are held by {@link FlurryPreInitBuffer}.
+ */
+final class FlurryStartup {
+    private static final String TAG = "FlurryStartup";
+
+    // Build anyway if no activity frame is drawn in time, e.g. the process was started in the background.
+    private static final long FIRST_FRAME_TIMEOUT_MILLIS = 5000;
+
+    interface BuildTask {
+        void build(@NonNull Context context);
+    }
+
+    // SystemClock.elapsedRealtime() of the startup milestones, -1 until reached.
+    private static long sBuildRequestedAt = -1;
+    private static long sBuildReturnedAt = -1;
+    private static long sBuildStartedAt = -1;
+    private static long sBuildFinishedAt = -1;
+    private static long sSessionStartedAt = -1;
+    private static boolean sDeferred = false;
+
+    private FlurryStartup() {
+    }
+
+    static synchronized void onBuildRequested(boolean deferred) {
+        if (sBuildRequestedAt < 0) {
+            sBuildRequestedAt = SystemClock.elapsedRealtime();
+            sDeferred = deferred;
+        }
+    }
+
+    static synchronized void onBuildReturned() {
+        if (sBuildReturnedAt < 0) {
+            sBuildReturnedAt = SystemClock.elapsedRealtime();
+        }
+    }
+
+    static synchronized void onBuildStarted() {
+        if (sBuildStartedAt < 0) {
+            sBuildStartedAt = SystemClock.elapsedRealtime();
+        }
+    }
+
+    static synchronized void onBuildFinished() {
+        if (sBuildFinishedAt < 0) {
+            sBuildFinishedAt = SystemClock.elapsedRealtime();
+        }
+    }
+
+    static synchronized void onSessionStarted() {
+        if (sSessionStartedAt >= 0 || sBuildRequestedAt < 0) {
+            return;
+        }
+        sSessionStartedAt = SystemClock.elapsedRealtime();
+        Log.i(TAG, "Flurry startup: deferred " + sDeferred
+                + ", build blocked the caller for " + getBuildBlockingMillis() + " ms"
+                + ", agent build took " + getBuildMillis() + " ms"
+                + ", first session after " + getTimeToSessionMillis() + " ms.");
+    }
+
+    static synchronized boolean isDeferred() {
+        return sDeferred;
+    }
+
+    /**
+     * Time the build call blocked its caller, e.g. Application.onCreate.
+     */
+    static synchronized long getBuildBlockingMillis() {
+        return elapsed(sBuildRequestedAt, sBuildReturnedAt);
+    }
+
+    /**
+     * Time from the build call until the agent build started.
+     */
+    static synchronized long getDeferMillis() {
+        return elapsed(sBuildRequestedAt, sBuildStartedAt);
+    }
+
+    /**
+     * Time spent in FlurryAgent.Builder.build.
+     */
+    static synchronized long getBuildMillis() {
+        return elapsed(sBuildStartedAt, sBuildFinishedAt);
+    }
+
+    /**
+     * Time from the build call until the first session started.
+     */
+    static synchronized long getTimeToSessionMillis() {
+        return elapsed(sBuildRequestedAt, sSessionStartedAt);
+    }
+
+    private static long elapsed(long from, long to) {
+        return (from < 0 || to < 0) ? -1 : to - from;
+    }
+
+    /**
+     * Run the build task on the scheduler thread. Called on the main thread without a delay, e.g. from
+     * Application.onCreate, it waits for the first activity frame; otherwise it runs after the delay.
+     */
+    static void deferBuild(@NonNull Context context, long delayMillis, @NonNull BuildTask task) {
+        DeferredBuild deferredBuild = new DeferredBuild(context, task);
+
+        Context applicationContext = context.getApplicationContext();
+        boolean mainThread = Looper.myLooper() == Looper.getMainLooper();
+        if (applicationContext instanceof Application) {
+            deferredBuild.register((Application) applicationContext, mainThread && delayMillis <= 0);
+        }
+
+        if (deferredBuild.isWaitingForFrame()) {
+            FlurryScheduler.schedule(deferredBuild, FIRST_FRAME_TIMEOUT_MILLIS);
+        } else {
+            FlurryScheduler.schedule(deferredBuild, Math.max(0, delayMillis));
+        }
+    }
+
+    /**
+     * Tracks the resumed activity, so that the agent is built with it as in FlurryModule.build,
+     * and requests the build once the first activity frame has been drawn.
+     */
+    private static final class DeferredBuild implements Runnable, Choreographer.FrameCallback,
+            Application.ActivityLifecycleCallbacks {
+        private final Context mContext;
+        private final BuildTask mTask;
+        private final AtomicBoolean mStarted = new AtomicBoolean(false);
+
+        private Application mApplication = null;
+        private volatile boolean mWaitForFrame = false;
+        private boolean mFrameRequested = false;
+        private volatile WeakReference<Activity> mResumedActivity = null;
+
+        DeferredBuild(@NonNull Context context, @NonNull BuildTask task) {
+            mContext = context;
+            mTask = task;
+        }
+
+        void register(@NonNull Application application, boolean waitForFrame) {
+            mApplication = application;
+            mWaitForFrame = waitForFrame;
+            application.registerActivityLifecycleCallbacks(this);
+        }
+
+        boolean isWaitingForFrame() {
+            return mWaitForFrame;
+        }
+
+        @Override
+        public void run() {
+            if (!mStarted.compareAndSet(false, true)) {
+                return;
+            }
+            if (mApplication != null) {
+                mApplication.unregisterActivityLifecycleCallbacks(this);
+            }
+
+            WeakReference<Activity> resumedActivity = mResumedActivity;
+            Activity activity = resumedActivity != null ? resumedActivity.get() : null;
+            mTask.build(activity != null ? activity : mContext);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            // Called before the frame is drawn, the posted message runs once it has been drawn.
+            new Handler(Looper.getMainLooper()).post(new Runnable() {
+                @Override
+                public void run() {
+                    FlurryScheduler.execute(DeferredBuild.this);
+                }
+            });
+        }
+
+        @Override
+        public void onActivityResumed(Activity activity) {
+            mResumedActivity = new WeakReference<>(activity);
+            if (mWaitForFrame && !mFrameRequested) {
+                mFrameRequested = true;
+                Choreographer.getInstance().postFrameCallback(this);
+            }
+        }
+
+        @Override
+        public void onActivityPaused(Activity activity) {
+            WeakReference<Activity> resumedActivity = mResumedActivity;
+            if (resumedActivity != null && resumedActivity.get() == activity) {
+                mResumedActivity = null;
+            }
+        }
+
+        @Override
+        public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+        }
+
+        @Override
+        public void onActivityStarted(Activity activity) {
+        }
+
+        @Override
+        public void onActivityStopped(Activity activity) {
+        }
+
+        @Override
+        public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+        }
+
+        @Override
+        public void onActivityDestroyed(Activity activity) {
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2019, Oath Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flurry.android.reactnative;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import android.os.Build;
+import android.os.SystemClock;
+
+/**
+ * Measures timed events locally, keyed by event Id and an optional instance token.
+ *
+ * Durations are taken from the monotonic elapsed realtime clock, which keeps counting in deep sleep,
+ * and recorded in a latency histogram per event Id. Timers that were never ended expire after a timeout.
+ */
+final class FlurryTimedEvents {
+
+    static final long DEFAULT_TIMEOUT_MILLIS = 30 * 60 * 1000;
+
+    // Bounds the number of histograms when event Ids are generated.
+    private static final int MAX_TRACKED_EVENTS = 256;
+
+    private static final class Timer {
+        final String eventId;
+        final long startNanos;
+
+        Timer(String eventId, long startNanos) {
+            this.eventId = eventId;
+            this.startNanos = startNanos;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Timer> mTimers = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LatencyHistogram> mHistograms = new ConcurrentHashMap<>();
+
+    private volatile long mTimeoutNanos = DEFAULT_TIMEOUT_MILLIS * 1000000L;
+    private final AtomicLong mExpired = new AtomicLong();
+
+    static long now() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            return SystemClock.elapsedRealtimeNanos();
+        }
+        return SystemClock.elapsedRealtime() * 1000000L;
+    }
+
+    void setTimeoutMillis(long timeoutMillis) {
+        mTimeoutNanos = timeoutMillis * 1000000L;
+    }
+
+    int getActiveCount() {
+        return mTimers.size();
+    }
+
+    long getExpiredCount() {
+        return mExpired.get();
+    }
+
+    /**
+     * Start a timer, replacing a running one with the same key.
+     */
+    void start(@NonNull String eventId, @Nullable String instanceToken) {
+        mTimers.put(key(eventId, instanceToken), new Timer(eventId, now()));
+    }
+
+    /**
+     * Stop a timer and record its duration.
+     *
+     * @return the duration in nanoseconds, or -1 if the timer was not running.
+     */
+    long end(@NonNull String eventId, @Nullable String instanceToken) {
+        Timer timer = mTimers.remove(key(eventId, instanceToken));
+        if (timer == null) {
+            return -1;
+        }
+
+        long duration = now() - timer.startNanos;
+        LatencyHistogram histogram = getHistogram(eventId);
+        if (histogram != null) {
+            histogram.record(duration);
+        }
+        return duration;
+    }
+
+    /**
+     * Remove the timers running for longer than the timeout.
+     *
+     * @return the event Ids left without a running timer, i.e. whose last instance has expired.
+     */
+    @NonNull
+    List<String> expire() {
+        Set<String> expired = new LinkedHashSet<>();
+        Set<String> running = new HashSet<>();
+        int count = 0;
+        long deadline = now() - mTimeoutNanos;
+        Iterator<Timer> iterator = mTimers.values().iterator();
+        while (iterator.hasNext()) {
+            Timer timer = iterator.next();
+            if (timer.startNanos < deadline) {
+                iterator.remove();
+                expired.add(timer.eventId);
+                count++;
+            } else {
+                running.add(timer.eventId);
+            }
+        }
+        mExpired.addAndGet(count);
+
+        // Flurry has one timed event per event Id, which the other instances still use.
+        expired.removeAll(running);
+        return new ArrayList<>(expired);
+    }
+
+    @NonNull
+    Map<String, LatencyHistogram> getHistograms() {
+        return mHistograms;
+    }
+
+    @Nullable
+    private LatencyHistogram getHistogram(@NonNull String eventId) {
+        LatencyHistogram histogram = mHistograms.get(eventId);
+        if (histogram == null) {
+            if (mHistograms.size() >= MAX_TRACKED_EVENTS) {
+                return null;
+            }
+            LatencyHistogram created = new LatencyHistogram();
+            histogram = mHistograms.putIfAbsent(eventId, created);
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+        return histogram;
+    }
+
+    private static String key(@NonNull String eventId, @Nullable String instanceToken) {
+        return instanceToken != null ? eventId + '\u0000' + instanceToken : eventId;
+    }
+}
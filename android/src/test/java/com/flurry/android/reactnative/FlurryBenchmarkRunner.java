@@ -0,0 +1,56 @@
+/*
+ * Copyright 2019, Oath Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flurry.android.reactnative;
+
+import org.junit.Assume;
+import org.junit.Test;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+/**
+ * Runs the JMH benchmarks from the unit test task, so that they share its classpath:
+ *
+ *   ./gradlew testDebugUnitTest -Dflurry.benchmark=true --tests '*FlurryBenchmarkRunner'
+ *
+ * Reports throughput, sampled latency percentiles, and the allocation per operation (gc.alloc.rate.norm).
+ * Skipped by regular test runs. The benchmarks run in the test JVM, as Gradle test workers cannot be forked.
+ */
+public class FlurryBenchmarkRunner {
+
+    private static final String ENABLED_PROPERTY = "flurry.benchmark";
+    private static final String INCLUDE_PROPERTY = "flurry.benchmark.include";
+
+    @Test
+    public void run() throws RunnerException {
+        Assume.assumeTrue(Boolean.getBoolean(ENABLED_PROPERTY));
+
+        Options options = new OptionsBuilder()
+                .include(System.getProperty(INCLUDE_PROPERTY, FlurryBridgeBenchmark.class.getSimpleName()))
+                .forks(0)
+                .warmupIterations(3)
+                .warmupTime(TimeValue.seconds(1))
+                .measurementIterations(5)
+                .measurementTime(TimeValue.seconds(1))
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
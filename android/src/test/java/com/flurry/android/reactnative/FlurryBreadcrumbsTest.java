@@ -0,0 +1,57 @@
+/*
+ * Copyright 2019, Oath Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flurry.android.reactnative;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class FlurryBreadcrumbsTest {
+
+    @Test
+    public void countsOverwrittenBreadcrumbsWhenAppended() {
+        FlurryBreadcrumbs breadcrumbs = new FlurryBreadcrumbs(4);
+        for (int i = 0; i < 6; i++) {
+            breadcrumbs.append("crumb" + i);
+        }
+        assertEquals(2, breadcrumbs.getOverwrittenCount());
+        assertEquals(4, breadcrumbs.getPendingCount());
+
+        breadcrumbs.flush();
+        assertEquals(4, breadcrumbs.getFlushedCount());
+        assertEquals(0, breadcrumbs.getPendingCount());
+    }
+
+    @Test
+    public void flushesOnlyTheNewBreadcrumbs() {
+        FlurryBreadcrumbs breadcrumbs = new FlurryBreadcrumbs(4);
+        breadcrumbs.append("crumb0");
+        breadcrumbs.append("crumb1");
+        breadcrumbs.flush();
+
+        // Replacing flushed breadcrumbs overwrites nothing.
+        for (int i = 2; i < 6; i++) {
+            breadcrumbs.append("crumb" + i);
+        }
+        assertEquals(0, breadcrumbs.getOverwrittenCount());
+
+        breadcrumbs.flush();
+        assertEquals(6, breadcrumbs.getFlushedCount());
+        breadcrumbs.flush();
+        assertEquals(6, breadcrumbs.getFlushedCount());
+    }
+}
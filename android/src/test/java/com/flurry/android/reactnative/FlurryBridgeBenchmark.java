@@ -0,0 +1,189 @@
+/*
+ * Copyright 2019, Oath Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flurry.android.reactnative;
+
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.ReadableMapKeySetIterator;
+import com.flurry.android.FlurryConfig;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Microbenchmarks of the bridge hot paths, run on the JVM by FlurryBenchmarkRunner.
+ *
+ * The React Native maps are JavaOnlyMap instances and the Flurry SDK is stubbed: FlurryConfig is a mock
+ * only consulted while the cache warms up, and the agent call of logEventParams is a Blackhole.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FlurryBridgeBenchmark {
+
+    @State(Scope.Thread)
+    public static class EventState {
+        @Param({"1", "10", "50"})
+        public int paramCount;
+
+        JavaOnlyMap parameters;
+
+        @Setup
+        public void setUp() {
+            parameters = new JavaOnlyMap();
+            for (int i = 0; i < paramCount; i++) {
+                parameters.putString("key" + i, "value" + i);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ConfigState {
+        @Param({"10", "100", "1000"})
+        public int keyCount;
+
+        FlurryConfigCache configCache;
+        FlurryConfig flurryConfig;
+        JavaOnlyMap keyAndDefault;
+
+        @Setup
+        public void setUp() {
+            flurryConfig = mock(FlurryConfig.class);
+            when(flurryConfig.getString(anyString(), isNull(String.class))).thenReturn("configured");
+
+            configCache = new FlurryConfigCache();
+            keyAndDefault = new JavaOnlyMap();
+            for (int i = 0; i < keyCount; i++) {
+                keyAndDefault.putString("config_key_" + i, "default");
+            }
+            // Resolve every key once, the measured calls are served by the cache as in steady state.
+            FlurryModule.putConfigStrings(configCache, flurryConfig, keyAndDefault, new JavaOnlyMap());
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class MessageState {
+        final Map<String, String> appData = new HashMap<>();
+
+        @Setup
+        public void setUp() {
+            for (int i = 0; i < 5; i++) {
+                appData.put("data" + i, "value" + i);
+            }
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class DispatcherState {
+        FlurryDispatcher dispatcher;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            dispatcher = new FlurryDispatcher(FlurryDispatcher.DEFAULT_CAPACITY,
+                    FlurryDispatcher.OverflowPolicy.BLOCK);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws InterruptedException {
+            // Let the worker drain before the next trial measures a new dispatcher.
+            while (dispatcher.getPendingCount() > 0) {
+                Thread.sleep(1);
+            }
+        }
+    }
+
+    @Benchmark
+    public Map<String, String> toMap(EventState state) {
+        return FlurryModule.toMap(state.parameters);
+    }
+
+    /**
+     * The map handed to the agent: the parameters converted in the pooled map, then detached.
+     */
+    @Benchmark
+    public Map<String, String> toAgentMap(EventState state) {
+        return FlurryParams.detach(FlurryModule.toMap(state.parameters));
+    }
+
+    /**
+     * Baseline for toAgentMap without the pool: a map built directly, sized by default as a ReadableMap
+     * does not tell its size.
+     */
+    @Benchmark
+    public Map<String, String> directMap(EventState state) {
+        Map<String, String> map = new HashMap<>();
+        ReadableMapKeySetIterator iterator = state.parameters.keySetIterator();
+        while (iterator.hasNextKey()) {
+            String key = iterator.nextKey();
+            map.put(key, state.parameters.getString(key));
+        }
+        return map;
+    }
+
+    /**
+     * The work of a logEventParams call: the dispatched call converting the parameters for the agent.
+     */
+    @Benchmark
+    public void logEventParams(final EventState state, final DispatcherState dispatcherState, final Blackhole agent) {
+        dispatcherState.dispatcher.dispatch(new Runnable() {
+            @Override
+            public void run() {
+                agent.consume(FlurryParams.detach(FlurryModule.toMap(state.parameters)));
+            }
+        });
+    }
+
+    @Benchmark
+    public JavaOnlyMap getConfigStringMap(ConfigState state) {
+        JavaOnlyMap result = new JavaOnlyMap();
+        FlurryModule.putConfigStrings(state.configCache, state.flurryConfig, state.keyAndDefault, result);
+        return result;
+    }
+
+    @Benchmark
+    public Object messagingEventMap(MessageState state) {
+        return FlurryModule.RNFlurryMessagingListener.putMessage(new JavaOnlyMap(), new JavaOnlyMap(),
+                FlurryModule.RNFlurryMessagingListener.EventType.NotificationReceived,
+                "Title", "Body", "ClickAction", state.appData);
+    }
+
+    @Benchmark
+    public boolean dispatch(DispatcherState state) {
+        return state.dispatcher.dispatch(new Runnable() {
+            @Override
+            public void run() {
+                // The cost of the hand-off only.
+            }
+        });
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2019, Oath Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flurry.android.reactnative;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The stalls are recorded under the call name, as the test stacks hold no Flurry SDK frame.
+ */
+public class FlurryCallWatchdogTest {
+
+    private static final long TIMEOUT_MILLIS = 5000;
+    private static final long THRESHOLD_MILLIS = 5;
+
+    @Before
+    public void setUp() {
+        FlurryCallWatchdog.setEnabled(true, THRESHOLD_MILLIS);
+    }
+
+    @After
+    public void tearDown() {
+        FlurryCallWatchdog.setEnabled(false, FlurryCallWatchdog.DEFAULT_THRESHOLD_MILLIS);
+    }
+
+    @Test
+    public void reportsACallRunningOverTheThreshold() throws InterruptedException {
+        String name = "FlurryAgent.stalled";
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        FlurryCallWatchdog.Slot slot = FlurryCallWatchdog.begin(name);
+        assertNotNull(slot);
+        // Stay in the call until the monitor has flagged it.
+        while (slot.flaggedSequence != slot.sequence) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+        FlurryCallWatchdog.end(slot);
+
+        FlurryCallWatchdog.Stall stall = FlurryCallWatchdog.getStalls().get(name);
+        assertNotNull(stall);
+        assertEquals(1, stall.count.get());
+        assertEquals(1, stall.durations.getCount());
+        assertTrue(stall.durations.getMax() >= THRESHOLD_MILLIS * 1000000L);
+        assertTrue(stall.stack.length > 0);
+    }
+
+    @Test
+    public void ignoresACallEndingInTime() throws InterruptedException {
+        // A threshold well above a GC pause between begin and end.
+        long thresholdMillis = 50;
+        FlurryCallWatchdog.setEnabled(true, thresholdMillis);
+        String name = "FlurryAgent.fast";
+        for (int i = 0; i < 100; i++) {
+            FlurryCallWatchdog.Slot slot = FlurryCallWatchdog.begin(name);
+            assertNotNull(slot);
+            FlurryCallWatchdog.end(slot);
+        }
+        // Leave the monitor several polls to flag a call wrongly.
+        Thread.sleep(thresholdMillis * 4);
+
+        assertNull(FlurryCallWatchdog.getStalls().get(name));
+    }
+
+    @Test
+    public void nestedCallIsNotWatchedAgain() {
+        FlurryCallWatchdog.Slot outer = FlurryCallWatchdog.begin("FlurryAgent.outer");
+        assertNotNull(outer);
+        assertNull(FlurryCallWatchdog.begin("FlurryAgent.inner"));
+        FlurryCallWatchdog.end(outer);
+    }
+
+    @Test
+    public void disabledWatchdogWatchesNothing() {
+        FlurryCallWatchdog.setEnabled(false, THRESHOLD_MILLIS);
+
+        assertFalse(FlurryCallWatchdog.isEnabled());
+        assertNull(FlurryCallWatchdog.begin("FlurryAgent.disabled"));
+    }
+}
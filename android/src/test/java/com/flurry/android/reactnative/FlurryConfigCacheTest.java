@@ -0,0 +1,64 @@
+/*
+ * Copyright 2019, Oath Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flurry.android.reactnative;
+
+import com.flurry.android.FlurryConfig;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+
+/**
+ * The mocked Flurry Config has no values, as before the first fetch.
+ */
+public class FlurryConfigCacheTest {
+
+    private final FlurryConfig mFlurryConfig = mock(FlurryConfig.class);
+
+    @Test
+    public void seedLoadedAfterReadsIsUsed() {
+        FlurryConfigCache cache = new FlurryConfigCache();
+        assertEquals("default", cache.getString(mFlurryConfig, "key", "default"));
+
+        cache.seed(Collections.singletonMap("key", "persisted"));
+        assertEquals("persisted", cache.getString(mFlurryConfig, "key", "default"));
+    }
+
+    @Test
+    public void seedLoadedAfterActivationIsIgnored() {
+        FlurryConfigCache cache = new FlurryConfigCache();
+        cache.activate(mFlurryConfig);
+
+        cache.seed(Collections.singletonMap("key", "persisted"));
+        assertEquals("default", cache.getString(mFlurryConfig, "key", "default"));
+        assertEquals(1, cache.getVersion());
+    }
+
+    @Test
+    public void activationDropsThePersistedValues() {
+        FlurryConfigCache cache = new FlurryConfigCache();
+        cache.seed(Collections.singletonMap("key", "persisted"));
+        assertEquals("persisted", cache.getString(mFlurryConfig, "key", "default"));
+
+        cache.activate(mFlurryConfig);
+        assertEquals("default", cache.getString(mFlurryConfig, "key", "default"));
+        assertEquals(Collections.<String, String>emptyMap(), cache.snapshot());
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2019, Oath Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flurry.android.reactnative;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FlurryConfigSnapshotFileTest {
+
+    @Rule
+    public final TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void readsTheWrittenValues() throws IOException {
+        File file = new File(mFolder.getRoot(), FlurryConfigSnapshotFile.FILE_NAME);
+        Map<String, String> values = values();
+
+        assertTrue(FlurryConfigSnapshotFile.write(file, values));
+        assertEquals(values, FlurryConfigSnapshotFile.read(file));
+    }
+
+    @Test
+    public void readsAnEmptySnapshot() {
+        File file = new File(mFolder.getRoot(), FlurryConfigSnapshotFile.FILE_NAME);
+
+        assertTrue(FlurryConfigSnapshotFile.write(file, new HashMap<String, String>()));
+        assertEquals(new HashMap<String, String>(), FlurryConfigSnapshotFile.read(file));
+    }
+
+    @Test
+    public void missingFileHasNoValues() {
+        assertNull(FlurryConfigSnapshotFile.read(new File(mFolder.getRoot(), FlurryConfigSnapshotFile.FILE_NAME)));
+    }
+
+    @Test
+    public void replacesThePreviousSnapshot() {
+        File file = new File(mFolder.getRoot(), FlurryConfigSnapshotFile.FILE_NAME);
+        assertTrue(FlurryConfigSnapshotFile.write(file, values()));
+
+        Map<String, String> replacement = new HashMap<>();
+        replacement.put("color", "red");
+        assertTrue(FlurryConfigSnapshotFile.write(file, replacement));
+
+        assertEquals(replacement, FlurryConfigSnapshotFile.read(file));
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+    }
+
+    @Test
+    public void rejectsAChecksumMismatch() throws IOException {
+        File file = new File(mFolder.getRoot(), FlurryConfigSnapshotFile.FILE_NAME);
+        assertTrue(FlurryConfigSnapshotFile.write(file, values()));
+
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            // Flip a byte of the first key.
+            randomAccessFile.seek(16);
+            int value = randomAccessFile.read();
+            randomAccessFile.seek(16);
+            randomAccessFile.write(value ^ 0xFF);
+        } finally {
+            randomAccessFile.close();
+        }
+
+        assertNull(FlurryConfigSnapshotFile.read(file));
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void rejectsATruncatedFile() throws IOException {
+        File file = new File(mFolder.getRoot(), FlurryConfigSnapshotFile.FILE_NAME);
+        assertTrue(FlurryConfigSnapshotFile.write(file, values()));
+
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.setLength(randomAccessFile.length() - 5);
+        } finally {
+            randomAccessFile.close();
+        }
+
+        assertNull(FlurryConfigSnapshotFile.read(file));
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void failedRenameKeepsNoPartialFile() throws IOException {
+        // A non-empty directory cannot be replaced by the renamed file.
+        File file = mFolder.newFolder(FlurryConfigSnapshotFile.FILE_NAME);
+        assertTrue(new File(file, "entry").createNewFile());
+
+        assertFalse(FlurryConfigSnapshotFile.write(file, values()));
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+        assertTrue(file.isDirectory());
+    }
+
+    private static Map<String, String> values() {
+        Map<String, String> values = new HashMap<>();
+        values.put("welcome_message", "Hello, world");
+        values.put("max_items", "20");
+        values.put("empty", "");
+        values.put("greeting_jp", "\u3053\u3093\u306b\u3061\u306f");
+        return values;
+    }
+}
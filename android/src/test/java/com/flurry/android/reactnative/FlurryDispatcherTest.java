@@ -0,0 +1,221 @@
+/*
+ * Copyright 2019, Oath Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flurry.android.reactnative;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FlurryDispatcherTest {
+
+    private static final int CAPACITY = 4;
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private final List<String> mCalls = Collections.synchronizedList(new ArrayList<String>());
+    private final CountDownLatch mWorkerBlocked = new CountDownLatch(1);
+    private final CountDownLatch mReleaseWorker = new CountDownLatch(1);
+
+    @After
+    public void tearDown() {
+        mReleaseWorker.countDown();
+    }
+
+    @Test
+    public void wrapsAroundTheRingInOrder() throws InterruptedException {
+        FlurryDispatcher dispatcher = new FlurryDispatcher(CAPACITY, FlurryDispatcher.OverflowPolicy.BLOCK);
+        assertEquals(CAPACITY, dispatcher.getCapacity());
+
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            assertTrue(dispatcher.dispatch(record(String.valueOf(i))));
+            expected.add(String.valueOf(i));
+        }
+
+        awaitDrained(dispatcher, 100);
+        assertEquals(expected, mCalls);
+        assertEquals(0, dispatcher.getDroppedCount());
+        assertEquals(0, dispatcher.getPendingCount());
+    }
+
+    @Test
+    public void dropNewestRejectsTheCallWhenFull() throws InterruptedException {
+        FlurryDispatcher dispatcher = new FlurryDispatcher(CAPACITY, FlurryDispatcher.OverflowPolicy.DROP_NEWEST);
+        blockWorker(dispatcher);
+
+        for (int i = 0; i < CAPACITY; i++) {
+            assertTrue(dispatcher.dispatch(record(String.valueOf(i))));
+        }
+        assertFalse(dispatcher.dispatch(record("dropped")));
+        assertEquals(1, dispatcher.getDroppedCount());
+        assertEquals(CAPACITY, dispatcher.getPendingCount());
+
+        mReleaseWorker.countDown();
+        awaitDrained(dispatcher, CAPACITY + 1);
+        assertEquals(Arrays.asList("0", "1", "2", "3"), mCalls);
+    }
+
+    @Test
+    public void dropOldestEvictsThePendingCalls() throws InterruptedException {
+        FlurryDispatcher dispatcher = new FlurryDispatcher(CAPACITY, FlurryDispatcher.OverflowPolicy.DROP_OLDEST);
+        blockWorker(dispatcher);
+
+        for (int i = 0; i < CAPACITY + 2; i++) {
+            assertTrue(dispatcher.dispatch(record(String.valueOf(i))));
+        }
+        assertEquals(2, dispatcher.getDroppedCount());
+
+        mReleaseWorker.countDown();
+        awaitDrained(dispatcher, CAPACITY + 1);
+        assertEquals(Arrays.asList("2", "3", "4", "5"), mCalls);
+    }
+
+    @Test
+    public void blockWaitsForRoom() throws InterruptedException {
+        final FlurryDispatcher dispatcher = new FlurryDispatcher(CAPACITY, FlurryDispatcher.OverflowPolicy.BLOCK);
+        blockWorker(dispatcher);
+
+        for (int i = 0; i < CAPACITY; i++) {
+            assertTrue(dispatcher.dispatch(record(String.valueOf(i))));
+        }
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                dispatcher.dispatch(record("blocked"));
+            }
+        });
+        producer.start();
+        producer.join(100);
+        assertTrue(producer.isAlive());
+
+        mReleaseWorker.countDown();
+        producer.join(TIMEOUT_MILLIS);
+        assertFalse(producer.isAlive());
+        awaitDrained(dispatcher, CAPACITY + 2);
+        assertEquals(Arrays.asList("0", "1", "2", "3", "blocked"), mCalls);
+        assertEquals(0, dispatcher.getDroppedCount());
+    }
+
+    @Test
+    public void reentrantDispatchRunsInline() throws InterruptedException {
+        final FlurryDispatcher dispatcher = new FlurryDispatcher(CAPACITY, FlurryDispatcher.OverflowPolicy.BLOCK);
+        dispatcher.dispatch(new Runnable() {
+            @Override
+            public void run() {
+                mCalls.add("outer");
+                dispatcher.dispatch(record("inner"));
+                dispatcher.dispatchPriority(record("priority"));
+                mCalls.add("outer done");
+            }
+        });
+
+        awaitDrained(dispatcher, 1);
+        assertEquals(Arrays.asList("outer", "inner", "priority", "outer done"), mCalls);
+        assertEquals(1, dispatcher.getEnqueuedCount());
+    }
+
+    @Test
+    public void priorityCallsRunFirstAndAreNeverDropped() throws InterruptedException {
+        FlurryDispatcher dispatcher = new FlurryDispatcher(CAPACITY, FlurryDispatcher.OverflowPolicy.DROP_NEWEST);
+        blockWorker(dispatcher);
+
+        for (int i = 0; i < CAPACITY; i++) {
+            dispatcher.dispatch(record(String.valueOf(i)));
+        }
+        for (int i = 0; i < CAPACITY * 2; i++) {
+            dispatcher.dispatchPriority(record("p" + i));
+        }
+        assertEquals(CAPACITY * 2, dispatcher.getPriorityPendingCount());
+        assertEquals(CAPACITY * 2, dispatcher.getPriorityPeakCount());
+        assertEquals(CAPACITY, dispatcher.getPriorityOverCapacityCount());
+
+        mReleaseWorker.countDown();
+        awaitDrained(dispatcher, CAPACITY + 1);
+        assertEquals(Arrays.asList("p0", "p1", "p2", "p3", "p4", "p5", "p6", "p7", "0", "1", "2", "3"), mCalls);
+        assertEquals(CAPACITY * 2, dispatcher.getPriorityDrainedCount());
+        assertEquals(0, dispatcher.getDroppedCount());
+    }
+
+    @Test
+    public void priorityCallCanRunThePendingCallsFirst() throws InterruptedException {
+        final FlurryDispatcher dispatcher = new FlurryDispatcher(CAPACITY, FlurryDispatcher.OverflowPolicy.BLOCK);
+        blockWorker(dispatcher);
+
+        dispatcher.dispatch(record("0"));
+        dispatcher.dispatch(record("1"));
+        dispatcher.dispatchPriority(new Runnable() {
+            @Override
+            public void run() {
+                dispatcher.drainPending();
+                mCalls.add("flush");
+            }
+        });
+
+        mReleaseWorker.countDown();
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (dispatcher.getPriorityDrainedCount() < 1) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+        assertEquals(Arrays.asList("0", "1", "flush"), mCalls);
+        assertEquals(3, dispatcher.getDrainedCount());
+    }
+
+    private Runnable record(final String name) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                mCalls.add(name);
+            }
+        };
+    }
+
+    /**
+     * Park the worker in a call until the test releases it, the ring buffer is empty on return.
+     */
+    private void blockWorker(FlurryDispatcher dispatcher) throws InterruptedException {
+        dispatcher.dispatch(new Runnable() {
+            @Override
+            public void run() {
+                mWorkerBlocked.countDown();
+                try {
+                    mReleaseWorker.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        assertTrue(mWorkerBlocked.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+    }
+
+    private static void awaitDrained(FlurryDispatcher dispatcher, long drained) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (dispatcher.getDrainedCount() < drained || dispatcher.getPriorityPendingCount() > 0) {
+            assertTrue("Drained " + dispatcher.getDrainedCount(), System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2019, Oath Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flurry.android.reactnative;
+
+import androidx.annotation.NonNull;
+
+import com.facebook.react.bridge.JavaOnlyMap;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FlurryEventAggregatorTest {
+
+    // "Aa" and "BB" share their String hash code, and so their signatures.
+    private static final String FIRST = "Aa";
+    private static final String SECOND = "BB";
+
+    private final Map<String, Map<String, String>> mSummaries = new HashMap<>();
+    private final FlurryEventAggregator.Sink mSink = new FlurryEventAggregator.Sink() {
+        @Override
+        public void logSummary(@NonNull String eventId, @NonNull Map<String, String> parameters) {
+            mSummaries.put(eventId + parameters.get("item"), parameters);
+        }
+    };
+
+    @Test
+    public void collidingEventIdsAreAggregatedApart() {
+        assertEquals(FlurryHash.signature(FIRST, null, null), FlurryHash.signature(SECOND, null, null));
+
+        FlurryEventAggregator aggregator = new FlurryEventAggregator();
+        aggregator.register(FIRST, null);
+        aggregator.register(SECOND, null);
+        assertTrue(aggregator.fold(FIRST, null));
+        assertTrue(aggregator.fold(FIRST, null));
+        assertTrue(aggregator.fold(SECOND, null));
+        assertEquals(2, aggregator.getPendingCount());
+
+        aggregator.flush(mSink);
+        assertEquals("2", mSummaries.get(FIRST + null).get(FlurryEventAggregator.COUNT_PARAM));
+        assertEquals("1", mSummaries.get(SECOND + null).get(FlurryEventAggregator.COUNT_PARAM));
+    }
+
+    @Test
+    public void collidingParametersAreAggregatedApart() {
+        JavaOnlyMap first = JavaOnlyMap.of("item", FIRST);
+        JavaOnlyMap second = JavaOnlyMap.of("item", SECOND);
+        assertEquals(FlurryHash.signature("event", first, null), FlurryHash.signature("event", second, null));
+
+        FlurryEventAggregator aggregator = new FlurryEventAggregator();
+        aggregator.register("event", null);
+        aggregator.fold("event", first);
+        aggregator.fold("event", second);
+        aggregator.fold("event", JavaOnlyMap.of("item", SECOND));
+
+        aggregator.flush(mSink);
+        assertEquals("1", mSummaries.get("event" + FIRST).get(FlurryEventAggregator.COUNT_PARAM));
+        assertEquals("2", mSummaries.get("event" + SECOND).get(FlurryEventAggregator.COUNT_PARAM));
+    }
+
+    @Test
+    public void summariesStayWithinTheParameterLimit() {
+        JavaOnlyMap parameters = new JavaOnlyMap();
+        for (int i = 0; i < FlurryParamLimits.MAX_PARAMS; i++) {
+            parameters.putString("key" + i, "value" + i);
+        }
+        parameters.putDouble("amount", 2.5);
+
+        FlurryEventAggregator aggregator = new FlurryEventAggregator();
+        aggregator.register("event", "amount");
+        aggregator.fold("event", parameters);
+        aggregator.fold("event", parameters);
+
+        long excess = FlurryParamLimits.getExcessParamCount();
+        aggregator.flush(mSink);
+        Map<String, String> summary = mSummaries.get("event" + null);
+        assertEquals(FlurryParamLimits.MAX_PARAMS, summary.size());
+        assertEquals("2", summary.get(FlurryEventAggregator.COUNT_PARAM));
+        assertEquals("5", summary.get(FlurryEventAggregator.SUM_PARAM));
+        // The last keys in order are left out.
+        assertTrue(summary.containsKey("key7"));
+        assertEquals(2, FlurryParamLimits.getExcessParamCount() - excess);
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2019, Oath Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flurry.android.reactnative;
+
+import androidx.annotation.NonNull;
+
+import com.facebook.react.bridge.JavaOnlyArray;
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.WritableArray;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class FlurryEventEmitterTest {
+
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private static final class RecordingSink implements FlurryEventEmitter.Sink {
+        final Set<String> listeners = new HashSet<>();
+        final List<String> names = new ArrayList<>();
+        final List<Object> payloads = new ArrayList<>();
+        final CountDownLatch emitted = new CountDownLatch(1);
+
+        @Override
+        public boolean hasListeners(@NonNull String eventName) {
+            return listeners.contains(eventName);
+        }
+
+        @Override
+        public synchronized void emit(@NonNull String eventName, @NonNull String jsEventName,
+                @NonNull Object payload) {
+            names.add(jsEventName);
+            payloads.add(payload);
+            emitted.countDown();
+        }
+
+        @NonNull
+        @Override
+        public WritableArray createArray() {
+            return new JavaOnlyArray();
+        }
+    }
+
+    private final RecordingSink mSink = new RecordingSink();
+    private final FlurryEventEmitter mEmitter = new FlurryEventEmitter(mSink);
+
+    @Test
+    public void emitsTheEventsOfAFrameTogether() throws InterruptedException {
+        mSink.listeners.add("Config");
+        mEmitter.enqueue("Config", null, event(0));
+        mEmitter.enqueue("Config", null, event(1));
+        mEmitter.enqueue("Config", null, event(2));
+
+        assertTrue(mSink.emitted.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        synchronized (mSink) {
+            assertEquals(1, mSink.names.size());
+            ReadableArray batch = (ReadableArray) mSink.payloads.get(0);
+            assertEquals(3, batch.size());
+            for (int i = 0; i < 3; i++) {
+                assertEquals(i, batch.getMap(i).getInt("id"));
+            }
+        }
+        assertEquals(3, mEmitter.getEventCount());
+        assertEquals(1, mEmitter.getBatchCount());
+    }
+
+    @Test
+    public void batchesAreSentWithTheSuffix() {
+        mSink.listeners.add("Config");
+        mSink.listeners.add("Messaging");
+        mEmitter.enqueue("Config", null, event(0));
+        mEmitter.enqueue("Messaging", null, event(1));
+        mEmitter.enqueue("Config", null, event(2));
+        mEmitter.flush();
+
+        // A single event is sent as is, a batch keeps the first position of its name.
+        assertEquals(2, mSink.names.size());
+        assertEquals("Config" + FlurryEventEmitter.BATCH_SUFFIX, mSink.names.get(0));
+        assertEquals(2, ((ReadableArray) mSink.payloads.get(0)).size());
+        assertEquals("Messaging", mSink.names.get(1));
+        assertEquals(1, ((JavaOnlyMap) mSink.payloads.get(1)).getInt("id"));
+    }
+
+    @Test
+    public void newerEventReplacesTheCollapsedOne() {
+        mSink.listeners.add("Config");
+        mEmitter.enqueue("Config", "fetch", event(0));
+        mEmitter.enqueue("Config", "activate", event(1));
+        mEmitter.enqueue("Config", "fetch", event(2));
+        mEmitter.flush();
+
+        ReadableArray batch = (ReadableArray) mSink.payloads.get(0);
+        assertEquals(2, batch.size());
+        assertEquals(1, batch.getMap(0).getInt("id"));
+        assertEquals(2, batch.getMap(1).getInt("id"));
+        assertEquals(1, mEmitter.getCollapsedCount());
+    }
+
+    @Test
+    public void eventsWithoutListenerAreDropped() {
+        mSink.listeners.add("Config");
+        mEmitter.enqueue("Messaging", null, event(0));
+        mEmitter.enqueue("Messaging", null, event(1));
+        mEmitter.enqueue("Config", null, event(2));
+        mEmitter.flush();
+
+        assertEquals(1, mSink.names.size());
+        assertEquals("Config", mSink.names.get(0));
+        assertEquals(2, mEmitter.getDroppedCount());
+        assertEquals(1, mEmitter.getEventCount());
+    }
+
+    @Test
+    public void emitNowSendsQueuedEventsFirst() {
+        mSink.listeners.add("Messaging");
+        mEmitter.enqueue("Messaging", null, event(0));
+        JavaOnlyMap now = event(1);
+        mEmitter.emitNow("Messaging", now);
+
+        assertEquals(2, mSink.names.size());
+        assertEquals(0, ((JavaOnlyMap) mSink.payloads.get(0)).getInt("id"));
+        assertSame(now, mSink.payloads.get(1));
+    }
+
+    private static JavaOnlyMap event(int id) {
+        return JavaOnlyMap.of("id", id);
+    }
+}
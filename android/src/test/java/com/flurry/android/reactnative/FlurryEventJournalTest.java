@@ -0,0 +1,247 @@
+/*
+ * Copyright 2019, Oath Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flurry.android.reactnative;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.JavaOnlyMap;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * A journal opened again on the same directory stands for the next run of the app.
+ */
+public class FlurryEventJournalTest {
+
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    // [int body length][int body crc32][byte state], see the segment layout of FlurryEventJournal.
+    private static final int RECORD_HEADER_SIZE = 9;
+
+    @Rule
+    public final TemporaryFolder mFolder = new TemporaryFolder();
+
+    private final List<String> mReplayed = new ArrayList<>();
+
+    @Test
+    public void replaysAppendedCallsInOrder() throws IOException {
+        FlurryEventJournal journal = open();
+        journal.appendEvent("event", JavaOnlyMap.of("key", "value", "count", 2), true);
+        journal.appendError("error", "message", "class", null);
+        journal.appendPayment("product", "id", 1, 0.99, "USD", "transaction", null);
+
+        journal.replay(Long.MAX_VALUE, mReplayer);
+        assertEquals(Arrays.asList("event event {count=2, key=value} timed", "error error message class null",
+                "payment product id 1 0.99 USD transaction null"), mReplayed);
+
+        // Replayed calls are acknowledged.
+        mReplayed.clear();
+        journal.replay(Long.MAX_VALUE, mReplayer);
+        assertEquals(Collections.<String>emptyList(), mReplayed);
+    }
+
+    @Test
+    public void replaysOnlyTheUnacknowledgedCallsOfPreviousRuns() throws IOException {
+        FlurryEventJournal previous = open();
+        previous.acknowledge(previous.appendEvent("delivered", null, false));
+        previous.appendEvent("lost", null, false);
+
+        FlurryEventJournal journal = open();
+        journal.appendEvent("current", null, false);
+        journal.replay(journal.getOpenedAt(), mReplayer);
+        assertEquals(Collections.singletonList("event lost null untimed"), mReplayed);
+    }
+
+    @Test
+    public void stopsAtACorruptRecord() throws IOException {
+        FlurryEventJournal previous = open();
+        previous.appendEvent("first", null, false);
+        long corrupt = previous.appendEvent("second", null, false);
+        previous.appendEvent("third", null, false);
+        // Flip a byte of the event Id, so that the record no longer matches its checksum.
+        writeByte(segmentFile(corrupt), offset(corrupt) + RECORD_HEADER_SIZE + 14, 'X');
+
+        FlurryEventJournal journal = open();
+        journal.replay(journal.getOpenedAt(), mReplayer);
+        assertEquals(Collections.singletonList("event first null untimed"), mReplayed);
+    }
+
+    @Test
+    public void stopsAtAPartialRecord() throws IOException {
+        FlurryEventJournal previous = open();
+        long last = previous.appendEvent("complete", null, false);
+        // A copy of the record whose length runs past the bytes written, as if the process died mid-write.
+        File file = segmentFile(last);
+        int length = readInt(file, offset(last));
+        byte[] record = read(file, offset(last), RECORD_HEADER_SIZE + length);
+        int next = offset(last) + record.length;
+        write(file, next, record);
+        writeInt(file, next, length + 16);
+
+        FlurryEventJournal journal = open();
+        journal.replay(journal.getOpenedAt(), mReplayer);
+        assertEquals(Collections.singletonList("event complete null untimed"), mReplayed);
+    }
+
+    @Test
+    public void deletesASegmentOnceReplayed() throws IOException, InterruptedException {
+        FlurryEventJournal previous = open();
+        File segment = segmentFile(previous.appendEvent("lost", null, false));
+
+        FlurryEventJournal journal = open();
+        assertTrue(segment.isFile());
+        journal.replay(journal.getOpenedAt(), mReplayer);
+        awaitScheduler();
+        assertEquals(1, mReplayed.size());
+        assertFalse(segment.exists());
+    }
+
+    @Test
+    public void deletesSegmentsWithoutPendingRecordsOnOpen() throws IOException {
+        FlurryEventJournal previous = open();
+        long handle = previous.appendEvent("delivered", null, false);
+        previous.acknowledge(handle);
+
+        open();
+        assertFalse(segmentFile(handle).exists());
+    }
+
+    private FlurryEventJournal open() {
+        FlurryEventJournal journal = FlurryEventJournal.open(mFolder.getRoot());
+        assertTrue(journal != null);
+        return journal;
+    }
+
+    private File segmentFile(long handle) {
+        return new File(new File(mFolder.getRoot(), "flurry-rn-journal"), "segment-" + (handle >>> 32) + ".log");
+    }
+
+    private static int offset(long handle) {
+        return (int) handle;
+    }
+
+    private static int readInt(File file, int position) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            randomAccessFile.seek(position);
+            return randomAccessFile.readInt();
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private static byte[] read(File file, int position, int length) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            byte[] bytes = new byte[length];
+            randomAccessFile.seek(position);
+            randomAccessFile.readFully(bytes);
+            return bytes;
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private static void write(File file, int position, byte[] bytes) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.seek(position);
+            randomAccessFile.write(bytes);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private static void writeInt(File file, int position, int value) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.seek(position);
+            randomAccessFile.writeInt(value);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private static void writeByte(File file, int position, int value) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.seek(position);
+            randomAccessFile.write(value);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Wait for the tasks already submitted to the single scheduler thread, e.g. a segment deletion.
+     */
+    private static void awaitScheduler() throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        FlurryScheduler.execute(new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+    }
+
+    private final FlurryEventJournal.Replayer mReplayer = new FlurryEventJournal.Replayer() {
+        @Override
+        public void replayEvent(@NonNull String eventId, @Nullable Map<String, String> parameters, boolean timed) {
+            mReplayed.add("event " + eventId + " " + sorted(parameters) + (timed ? " timed" : " untimed"));
+        }
+
+        @Override
+        public void replayError(@NonNull String errorId, @Nullable String message, @Nullable String errorClass,
+                                @Nullable Map<String, String> parameters) {
+            mReplayed.add("error " + errorId + " " + message + " " + errorClass + " " + sorted(parameters));
+        }
+
+        @Override
+        public void replayPayment(@NonNull String productName, @NonNull String productId, int quantity,
+                                  double price, @NonNull String currency, @NonNull String transactionId,
+                                  @Nullable Map<String, String> parameters) {
+            mReplayed.add("payment " + productName + " " + productId + " " + quantity + " " + price + " "
+                    + currency + " " + transactionId + " " + sorted(parameters));
+        }
+    };
+
+    @Nullable
+    private static Map<String, String> sorted(@Nullable Map<String, String> parameters) {
+        return parameters != null ? new TreeMap<>(parameters) : null;
+    }
+}
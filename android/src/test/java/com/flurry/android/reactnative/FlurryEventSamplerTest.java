@@ -0,0 +1,86 @@
+/*
+ * Copyright 2019, Oath Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flurry.android.reactnative;
+
+import com.facebook.react.bridge.JavaOnlyMap;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * SystemClock does not advance in JVM tests, so token buckets do not refill.
+ */
+public class FlurryEventSamplerTest {
+
+    private static final String THROTTLE = "{ \"event\": { \"ratePerSecond\": 1, \"burst\": 1 } }";
+    private static final String DEDUP = "{ \"event\": { \"dedupMillis\": 1000 } }";
+
+    @Test
+    public void rulesAreComparedByValue() {
+        FlurryEventSampler.Rule rule = new FlurryEventSampler.Rule(0.5, 2, 5, 1000);
+        assertEquals(new FlurryEventSampler.Rule(0.5, 2, 5, 1000), rule);
+        assertEquals(new FlurryEventSampler.Rule(0.5, 2, 5, 1000).hashCode(), rule.hashCode());
+        assertNotEquals(new FlurryEventSampler.Rule(0.5, 2, 5, 999), rule);
+    }
+
+    @Test
+    public void unchangedRulesKeepTheTokenBucket() {
+        FlurryEventSampler sampler = new FlurryEventSampler();
+        assertTrue(sampler.setRules(THROTTLE));
+        assertEquals(FlurryEventSampler.ACCEPTED, sampler.sample("event", null));
+        assertEquals(FlurryEventSampler.THROTTLED, sampler.sample("event", null));
+
+        assertTrue(sampler.setRules(THROTTLE));
+        assertEquals(FlurryEventSampler.THROTTLED, sampler.sample("event", null));
+    }
+
+    @Test
+    public void unchangedRulesKeepTheDedupWindow() {
+        FlurryEventSampler sampler = new FlurryEventSampler();
+        assertTrue(sampler.setRules(DEDUP));
+        assertEquals(FlurryEventSampler.ACCEPTED, sampler.sample("event", null));
+
+        assertTrue(sampler.setRules(DEDUP));
+        assertEquals(FlurryEventSampler.DEDUPLICATED, sampler.sample("event", null));
+    }
+
+    @Test
+    public void collidingEventsAreNotDeduplicated() {
+        FlurryEventSampler sampler = new FlurryEventSampler();
+        assertTrue(sampler.setRules("{ \"*\": { \"dedupMillis\": 1000 } }"));
+        // "Aa" and "BB" share their String hash code, and so their signatures.
+        assertEquals(FlurryEventSampler.ACCEPTED, sampler.sample("Aa", null));
+        assertEquals(FlurryEventSampler.ACCEPTED, sampler.sample("BB", null));
+        assertEquals(FlurryEventSampler.ACCEPTED, sampler.sample("event", JavaOnlyMap.of("item", "Aa")));
+        assertEquals(FlurryEventSampler.ACCEPTED, sampler.sample("event", JavaOnlyMap.of("item", "BB")));
+        assertEquals(FlurryEventSampler.DEDUPLICATED, sampler.sample("event", JavaOnlyMap.of("item", "BB")));
+    }
+
+    @Test
+    public void changedRulesResetTheState() {
+        FlurryEventSampler sampler = new FlurryEventSampler();
+        assertTrue(sampler.setRules(THROTTLE));
+        assertEquals(FlurryEventSampler.ACCEPTED, sampler.sample("event", null));
+        assertEquals(FlurryEventSampler.THROTTLED, sampler.sample("event", null));
+
+        assertTrue(sampler.setRules("{ \"event\": { \"ratePerSecond\": 1, \"burst\": 2 } }"));
+        assertEquals(FlurryEventSampler.ACCEPTED, sampler.sample("event", null));
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2019, Oath Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flurry.android.reactnative;
+
+import androidx.annotation.NonNull;
+
+import com.facebook.react.bridge.JavaOnlyArray;
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class FlurryModuleTest {
+
+    private static final long ONE_SECOND_NANOS = 1000000000L;
+
+    @Test
+    public void durationTakesTheLastParameterSlot() {
+        Map<String, String> parameters = new HashMap<>();
+        for (int i = 0; i < FlurryParamLimits.MAX_PARAMS; i++) {
+            parameters.put("key" + i, "value" + i);
+        }
+        long excess = FlurryParamLimits.getExcessParamCount();
+
+        Map<String, String> withDuration = FlurryModule.withDuration(parameters, ONE_SECOND_NANOS);
+        assertEquals(FlurryParamLimits.MAX_PARAMS, withDuration.size());
+        assertEquals("1000", withDuration.get("durationMillis"));
+        // The last key in order is left out.
+        assertFalse(withDuration.containsKey("key9"));
+        assertEquals(excess + 1, FlurryParamLimits.getExcessParamCount());
+    }
+
+    @Test
+    public void durationSetByTheCallerIsKept() {
+        Map<String, String> parameters = new HashMap<>();
+        parameters.put("durationMillis", "42");
+
+        assertEquals("42", FlurryModule.withDuration(parameters, ONE_SECOND_NANOS).get("durationMillis"));
+    }
+
+    @Test
+    public void unmeasuredDurationIsLeftOut() {
+        assertNull(FlurryModule.withDuration(null, -1));
+        assertEquals("0", FlurryModule.withDuration(null, 0).get("durationMillis"));
+    }
+
+    @Test
+    public void configBatchReachesAConfigOnlyListener() {
+        DeviceEventManagerModule.RCTDeviceEventEmitter jsEmitter =
+                mock(DeviceEventManagerModule.RCTDeviceEventEmitter.class);
+        ReactApplicationContext context = mock(ReactApplicationContext.class);
+        when(context.hasActiveCatalystInstance()).thenReturn(true);
+        when(context.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)).thenReturn(jsEmitter);
+
+        FlurryReactContexts contexts = new FlurryReactContexts();
+        contexts.register(context).addConfigListener();
+        final FlurryModule.ContextSink contextSink = new FlurryModule.ContextSink(contexts);
+        FlurryEventEmitter emitter = new FlurryEventEmitter(new FlurryEventEmitter.Sink() {
+            @Override
+            public boolean hasListeners(@NonNull String eventName) {
+                return contextSink.hasListeners(eventName);
+            }
+
+            @Override
+            public void emit(@NonNull String eventName, @NonNull String jsEventName, @NonNull Object payload) {
+                contextSink.emit(eventName, jsEventName, payload);
+            }
+
+            @NonNull
+            @Override
+            public WritableArray createArray() {
+                return new JavaOnlyArray();
+            }
+        });
+
+        emitter.enqueue("FlurryConfigEvent", null, JavaOnlyMap.of("Type", "FetchSuccess"));
+        emitter.enqueue("FlurryConfigEvent", null, JavaOnlyMap.of("Type", "ActivateComplete"));
+        emitter.enqueue("FlurryMessagingEvent", null, JavaOnlyMap.of("Type", "NotificationReceived"));
+        emitter.flush();
+
+        verify(jsEmitter).emit(eq("FlurryConfigEventBatch"), any(JavaOnlyArray.class));
+        verify(jsEmitter, never()).emit(eq("FlurryMessagingEvent"), any());
+        assertEquals(1, emitter.getDroppedCount());
+    }
+}
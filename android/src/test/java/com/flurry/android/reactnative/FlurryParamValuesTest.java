@@ -0,0 +1,53 @@
+/*
+ * Copyright 2019, Oath Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flurry.android.reactnative;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class FlurryParamValuesTest {
+
+    @Test
+    public void formatsNumbersAsJs() {
+        assertEquals("42", FlurryParamValues.format(42));
+        assertEquals("0", FlurryParamValues.format(-0.0));
+        assertEquals("-1.5", FlurryParamValues.format(-1.5));
+        assertEquals("9007199254740992", FlurryParamValues.format(9007199254740992.0));
+        assertEquals("10000000000000000", FlurryParamValues.format(1e16));
+        assertEquals("12345678901234567000", FlurryParamValues.format(12345678901234567000.0));
+        assertEquals("-100000000000000000000", FlurryParamValues.format(-1e20));
+        assertEquals("NaN", FlurryParamValues.format(Double.NaN));
+        assertEquals("Infinity", FlurryParamValues.format(Double.POSITIVE_INFINITY));
+    }
+
+    @Test
+    public void formatsFractionsWithoutExponent() {
+        assertEquals("0.1", FlurryParamValues.format(0.1));
+        assertEquals("12345678.5", FlurryParamValues.format(12345678.5));
+        assertEquals("-12345678.5", FlurryParamValues.format(-12345678.5));
+        assertEquals("0.0005", FlurryParamValues.format(0.0005));
+        assertEquals("0.000001", FlurryParamValues.format(1e-6));
+        assertEquals("0.0000015", FlurryParamValues.format(1.5e-6));
+    }
+
+    @Test
+    public void keepsTheJavaExponentNotation() {
+        assertEquals("1.0E21", FlurryParamValues.format(1e21));
+        assertEquals("1.0E-7", FlurryParamValues.format(1e-7));
+    }
+}
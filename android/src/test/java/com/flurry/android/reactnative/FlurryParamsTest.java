@@ -0,0 +1,166 @@
+/*
+ * Copyright 2019, Oath Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flurry.android.reactnative;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class FlurryParamsTest {
+
+    private static final int PARAMS = 10;
+    private static final int ITERATIONS = 20000;
+
+    private final String[] mKeys = new String[PARAMS];
+    private final String[] mValues = new String[PARAMS];
+
+    public FlurryParamsTest() {
+        for (int i = 0; i < PARAMS; i++) {
+            mKeys[i] = "key" + i;
+            mValues[i] = "value" + i;
+        }
+    }
+
+    @Test
+    public void behavesAsMap() {
+        FlurryParams params = FlurryParams.obtain();
+        params.append("a", "1");
+        params.append("b", "2");
+        assertEquals("1", params.put("a", "3"));
+        assertNull(params.put("c", "4"));
+        assertEquals("2", params.remove("b"));
+
+        Map<String, String> expected = new HashMap<>();
+        expected.put("a", "3");
+        expected.put("c", "4");
+        assertEquals(expected, params);
+        assertEquals(expected.hashCode(), params.hashCode());
+
+        Iterator<Map.Entry<String, String>> iterator = params.entrySet().iterator();
+        iterator.next();
+        iterator.remove();
+        assertEquals(1, params.size());
+        assertEquals("4", params.get("c"));
+    }
+
+    @Test
+    public void obtainClearsThePooledMap() {
+        FlurryParams first = FlurryParams.obtain();
+        first.append("a", "1");
+
+        FlurryParams second = FlurryParams.obtain();
+        assertSame(first, second);
+        assertTrue(second.isEmpty());
+    }
+
+    @Test
+    public void detachedParamsSurviveTheNextConversion() {
+        FlurryParams params = FlurryParams.obtain();
+        params.append("a", "1");
+        params.append("b", null);
+
+        Map<String, String> detached = FlurryParams.detach(params);
+        assertNotSame(params, detached);
+
+        FlurryParams.obtain().append("a", "2");
+        assertEquals(2, detached.size());
+        assertEquals("1", detached.get("a"));
+        assertTrue(detached.containsKey("b"));
+    }
+
+    @Test
+    public void detachKeepsOtherMaps() {
+        Map<String, String> map = new HashMap<>();
+        assertSame(map, FlurryParams.detach(map));
+        assertNull(FlurryParams.detach(null));
+    }
+
+    @Test
+    public void growsBeyondInitialCapacity() {
+        FlurryParams params = FlurryParams.obtain();
+        for (int i = 0; i < 50; i++) {
+            params.append("key" + i, "value" + i);
+        }
+        assertEquals(50, params.size());
+        assertEquals("value49", params.get("key49"));
+        assertFalse(params.containsKey("key50"));
+    }
+
+    /**
+     * Building the parameters of an event in the pooled map must not allocate once the thread is warm.
+     */
+    @Test
+    public void buildingPooledParamsDoesNotAllocate() throws Exception {
+        Object threadBean = getThreadBean();
+        Assume.assumeTrue(threadBean != null);
+        Method allocatedBytes = Class.forName("com.sun.management.ThreadMXBean")
+                .getMethod("getThreadAllocatedBytes", long.class);
+        long threadId = Thread.currentThread().getId();
+
+        int sink = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += build().size();
+        }
+
+        long before = (Long) allocatedBytes.invoke(threadBean, threadId);
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink += build().size();
+        }
+        long allocated = (Long) allocatedBytes.invoke(threadBean, threadId) - before;
+
+        assertEquals(PARAMS * ITERATIONS * 2, sink);
+        // Leave room for the reflective calls measuring the allocation.
+        assertTrue("Allocated " + allocated + " bytes", allocated / ITERATIONS < 8);
+    }
+
+    private FlurryParams build() {
+        FlurryParams params = FlurryParams.obtain();
+        for (int i = 0; i < PARAMS; i++) {
+            FlurryParamLimits.append(params, mKeys[i], mValues[i]);
+        }
+        return params;
+    }
+
+    /**
+     * The HotSpot thread bean, looked up reflectively as java.lang.management is not part of android.jar.
+     */
+    private static Object getThreadBean() {
+        try {
+            Object bean = Class.forName("java.lang.management.ManagementFactory")
+                    .getMethod("getThreadMXBean").invoke(null);
+            Class<?> hotSpotBean = Class.forName("com.sun.management.ThreadMXBean");
+            if (!hotSpotBean.isInstance(bean)
+                    || !(Boolean) hotSpotBean.getMethod("isThreadAllocatedMemorySupported").invoke(bean)) {
+                return null;
+            }
+            return bean;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2019, Oath Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flurry.android.reactnative;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FlurryPaymentLedgerTest {
+
+    @Rule
+    public final TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void reservedIdsAreDuplicatesUntilReleased() {
+        FlurryPaymentLedger ledger = new FlurryPaymentLedger(4);
+        assertTrue(ledger.reserve("t0"));
+        assertFalse(ledger.reserve("t0"));
+        assertEquals(0, ledger.size());
+
+        // A payment that was not delivered can be retried.
+        ledger.release("t0");
+        assertTrue(ledger.reserve("t0"));
+        assertEquals(1, ledger.getDuplicateCount());
+    }
+
+    @Test
+    public void onlyCommittedIdsAreKept() {
+        FlurryPaymentLedger ledger = new FlurryPaymentLedger(4);
+        assertTrue(ledger.reserve("t0"));
+        assertFalse(ledger.isCommitted("t0"));
+
+        ledger.commit("t0");
+        assertEquals(1, ledger.size());
+        assertTrue(ledger.isCommitted("t0"));
+        assertFalse(ledger.reserve("t0"));
+        assertEquals(2, ledger.getDuplicateCount());
+    }
+
+    @Test
+    public void paymentsWithoutIdAreNeverDuplicates() {
+        FlurryPaymentLedger ledger = new FlurryPaymentLedger(4);
+        assertTrue(ledger.reserve(""));
+        assertTrue(ledger.reserve(""));
+        ledger.commit("");
+        assertFalse(ledger.isCommitted(""));
+        assertEquals(0, ledger.size());
+    }
+
+    @Test
+    public void evictsTheOldestCommittedIds() {
+        FlurryPaymentLedger ledger = new FlurryPaymentLedger(2);
+        for (int i = 0; i < 3; i++) {
+            ledger.commit("t" + i);
+        }
+        assertEquals(2, ledger.size());
+        assertTrue(ledger.reserve("t0"));
+        assertFalse(ledger.reserve("t2"));
+    }
+
+    @Test
+    public void paymentsAreHeldUntilThePersistedIdsAreLoaded() throws IOException {
+        File file = mFolder.newFile(FlurryPaymentLedger.FILE_NAME);
+        DataOutputStream output = new DataOutputStream(new FileOutputStream(file));
+        try {
+            output.writeUTF("t0");
+        } finally {
+            output.close();
+        }
+
+        final FlurryPaymentLedger ledger = new FlurryPaymentLedger(4);
+        final List<String> delivered = new ArrayList<>();
+        // Reserved before the Ids of the previous runs are known.
+        assertTrue(ledger.reserve("t0"));
+        ledger.whenOpen(new Runnable() {
+            @Override
+            public void run() {
+                delivered.add(ledger.isCommitted("t0") ? "duplicate" : "t0");
+            }
+        });
+        assertTrue(delivered.isEmpty());
+
+        ledger.open(file);
+        ledger.whenOpen(new Runnable() {
+            @Override
+            public void run() {
+                delivered.add("t1");
+            }
+        });
+        assertEquals(Arrays.asList("duplicate", "t1"), delivered);
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2019, Oath Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.flurry.android.reactnative;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FlurryPreInitBufferTest {
+
+    private static final long TIMEOUT_MILLIS = 5000;
+
+    private final List<String> mCalls = Collections.synchronizedList(new ArrayList<String>());
+
+    @Test
+    public void replayBypassesTheOverflowPolicy() throws InterruptedException {
+        FlurryDispatcher dispatcher = new FlurryDispatcher(2, FlurryDispatcher.OverflowPolicy.DROP_NEWEST);
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        dispatcher.dispatch(new Runnable() {
+            @Override
+            public void run() {
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        assertTrue(blocked.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        // Fill the ring buffer, the replay must neither be dropped nor wait for room.
+        dispatcher.dispatch(record("pending 0"));
+        dispatcher.dispatch(record("pending 1"));
+
+        FlurryPreInitBuffer buffer = new FlurryPreInitBuffer(FlurryPreInitBuffer.DEFAULT_CAPACITY);
+        assertTrue(buffer.offer(record("event 0"), false));
+        assertTrue(buffer.offer(record("error"), true));
+        assertTrue(buffer.offer(record("event 1"), false));
+        assertTrue(buffer.offer(record("payment"), true));
+
+        buffer.open(dispatcher, record("journal"));
+        assertFalse(buffer.offer(record("late"), false));
+        assertEquals(0, dispatcher.getDroppedCount());
+
+        release.countDown();
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (mCalls.size() < 7) {
+            assertTrue(System.currentTimeMillis() < deadline);
+            Thread.sleep(1);
+        }
+        assertEquals(Arrays.asList("error", "payment", "journal", "event 0", "event 1", "pending 0", "pending 1"),
+                mCalls);
+    }
+
+    private Runnable record(final String name) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                mCalls.add(name);
+            }
+        };
+    }
+}
@@ -29,6 +29,24 @@ declare module 'react-native-flurry-sdk' {
             FEMALE: string
         }
 
+        /**
+         * Constants for the overflow policy of the native dispatch queue. Android only.
+         */
+        static DispatchOverflowPolicy: {
+            DROP_OLDEST: string,
+            DROP_NEWEST: string,
+            BLOCK:       string
+        }
+
+        /**
+         * Constants for handling event parameters beyond the Flurry limits. Android only.
+         */
+        static ParamValidation: {
+            OFF:      string,
+            TRUNCATE: string,
+            REJECT:   string
+        }
+
         /**
          * Constants for message types in Flurry Push.
          */
@@ -179,7 +197,7 @@ declare module 'react-native-flurry-sdk' {
          * @param originName    The name/id of the origin you wish to attribute.
          * @param originVersion The version of the origin you wish to attribute.
          */
-        static addOrigin(originName: string, originVersion: string, originParameters?: { [key: string]: string; }): void;
+        static addOrigin(originName: string, originVersion: string, originParameters?: { [key: string]: string | number | boolean; }): void;
 
         /**
          * This method allows you to associate parameters with an session.
@@ -234,6 +252,10 @@ declare module 'react-native-flurry-sdk' {
 
         /**
          * Logs the breadcrumb.
+         * On Android, the last 64 breadcrumbs are kept in memory and handed to Flurry
+         * when an error is reported, or when the app crashes with crash reporting enabled.
+         * The crash hand-off needs the agent to be built by this plugin, with Flurry.Builder
+         * or FlurryModule.Builder, rather than with the Flurry SDK directly.
          * 
          * e.g. Flurry.logBreadcrumb('crashBreadcrumb');
          * 
@@ -252,13 +274,39 @@ declare module 'react-native-flurry-sdk' {
          * - logEvent(eventId, parameters, timed)
          * 
          * @param eventId    The name/id of the event.
-         * @param parameters A {@code Map<String, String>} of parameters to log with this event.
+         * @param parameters A {@code Map<String, String>} of parameters to log with this event. Number and boolean
+         *                   values are formatted natively on Android, nested objects and arrays are left out.
          * @param timed      True if this event is timed, false otherwise.
          */
-        static logEvent(eventId: string, parameters?: { [key: string]: string; }, timed?: boolean): void;
+        static logEvent(eventId: string, parameters?: { [key: string]: string | number | boolean; }, timed?: boolean): void;
 
         /**
-         * Log a payment.
+         * Register the parameter keys of an event, or an error, once. Android only.
+         * Parameters of the event made of these keys are then sent by position in a compact call,
+         * and the native module reuses the registered event Id and key strings.
+         * 
+         * e.g. Flurry.registerEventSchema('purchase', ['item', 'price']);
+         * 
+         * @param eventId   the event Id, or the error Id for onError.
+         * @param paramKeys the parameter keys of the event.
+         */
+        static registerEventSchema(eventId: string, paramKeys: string[]): void;
+
+        /**
+         * Coalesce logEvent calls made within the window into one bridge call. Android only.
+         * Events are still logged in order; calls which log anything else or change the user,
+         * session or event settings, e.g. setUserId, addSessionProperty, onError or logPayment,
+         * flush the pending batch first.
+         * 
+         * e.g. Flurry.setEventBatchWindow(50);
+         * 
+         * @param windowMillis The coalescing window in milliseconds, 0 to send every event immediately (default).
+         */
+        static setEventBatchWindow(windowMillis?: number): void;
+
+        /**
+         * Log a payment. On Android, a payment whose transactionId has already been logged is dropped,
+         * the recent transaction Ids are kept across restarts.
          * 
          * e.g. Flurry.logPayment('productName', 'productId', 6, 36, 'currency', 'transactionId', {param: 'true'});
          * 
@@ -272,7 +320,14 @@ declare module 'react-native-flurry-sdk' {
          *                      with this event.
          */
         static logPayment(productName: string, productId: string, quantity: number, price: number,
-                   currency: string, transactionId: string, parameters: { [key: string]: string; }): void;
+                   currency: string, transactionId: string, parameters: { [key: string]: string | number | boolean; }): void;
+
+        /**
+         * Get the counters of the payment deduplication. Android only, empty on iOS and tvOS.
+         * 
+         * @return the Promise object of the number of tracked transaction Ids and of dropped duplicates.
+         */
+        static getPaymentStats(): Promise<{ trackedTransactions: number; duplicatesDropped: number; }>;
 
         /**
          * End a timed event.
@@ -285,7 +340,50 @@ declare module 'react-native-flurry-sdk' {
          * @param eventId    The name/id of the event.
          * @param parameters A {@code Map<String, String>} of parameters to log with this event.
          */
-        static endTimedEvent(eventId: string, parameters?: { [key: string]: string; }): void;
+        static endTimedEvent(eventId: string, parameters?: { [key: string]: string | number | boolean; }): void;
+
+        /**
+         * Log a timed event whose duration is measured per instance, e.g. per screen being loaded.
+         * On Android, the duration is also recorded locally, see getTimedEventStats.
+         * 
+         * e.g. Flurry.logTimedEventInstance('Screen Load', screenKey);
+         * 
+         * @param eventId       The name/id of the event.
+         * @param instanceToken Identifies this instance of the timed event.
+         * @param parameters    A {@code Map<String, String>} of parameters to log with this event.
+         */
+        static logTimedEventInstance(eventId: string, instanceToken: string, parameters?: { [key: string]: string | number | boolean; } | null): void;
+
+        /**
+         * End a timed event instance. On Android, the measured duration is added as the durationMillis parameter.
+         * It takes the last of the 10 parameter slots, so parameters beyond 9 are left out in key order
+         * and counted as excessParams.
+         * 
+         * @param eventId       The name/id of the event.
+         * @param instanceToken The token passed to logTimedEventInstance.
+         * @param parameters    A {@code Map<String, String>} of parameters to log with this event.
+         */
+        static endTimedEventInstance(eventId: string, instanceToken: string, parameters?: { [key: string]: string | number | boolean; } | null): void;
+
+        /**
+         * Set how long a timed event may run before it is ended automatically. Android only.
+         * 
+         * @param timeoutMillis timeout in milliseconds, default is 30 minutes.
+         */
+        static setTimedEventTimeout(timeoutMillis?: number): void;
+
+        /**
+         * Get the locally measured durations of timed events. Android only, empty on iOS and tvOS.
+         * 
+         * e.g.
+         * Flurry.getTimedEventStats().then((stats) => {
+         *     console.log('Screen load p90: ' + stats.events['Screen Load'].p90Millis);
+         * });
+         * 
+         * @return the Promise object of the number of running and expired timers, and the durations per event.
+         */
+        static getTimedEventStats(): Promise<{ active: number; expired: number;
+                                               events: { [eventId: string]: Flurry.LatencyStats; }; }>;
 
         /**
          * Report errors that your app catches.
@@ -300,7 +398,7 @@ declare module 'react-native-flurry-sdk' {
          * @param errorClass  Class in which the error is reported.
          * @param errorParams A {@code Map<String, String>} of parameters to log with this report.
          */
-        static onError(errorId: string, message: string, errorClass: string, errorParams?: { [key: string]: string; }): void;
+        static onError(errorId: string, message: string, errorClass: string, errorParams?: { [key: string]: string | number | boolean; }): void;
 
         /**
          * Log a page view.
@@ -309,6 +407,238 @@ declare module 'react-native-flurry-sdk' {
          */
         static onPageView(): void;
 
+        /**
+         * Set what to do when the native dispatch queue is full. Android only.
+         * Flurry calls are executed in order on a native worker thread, and queued while it is busy.
+         * 
+         * e.g. Flurry.setDispatchOverflowPolicy(Flurry.DispatchOverflowPolicy.BLOCK);
+         * 
+         * @param overflowPolicy type of Flurry.DispatchOverflowPolicy, default is DROP_OLDEST.
+         */
+        static setDispatchOverflowPolicy(overflowPolicy: string): void;
+
+        /**
+         * Enforce the Flurry limits of 10 parameters per event, and 255 characters per key and value,
+         * while the native module builds the parameters. Parameters beyond the count are left out;
+         * overlong keys and values are truncated (TRUNCATE) or left out (REJECT). Android only.
+         * 
+         * e.g. Flurry.setParamValidation(Flurry.ParamValidation.TRUNCATE);
+         * 
+         * @param validation type of Flurry.ParamValidation, default is OFF.
+         */
+        static setParamValidation(validation: string): void;
+
+        /**
+         * Get the parameter validation counters. Android only, empty on iOS and tvOS.
+         * 
+         * @return the Promise object of the validation mode and the violation counts.
+         */
+        static getParamValidationStats(): Promise<{ validation: string; truncatedKeys: number; truncatedValues: number;
+                                                    rejectedParams: number; excessParams: number; nestedParams: number; }>;
+
+        /**
+         * Set how long the app pause waits for the buffered Flurry calls, aggregated events and breadcrumbs
+         * to reach the Flurry SDK, and for the journal to be synced. Android only.
+         * Periodic housekeeping is stopped while the app is in the background.
+         * 
+         * e.g. Flurry.setPauseFlushBudget(100);
+         * 
+         * @param budgetMillis the maximum wait in milliseconds, 0 to flush without waiting. Default is 50.
+         */
+        static setPauseFlushBudget(budgetMillis?: number): void;
+
+        /**
+         * Get the counters of the flushes done when the app pauses. Android only, empty on iOS and tvOS.
+         * 
+         * @return the Promise object of the pause state, the flush and timeout counts, and the last flush duration.
+         */
+        static getLifecycleStats(): Promise<{ paused: boolean; pauseFlushes: number; pauseFlushTimeouts: number;
+                                              lastPauseFlushMillis: number; }>;
+
+        /**
+         * Enable the watchdog of the Flurry SDK calls made by the plugin. Android only.
+         * A low priority thread flags the calls running over the threshold and samples their stack once.
+         * 
+         * e.g. Flurry.setCallWatchdog(true, 50);
+         * 
+         * @param enabled   true to enable the watchdog. Default is true.
+         * @param thresholdMillis the duration in milliseconds over which a call is flagged. Default is 20.
+         */
+        static setCallWatchdog(enabled?: boolean, thresholdMillis?: number): void;
+
+        /**
+         * Get the stalled Flurry SDK calls flagged by the watchdog. Android only, empty on iOS and tvOS.
+         * Stalls are keyed by the Flurry SDK method they were running, with the last sampled stack.
+         * 
+         * e.g.
+         * Flurry.getCallWatchdogStats().then((stats) => {
+         *     Object.keys(stats.stalls).forEach((call) => console.log(call, stats.stalls[call].stack));
+         * });
+         * 
+         * @return the Promise object of the stall counts, durations and stacks.
+         */
+        static getCallWatchdogStats(): Promise<{ enabled: boolean; thresholdMillis: number;
+                                                 stalls: { [call: string]: { count: number; duration: Flurry.LatencyStats;
+                                                                             stack: string[]; } }; }>;
+
+        /**
+         * Get the counters of the native dispatch queue. Android only, empty on iOS and tvOS.
+         * preInitPending and preInitDropped count the calls held until the Flurry session has started.
+         * Errors and payments go through a priority lane which is drained first and never dropped.
+         * It is unbounded, priorityPeak is its deepest backlog and priorityOverCapacity counts the calls
+         * enqueued while it held more calls than the capacity.
+         * 
+         * e.g.
+         * Flurry.getDispatchStats().then((stats) => {
+         *     console.log('Dropped Flurry calls: ' + stats.dropped);
+         * });
+         * 
+         * @return the Promise object of the dispatch queue counters.
+         */
+        static getDispatchStats(): Promise<{ overflowPolicy: string; capacity: number; pending: number;
+                                             enqueued: number; dropped: number; drained: number;
+                                             preInitPending: number; preInitDropped: number;
+                                             priorityPending: number; priorityEnqueued: number; priorityDrained: number;
+                                             priorityPeak: number; priorityOverCapacity: number; }>;
+
+        /**
+         * Get the startup timing of the Flurry agent, in milliseconds, -1 if not reached yet.
+         * Android only, empty on iOS and tvOS.
+         * 
+         * e.g.
+         * Flurry.getStartupMetrics().then((metrics) => {
+         *     console.log('Flurry build blocked for ' + metrics.buildBlockingMillis + ' ms');
+         * });
+         * 
+         * @return the Promise object of the startup timing.
+         */
+        static getStartupMetrics(): Promise<{ deferred: boolean; buildBlockingMillis: number; deferMillis: number;
+                                              buildMillis: number; timeToSessionMillis: number; }>;
+
+        /**
+         * Enable the instrumentation of the plugin itself: bridge call counts, and the time spent queueing and
+         * executing Flurry calls, converting parameters and emitting events. Disabled by default. Android only.
+         * 
+         * @param enabled true to enable the plugin metrics.
+         */
+        static setPluginMetricsEnabled(enabled?: boolean): void;
+
+        /**
+         * Periodically write the plugin metrics to logcat while they are enabled. Android only.
+         * 
+         * @param intervalMillis interval in milliseconds, 0 (default) to stop.
+         */
+        static setPluginMetricsLogInterval(intervalMillis?: number): void;
+
+        /**
+         * Get the plugin metrics. Android only, empty on iOS and tvOS.
+         * 
+         * e.g.
+         * Flurry.getPluginMetrics().then((metrics) => {
+         *     console.log('Flurry call p99: ' + metrics.agent.p99Millis);
+         * });
+         * 
+         * @return the Promise object of the call counts by method, and the latency of each stage.
+         */
+        static getPluginMetrics(): Promise<{ enabled: boolean; calls: { [method: string]: number; };
+                                             dispatchWait: Flurry.LatencyStats; agent: Flurry.LatencyStats;
+                                             toMap: Flurry.LatencyStats; emit: Flurry.LatencyStats; }>;
+
+        /**
+         * Get the statistics of the config and messaging events emitted to JS. Android only, empty on iOS and tvOS.
+         * Events within a frame are sent in batches, repeated states are collapsed,
+         * and events without a listener are dropped.
+         * 
+         * @return the Promise object of the emitted, batched, collapsed and dropped event counts.
+         */
+        static getEmitStats(): Promise<{ events: number; batches: number; collapsed: number; dropped: number; }>;
+
+        /**
+         * Get the counters of the native breadcrumb buffer. Android only, empty on iOS and tvOS.
+         * 
+         * @return the Promise object of the buffered breadcrumbs, and the overwritten and flushed counts.
+         */
+        static getBreadcrumbStats(): Promise<{ pending: number; overwritten: number; flushed: number; }>;
+
+        /**
+         * Set the rules to sample, rate limit and de-duplicate untimed events before they are sent to Flurry.
+         * Rules are keyed by event Id, "*" applies to events without their own rule. Android only.
+         * 
+         * e.g.
+         * Flurry.setEventSamplingRules({
+         *     'Video Progress': { sampleRate: 0.1 },
+         *     'Scroll': { ratePerSecond: 1, burst: 5, dedupMillis: 1000 }
+         * });
+         * 
+         * @param rules sampleRate keeps the given fraction of events, ratePerSecond and burst limit the rate,
+         *              dedupMillis drops identical events within the window; null to remove all rules.
+         */
+        static setEventSamplingRules(rules: { [eventId: string]: { sampleRate?: number; ratePerSecond?: number;
+                                                                     burst?: number; dedupMillis?: number; }; } | null): void;
+
+        /**
+         * Load the event sampling rules from a Flurry Config key, as JSON in the format of setEventSamplingRules.
+         * The rules are reloaded whenever new config data is activated. Android only.
+         * 
+         * @param key the Flurry Config key of the rules.
+         */
+        static setEventSamplingConfigKey(key: string): void;
+
+        /**
+         * Get the number of events not sent to Flurry because of the sampling rules. Android only, empty on iOS and tvOS.
+         * 
+         * e.g.
+         * Flurry.getEventSamplingStats().then((stats) => {
+         *     console.log('Sampled out events: ' + stats.sampledOut);
+         * });
+         * 
+         * @return the Promise object of the total and per event counters.
+         */
+        static getEventSamplingStats(): Promise<{ sampledOut: number; throttled: number; deduplicated: number;
+                                                  events: { [eventId: string]: { accepted: number; sampledOut: number;
+                                                                                 throttled: number; deduplicated: number; }; }; }>;
+
+        /**
+         * Aggregate an untimed event instead of logging every occurrence. Occurrences with the same parameter
+         * values are folded into one summary event, flushed periodically and when the app goes to the background.
+         * A summary has the original parameters plus aggregatedCount, and aggregatedSum if sumKey is set. Android only.
+         * These take the last of the 10 parameter slots, so the original parameters beyond 9, or 8 with sumKey,
+         * are left out in key order and counted as excessParams.
+         * 
+         * e.g. Flurry.registerAggregatedEvent('Item Impression');
+         *      Flurry.registerAggregatedEvent('Purchase Amount', 'amount');
+         * 
+         * @param eventId the event to aggregate.
+         * @param sumKey  optional numeric parameter whose values are summed instead of being part of the key.
+         */
+        static registerAggregatedEvent(eventId: string, sumKey?: string | null): void;
+
+        /**
+         * Log the event as is again. Pending summaries are logged with the next flush. Android only.
+         * 
+         * @param eventId the aggregated event.
+         */
+        static unregisterAggregatedEvent(eventId: string): void;
+
+        /**
+         * Set how often the summary events are logged. Android only.
+         * 
+         * @param intervalMillis interval in milliseconds, at least 1000, default is 60000.
+         */
+        static setAggregationFlushInterval(intervalMillis?: number): void;
+
+        /**
+         * Log the pending summary events now. Android only.
+         */
+        static flushAggregatedEvents(): void;
+
+        /**
+         * Get the aggregation counters. Android only, empty on iOS and tvOS.
+         * 
+         * @return the Promise object of the number of pending summaries, folded events and flushed summaries.
+         */
+        static getAggregationStats(): Promise<{ pending: number; folded: number; flushed: number; }>;
+
         /**
          * Register a listener for the state of fetching. Multiple listeners can be passed in and each
          * one will be called in the order they are registered.
@@ -322,6 +652,7 @@ declare module 'react-native-flurry-sdk' {
          *                                     Flurry Config can receive activate notification when cached data is read,
          *                                     and when newly fetched data is been activated.
          *                                     Event.isCache: true if activated from the cached data
+         * Event.version: increased on every activation, config values are unchanged while it stays the same.
          *
          * e.g.
          * Flurry.addConfigListener((event) => {
@@ -349,7 +680,7 @@ declare module 'react-native-flurry-sdk' {
          * @param callback Callback listener to be registered.
          */
         static addConfigListener(
-            callback: (event: { Type: string; isCache?: boolean; isRetrying?: boolean; }) => void): void;
+            callback: (event: { Type: string; version?: number; isCache?: boolean; isRetrying?: boolean; }) => void): void;
 
         /**
          * Unregister a callback listener
@@ -357,7 +688,7 @@ declare module 'react-native-flurry-sdk' {
          * @param callback Callback listener to be removed.
          */
         static removeConfigListener(
-            callback: (event: { Type: string; isCache?: boolean; isRetrying?: boolean; }) => void): void;
+            callback: (event: { Type: string; version?: number; isCache?: boolean; isRetrying?: boolean; }) => void): void;
 
         /**
          * Fetch Config will trigger an async call to the server. Server has a throttle where when
@@ -399,12 +730,49 @@ declare module 'react-native-flurry-sdk' {
         static getConfigString(key?: string, defaultValue?: string, keyAndDefault?: { [key: string]: string; }):
                                Promise<{ [key: string]: string; }>;
 
+        /**
+         * Synchronously retrieves a String value from the configuration, e.g. during the first render.
+         * Values are served from the native config cache. Synchronous native calls are not available
+         * while debugging JS remotely.
+         *
+         * e.g. var message = Flurry.getConfigStringSync('welcome_message', 'Welcome!');
+         *
+         * @param key          The name of the configuration to retrieve.
+         * @param defaultValue Value to return if this configuration does not exist.
+         * @return The configuration value if it exists, or defaultValue.
+         */
+        static getConfigStringSync(key: string, defaultValue: string): string;
+
+        /**
+         * Synchronously retrieves a Map of String values from the configuration, e.g. during the first render.
+         *
+         * e.g. var values = Flurry.getConfigMapSync({ welcome_message: 'Welcome!', welcome_font_size: '12' });
+         *
+         * @param keyAndDefault A Map of name and the default values.
+         * @return Map of the configuration values, or the default values.
+         */
+        static getConfigMapSync(keyAndDefault: { [key: string]: string; }): { [key: string]: string; };
+
+        /**
+         * Retrieves all config values read so far in one call. The values are cached natively,
+         * and refreshed when new config data is activated. Android only, empty on iOS and tvOS.
+         *
+         * e.g.
+         * Flurry.getConfigSnapshot().then((snapshot) => {
+         *     console.log('Config version ' + snapshot.version + ': ' + snapshot.values.welcome_message);
+         * });
+         *
+         * @return the Promise object of the config version and the Map of cached values.
+         */
+        static getConfigSnapshot(): Promise<{ version: number; values: { [key: string]: string; }; }>;
+
         /**
          * Add a listener to receive messaging events, and handle the notification.
          * Message.Type: RECEIVED:  a notification has been received.
          *               CLICKED:   a notification has been clicked.
          *               CANCELLED: a notification has been cancelled. (Android only)
          *               REFRESH: push notification token has been changed. (Android only)
+         * Message.Id:          message id to answer with willHandleMessage (Android only)
          * Message.Title:       message title
          * Message.Body:        message body
          * Message.Data:        message data (Map)
@@ -420,9 +788,9 @@ declare module 'react-native-flurry-sdk' {
          * e.g.
          * Flurry.addMessagingListener((message) => {
          *     if (message.Type === Flurry.MessageType.RECEIVED) {
-         *         Flurry.willHandleMessage(false);
+         *         Flurry.willHandleMessage(false, message.Id);
          *     } else if (message.Type === Flurry.MessageType.CLICKED) {
-         *         Flurry.willHandleMessage(false);
+         *         Flurry.willHandleMessage(false, message.Id);
          *     }
          *
          *     Flurry.printMessage(message);
@@ -431,7 +799,7 @@ declare module 'react-native-flurry-sdk' {
          * @param callback messaging event callback.
          */
         static addMessagingListener(callback: (message: { Type: string;
-                    Title?: string; Body?: string; Data?: { [key: string]: string; }; ClickAction?: string;
+                    Id?: number; Title?: string; Body?: string; Data?: { [key: string]: string; }; ClickAction?: string;
                     Token?: string; }) => void): void;
 
         /**
@@ -440,7 +808,7 @@ declare module 'react-native-flurry-sdk' {
          * @param callback messaging event callback.
          */
         static removeMessagingListener(callback: (message: { Type: string;
-                    Title?: string; Body?: string; Data?: { [key: string]: string; }; ClickAction?: string;
+                    Id?: number; Title?: string; Body?: string; Data?: { [key: string]: string; }; ClickAction?: string;
                     Token?: string; }) => void): void;
 
         /**
@@ -451,12 +819,35 @@ declare module 'react-native-flurry-sdk' {
          * Required: Even it is supported by Android only, it is required to notify Flurry
          *           when received event types of MessageType.RECEIVED or MessageType.CLICKED.
          *
-         * e.g. Flurry.willHandleMessage(true);
+         * There are two overloads,
+         * e.g. Flurry.willHandleMessage(true); Flurry.willHandleMessage(true, message.Id);
+         * - willHandleMessage(handled)
+         * - willHandleMessage(handled, messageId)
+         *
+         * @param handled   True if you've handled the notification.
+         *                  False if you haven't and want Flurry to handle it.
+         * @param messageId The Id of the message being answered (Android only). Without it, the answer
+         *                  applies to the oldest message still waiting.
+         */
+        static willHandleMessage(handled: boolean, messageId?: number): void;
+
+        /**
+         * Set how long Flurry waits for willHandleMessage before handling the notification itself. Android only.
+         *
+         * e.g. Flurry.setMessagingReplyTimeout(500);
+         *
+         * @param timeoutMillis The time in milliseconds to wait for the answer, default is 300.
+         */
+        static setMessagingReplyTimeout(timeoutMillis?: number): void;
+
+        /**
+         * Get the counters of willHandleMessage answers. Android only, empty on iOS and tvOS.
          *
-         * @param handled True if you've handled the notification.
-         *                False if you haven't and want Flurry to handle it.
+         * @return the Promise object of the number of replies, timeouts, late replies, and reply latencies.
          */
-        static willHandleMessage(handled: boolean): void;
+        static getMessagingMetrics(): Promise<{ replyTimeoutMillis: number; pending: number; replies: number;
+                                                timeouts: number; lateReplies: number;
+                                                replyLatencyTotalMillis: number; replyLatencyMaxMillis: number; }>;
 
         /**
          * A helper function to print the message.
@@ -464,7 +855,7 @@ declare module 'react-native-flurry-sdk' {
          * @param message the message received.
          */
         static printMessage(message: { Type: string;
-                    Title?: string; Body?: string; Data?: { [key: string]: string; }; ClickAction?: string;
+                    Id?: number; Title?: string; Body?: string; Data?: { [key: string]: string; }; ClickAction?: string;
                     Token?: string; }): void;
 
     }
@@ -553,6 +944,25 @@ declare module 'react-native-flurry-sdk' {
              */
             withMessaging(enableMessaging?: boolean): Flurry.Builder;
 
+            /**
+             * True to record logEvent, onError and logPayment calls in an on-disk journal before they are sent
+             * to Flurry. Calls that did not reach Flurry, e.g. lost when the app was killed before the session
+             * started, are replayed on the next start, or once the journal is open if that is later.
+             * The journal is opened in the background, calls made before are not journaled. Android only.
+             * 
+             * @param enableEventJournal true to enable the journal.
+             */
+            withEventJournal(enableEventJournal?: boolean): Flurry.Builder;
+
+            /**
+             * True to initialize Flurry on a low priority background thread instead of during the build call.
+             * Flurry calls are held until the session starts. Android only.
+             * 
+             * @param deferredStart true to defer the initialization.
+             * @param delayMillis   delay in milliseconds before initializing, default is 0.
+             */
+            withDeferredStart(deferredStart?: boolean, delayMillis?: number): Flurry.Builder;
+
             /**
              * Set the minimum duration (in minutes) before a partial session report is sent to Flurry. The acceptable values are between 5 and 60 minutes. tvOS only.
              * 
@@ -567,6 +977,18 @@ declare module 'react-native-flurry-sdk' {
              */
             withTVEventCountThreshold(threshold?: number): Flurry.Builder;
         }
+
+        /**
+         * Latency statistics in milliseconds, reported by getTimedEventStats and getPluginMetrics.
+         */
+        interface LatencyStats {
+            count: number;
+            meanMillis: number;
+            maxMillis: number;
+            p50Millis: number;
+            p90Millis: number;
+            p99Millis: number;
+        }
     }
 
     export default Flurry;
@@ -9,6 +9,67 @@ const { ReactNativeFlurry } = NativeModules;
 
 let initFlurryCalled = false;
 
+// Android only, events logged within the window are sent to native in one batch.
+// The batch is flushed before any other call which logs or changes the state events are logged
+// against, e.g. setUserId or addSessionProperty, so that queued events keep their order and context.
+let eventBatchWindow = 0;
+let eventBatch = [];
+let eventBatchTimer = null;
+
+function flushEventBatch() {
+    if (eventBatchTimer !== null) {
+        clearTimeout(eventBatchTimer);
+        eventBatchTimer = null;
+    }
+
+    if (eventBatch.length > 0) {
+        const events = eventBatch;
+        eventBatch = [];
+        ReactNativeFlurry.logEventsBatch(events);
+    }
+}
+
+function queueEvent(event) {
+    eventBatch.push(event);
+    if (eventBatchTimer === null) {
+        eventBatchTimer = setTimeout(flushEventBatch, eventBatchWindow);
+    }
+}
+
+// Android only, native coalesces the events of a frame into one array event.
+if (Platform.OS === 'android') {
+    DeviceEventEmitter.addListener('FlurryConfigEventBatch', (events) => {
+        events.forEach((event) => DeviceEventEmitter.emit('FlurryConfigEvent', event));
+    });
+    DeviceEventEmitter.addListener('FlurryMessagingEventBatch', (events) => {
+        events.forEach((event) => DeviceEventEmitter.emit('FlurryMessagingEvent', event));
+    });
+}
+
+let messagingListenerCount = 0;
+
+// Android only, schemas registered by event Id, parameters of these events are sent by position.
+const eventSchemas = new Map();
+const MAX_EVENT_SCHEMAS = 4096;
+
+function compactParameters(eventId, parameters) {
+    const schema = eventSchemas.get(eventId);
+    if (schema === undefined || parameters === null || typeof parameters !== 'object') {
+        return null;
+    }
+
+    const values = new Array(schema.keys.length).fill(null);
+    for (const key of Object.keys(parameters)) {
+        const index = schema.indexes.get(key);
+        if (index === undefined) {
+            // Not part of the schema, send the parameters as a map.
+            return null;
+        }
+        values[index] = parameters[key];
+    }
+    return { schemaId: schema.schemaId, values: values };
+}
+
 function priorInit(wrapped) {
     console.warn(`Flurry.${arguments.callee.caller.name} method is deprecated, please use Flurry.Builder instead.`);
     return function() {
@@ -46,6 +107,24 @@ export default class Flurry {
         ACTIVATED: 'ActivateComplete'
     });
 
+    /**
+     * Android only, what to do when the native dispatch queue is full.
+     */
+    static DispatchOverflowPolicy = Object.freeze({
+        DROP_OLDEST: 'dropOldest',
+        DROP_NEWEST: 'dropNewest',
+        BLOCK:       'block'
+    });
+
+    /**
+     * Android only, how event parameters exceeding the Flurry limits are handled.
+     */
+    static ParamValidation = Object.freeze({
+        OFF:      'off',
+        TRUNCATE: 'truncate',
+        REJECT:   'reject'
+    });
+
     static MessageType = Object.freeze({
         RECEIVED:  'NotificationReceived',
         CLICKED:   'NotificationClicked',
@@ -118,6 +197,25 @@ export default class Flurry {
             return this;
         }
 
+        withEventJournal(enableEventJournal = true) {
+            if (Platform.OS === 'android') {
+                ReactNativeFlurry.withEventJournal(enableEventJournal);
+            }
+            return this;
+        }
+
+        withDeferredStart(deferredStart = true, delayMillis = 0) {
+            if (typeof delayMillis !== 'number' || delayMillis < 0) {
+                console.error('Flurry.Builder.withDeferredStart: delayMillis must be a non-negative number.');
+                return this;
+            }
+
+            if (Platform.OS === 'android') {
+                ReactNativeFlurry.withDeferredStart(deferredStart, delayMillis);
+            }
+            return this;
+        }
+
         withTVSessionReportingInterval(interval = 5) {
             if (Platform.OS === 'ios' && Platform.isTVOS) {
                 ReactNativeFlurry.withTVSessionReportingInterval(interval);
@@ -216,6 +314,7 @@ export default class Flurry {
             return;
         }
 
+        flushEventBatch();
         ReactNativeFlurry.setAge(age);
     }
 
@@ -225,6 +324,7 @@ export default class Flurry {
             return;
         }
 
+        flushEventBatch();
         ReactNativeFlurry.setGender(gender);
     }
 
@@ -234,6 +334,7 @@ export default class Flurry {
             return;
         }
 
+        flushEventBatch();
         ReactNativeFlurry.setReportLocation(reportLocation);
     }
 
@@ -248,6 +349,7 @@ export default class Flurry {
             return;
         }
 
+        flushEventBatch();
         ReactNativeFlurry.setSessionOrigin(originName, deepLink);
     }
 
@@ -257,6 +359,7 @@ export default class Flurry {
             return;
         }
 
+        flushEventBatch();
         ReactNativeFlurry.setUserId(userId);
     }
 
@@ -266,6 +369,7 @@ export default class Flurry {
             return;
         }
 
+        flushEventBatch();
         ReactNativeFlurry.setVersionName(versionName);
     }
 
@@ -275,6 +379,7 @@ export default class Flurry {
             return;
         }
 
+        flushEventBatch();
         ReactNativeFlurry.setIAPReportingEnabled(enableIAP);
     }
 
@@ -294,6 +399,7 @@ export default class Flurry {
             return;
         }
 
+        flushEventBatch();
         if (arguments.length === 2) {
             ReactNativeFlurry.addOrigin(originName, originVersion);
         } else if (arguments.length === 3) {
@@ -312,6 +418,7 @@ export default class Flurry {
             return;
         }
 
+        flushEventBatch();
         ReactNativeFlurry.addSessionProperty(name, value);
     }
 
@@ -328,6 +435,7 @@ export default class Flurry {
             return;
         }
 
+        flushEventBatch();
         ReactNativeFlurry.logBreadcrumb(crashBreadcrumb);
     }
 
@@ -344,16 +452,89 @@ export default class Flurry {
             return;
         }
 
+        if (eventBatchWindow > 0) {
+            if (arguments.length === 1) {
+                queueEvent({ eventId: eventId });
+            } else if (arguments.length === 2) {
+                if (typeof arguments[1] === 'boolean') {
+                    queueEvent({ eventId: eventId, timed: arguments[1] });
+                } else if (Object.prototype.toString.call(arguments[1]).includes('Object')) {
+                    queueEvent({ eventId: eventId, parameters: arguments[1] });
+                }
+            } else if (arguments.length === 3) {
+                queueEvent({ eventId: eventId, parameters: parameters, timed: timed });
+            }
+            return;
+        }
+
         if (arguments.length === 1) {
             ReactNativeFlurry.logEvent(eventId);
         } else if (arguments.length === 2) {
             if (typeof arguments[1] === 'boolean') {
                 ReactNativeFlurry.logEventTimed(eventId, arguments[1]);
             } else if (Object.prototype.toString.call(arguments[1]).includes('Object')) {
-                ReactNativeFlurry.logEventParams(eventId, arguments[1]);
+                const compact = compactParameters(eventId, arguments[1]);
+                if (compact !== null) {
+                    ReactNativeFlurry.logEventCompact(compact.schemaId, compact.values, false);
+                } else {
+                    ReactNativeFlurry.logEventParams(eventId, arguments[1]);
+                }
             }
         } else if (arguments.length === 3) {
-            ReactNativeFlurry.logEventParamsTimed(eventId, parameters, timed);
+            const compact = compactParameters(eventId, parameters);
+            if (compact !== null) {
+                ReactNativeFlurry.logEventCompact(compact.schemaId, compact.values, timed);
+            } else {
+                ReactNativeFlurry.logEventParamsTimed(eventId, parameters, timed);
+            }
+        }
+    }
+
+    /**
+     * Android only, register the parameter keys of an event once. The parameters of the event
+     * are then sent by position, the event Id and keys are not sent again.
+     */
+    static registerEventSchema(eventId, paramKeys) {
+        if (typeof eventId !== 'string') {
+            console.error(`Flurry.registerEventSchema: eventId must be a string. Got ${eventId}`);
+            return;
+        }
+
+        if (!Array.isArray(paramKeys) || !paramKeys.every((key) => typeof key === 'string')) {
+            console.error(`Flurry.registerEventSchema: paramKeys must be an array of strings. Got ${paramKeys}`);
+            return;
+        }
+
+        if (Platform.OS !== 'android') {
+            return;
+        }
+
+        const existing = eventSchemas.get(eventId);
+        const schemaId = (existing !== undefined) ? existing.schemaId : eventSchemas.size;
+        if (schemaId >= MAX_EVENT_SCHEMAS) {
+            console.error(`Flurry.registerEventSchema: at most ${MAX_EVENT_SCHEMAS} schemas can be registered.`);
+            return;
+        }
+        const indexes = new Map();
+        paramKeys.forEach((key, index) => indexes.set(key, index));
+
+        ReactNativeFlurry.registerEventSchema(schemaId, eventId, paramKeys);
+        eventSchemas.set(eventId, { schemaId: schemaId, keys: paramKeys.slice(), indexes: indexes });
+    }
+
+    /**
+     * Android only, coalesce logEvent calls made within the window into one bridge call.
+     * Set 0 to send every event immediately (default).
+     */
+    static setEventBatchWindow(windowMillis = 0) {
+        if (typeof windowMillis !== 'number' || windowMillis < 0) {
+            console.error(`Flurry.setEventBatchWindow: windowMillis must be a non-negative number. Got ${windowMillis}`);
+            return;
+        }
+
+        flushEventBatch();
+        if (Platform.OS === 'android') {
+            eventBatchWindow = windowMillis;
         }
     }
 
@@ -388,9 +569,14 @@ export default class Flurry {
             return;
         }
 
+        flushEventBatch();
         ReactNativeFlurry.logPayment(productName, productId, quantity, price, currency, transactionId, parameters);
     }
 
+    static getPaymentStats() {
+        return ReactNativeFlurry.getPaymentStats();
+    }
+
     /**
      * There are two overloads
      * - endTimedEvent(eventId)
@@ -402,13 +588,62 @@ export default class Flurry {
             return;
         }
 
+        flushEventBatch();
         if (arguments.length === 1) {
             ReactNativeFlurry.endTimedEvent(eventId);
         } else if (arguments.length === 2) {
-            ReactNativeFlurry.endTimedEventParams(eventId, parameters);
+            const compact = compactParameters(eventId, parameters);
+            if (compact !== null) {
+                ReactNativeFlurry.endTimedEventCompact(compact.schemaId, compact.values);
+            } else {
+                ReactNativeFlurry.endTimedEventParams(eventId, parameters);
+            }
         }
     }
 
+    static logTimedEventInstance(eventId, instanceToken, parameters = null) {
+        if (typeof eventId !== 'string') {
+            console.error(`Flurry.logTimedEventInstance: eventId must be a string. Got ${eventId}`);
+            return;
+        }
+
+        if (typeof instanceToken !== 'string') {
+            console.error(`Flurry.logTimedEventInstance: instanceToken must be a string. Got ${instanceToken}`);
+            return;
+        }
+
+        flushEventBatch();
+        ReactNativeFlurry.logTimedEventInstance(eventId, instanceToken, parameters);
+    }
+
+    static endTimedEventInstance(eventId, instanceToken, parameters = null) {
+        if (typeof eventId !== 'string') {
+            console.error(`Flurry.endTimedEventInstance: eventId must be a string. Got ${eventId}`);
+            return;
+        }
+
+        if (typeof instanceToken !== 'string') {
+            console.error(`Flurry.endTimedEventInstance: instanceToken must be a string. Got ${instanceToken}`);
+            return;
+        }
+
+        flushEventBatch();
+        ReactNativeFlurry.endTimedEventInstance(eventId, instanceToken, parameters);
+    }
+
+    static setTimedEventTimeout(timeoutMillis = 1800000) {
+        if (typeof timeoutMillis !== 'number' || timeoutMillis <= 0) {
+            console.error(`Flurry.setTimedEventTimeout: timeoutMillis must be a positive number. Got ${timeoutMillis}`);
+            return;
+        }
+
+        ReactNativeFlurry.setTimedEventTimeout(timeoutMillis);
+    }
+
+    static getTimedEventStats() {
+        return ReactNativeFlurry.getTimedEventStats();
+    }
+
     /**
      * There are two overloads
      * - onError(errorId, message, errorClass)
@@ -430,17 +665,171 @@ export default class Flurry {
             return;
         }
 
+        flushEventBatch();
         if (arguments.length === 3) {
             ReactNativeFlurry.onError(errorId, message, errorClass);
         } else if (arguments.length === 4) {
-            ReactNativeFlurry.onErrorParams(errorId, message, errorClass, errorParams);
+            const compact = compactParameters(errorId, errorParams);
+            if (compact !== null) {
+                ReactNativeFlurry.onErrorCompact(compact.schemaId, message, errorClass, compact.values);
+            } else {
+                ReactNativeFlurry.onErrorParams(errorId, message, errorClass, errorParams);
+            }
         }
     }
 
     static onPageView() {
+        flushEventBatch();
         ReactNativeFlurry.onPageView();
     }
 
+    static setDispatchOverflowPolicy(overflowPolicy) {
+        if (!Object.values(Flurry.DispatchOverflowPolicy).includes(overflowPolicy)) {
+            console.error(`Flurry.setDispatchOverflowPolicy: overflowPolicy must be type of Flurry.DispatchOverflowPolicy. Got ${overflowPolicy}`);
+            return;
+        }
+
+        ReactNativeFlurry.setDispatchOverflowPolicy(overflowPolicy);
+    }
+
+    static setParamValidation(validation) {
+        if (!Object.values(Flurry.ParamValidation).includes(validation)) {
+            console.error(`Flurry.setParamValidation: validation must be type of Flurry.ParamValidation. Got ${validation}`);
+            return;
+        }
+
+        flushEventBatch();
+        ReactNativeFlurry.setParamValidation(validation);
+    }
+
+    static getParamValidationStats() {
+        return ReactNativeFlurry.getParamValidationStats();
+    }
+
+    static getDispatchStats() {
+        return ReactNativeFlurry.getDispatchStats();
+    }
+
+    static setPauseFlushBudget(budgetMillis = 50) {
+        if (typeof budgetMillis !== 'number' || budgetMillis < 0) {
+            console.error(`Flurry.setPauseFlushBudget: budgetMillis must be a non-negative number. Got ${budgetMillis}`);
+            return;
+        }
+
+        ReactNativeFlurry.setPauseFlushBudget(budgetMillis);
+    }
+
+    static getLifecycleStats() {
+        return ReactNativeFlurry.getLifecycleStats();
+    }
+
+    static setCallWatchdog(enabled = true, thresholdMillis = 20) {
+        if (typeof thresholdMillis !== 'number' || thresholdMillis <= 0) {
+            console.error(`Flurry.setCallWatchdog: thresholdMillis must be a positive number. Got ${thresholdMillis}`);
+            return;
+        }
+
+        ReactNativeFlurry.setCallWatchdog(enabled, thresholdMillis);
+    }
+
+    static getCallWatchdogStats() {
+        return ReactNativeFlurry.getCallWatchdogStats();
+    }
+
+    static getStartupMetrics() {
+        return ReactNativeFlurry.getStartupMetrics();
+    }
+
+    static setPluginMetricsEnabled(enabled = true) {
+        ReactNativeFlurry.setPluginMetricsEnabled(enabled);
+    }
+
+    static setPluginMetricsLogInterval(intervalMillis = 0) {
+        if (typeof intervalMillis !== 'number' || intervalMillis < 0) {
+            console.error(`Flurry.setPluginMetricsLogInterval: intervalMillis must be a non-negative number. Got ${intervalMillis}`);
+            return;
+        }
+
+        ReactNativeFlurry.setPluginMetricsLogInterval(intervalMillis);
+    }
+
+    static getPluginMetrics() {
+        return ReactNativeFlurry.getPluginMetrics();
+    }
+
+    static getEmitStats() {
+        return ReactNativeFlurry.getEmitStats();
+    }
+
+    static getBreadcrumbStats() {
+        return ReactNativeFlurry.getBreadcrumbStats();
+    }
+
+    static setEventSamplingRules(rules) {
+        if (rules !== null && typeof rules !== 'object') {
+            console.error(`Flurry.setEventSamplingRules: rules must be an object or null. Got ${rules}`);
+            return;
+        }
+
+        flushEventBatch();
+        ReactNativeFlurry.setEventSamplingRules(rules ? JSON.stringify(rules) : null);
+    }
+
+    static setEventSamplingConfigKey(key) {
+        if (typeof key !== 'string') {
+            console.error(`Flurry.setEventSamplingConfigKey: key must be a string. Got ${key}`);
+            return;
+        }
+
+        flushEventBatch();
+        ReactNativeFlurry.setEventSamplingConfigKey(key);
+    }
+
+    static getEventSamplingStats() {
+        return ReactNativeFlurry.getEventSamplingStats();
+    }
+
+    static registerAggregatedEvent(eventId, sumKey = null) {
+        if (typeof eventId !== 'string') {
+            console.error(`Flurry.registerAggregatedEvent: eventId must be a string. Got ${eventId}`);
+            return;
+        }
+
+        if (sumKey !== null && typeof sumKey !== 'string') {
+            console.error(`Flurry.registerAggregatedEvent: sumKey must be a string or null. Got ${sumKey}`);
+            return;
+        }
+
+        ReactNativeFlurry.registerAggregatedEvent(eventId, sumKey);
+    }
+
+    static unregisterAggregatedEvent(eventId) {
+        if (typeof eventId !== 'string') {
+            console.error(`Flurry.unregisterAggregatedEvent: eventId must be a string. Got ${eventId}`);
+            return;
+        }
+
+        ReactNativeFlurry.unregisterAggregatedEvent(eventId);
+    }
+
+    static setAggregationFlushInterval(intervalMillis = 60000) {
+        if (typeof intervalMillis !== 'number' || intervalMillis < 1000) {
+            console.error(`Flurry.setAggregationFlushInterval: intervalMillis must be a number of at least 1000. Got ${intervalMillis}`);
+            return;
+        }
+
+        ReactNativeFlurry.setAggregationFlushInterval(intervalMillis);
+    }
+
+    static flushAggregatedEvents() {
+        flushEventBatch();
+        ReactNativeFlurry.flushAggregatedEvents();
+    }
+
+    static getAggregationStats() {
+        return ReactNativeFlurry.getAggregationStats();
+    }
+
     static addConfigListener(callback) {
         if (typeof callback !== 'function') {
             console.error(`Flurry.addConfigListener: callback must be a function. Got ${callback}`);
@@ -491,6 +880,33 @@ export default class Flurry {
         }
     }
 
+    static getConfigStringSync(key, defaultValue) {
+        if (typeof key !== 'string') {
+            console.error(`Flurry.getConfigStringSync: key must be a string. Got ${key}`);
+            return defaultValue;
+        }
+
+        if (typeof defaultValue !== 'string') {
+            console.error(`Flurry.getConfigStringSync: defaultValue must be a string. Got ${defaultValue}`);
+            return defaultValue;
+        }
+
+        return ReactNativeFlurry.getConfigStringSync(key, defaultValue);
+    }
+
+    static getConfigMapSync(keyAndDefault) {
+        if (!Object.prototype.toString.call(keyAndDefault).includes('Object')) {
+            console.error(`Flurry.getConfigMapSync: keyAndDefault must be an object. Got ${keyAndDefault}`);
+            return keyAndDefault;
+        }
+
+        return ReactNativeFlurry.getConfigMapSync(keyAndDefault);
+    }
+
+    static getConfigSnapshot() {
+        return ReactNativeFlurry.getConfigSnapshot();
+    }
+
     static addMessagingListener(callback) {
         if (typeof callback !== 'function') {
             console.error(`Flurry.addMessagingListener: callback must be a function. Got ${callback}`);
@@ -500,6 +916,7 @@ export default class Flurry {
         var Emitter = (Platform.OS === 'android') ? DeviceEventEmitter : NativeAppEventEmitter;
         Emitter.addListener('FlurryMessagingEvent', callback);
 
+        messagingListenerCount++;
         ReactNativeFlurry.enableMessagingListener(true);
     }
 
@@ -511,10 +928,37 @@ export default class Flurry {
 
         var Emitter = (Platform.OS === 'android') ? DeviceEventEmitter : NativeAppEventEmitter;
         Emitter.removeListener('FlurryMessagingEvent', callback);
+
+        // Let native skip the messaging events once nobody listens.
+        if (messagingListenerCount > 0 && --messagingListenerCount === 0) {
+            ReactNativeFlurry.enableMessagingListener(false);
+        }
+    }
+
+    /**
+     * There are two overloads
+     * - willHandleMessage(handled)
+     * - willHandleMessage(handled, messageId)
+     */
+    static willHandleMessage(handled, messageId) {
+        if (typeof messageId === 'number') {
+            ReactNativeFlurry.willHandleMessageId(messageId, handled);
+        } else {
+            ReactNativeFlurry.willHandleMessage(handled);
+        }
+    }
+
+    static setMessagingReplyTimeout(timeoutMillis = 300) {
+        if (typeof timeoutMillis !== 'number' || timeoutMillis < 0) {
+            console.error(`Flurry.setMessagingReplyTimeout: timeoutMillis must be a non-negative number. Got ${timeoutMillis}`);
+            return;
+        }
+
+        ReactNativeFlurry.setMessagingReplyTimeout(timeoutMillis);
     }
 
-    static willHandleMessage(handled) {
-        ReactNativeFlurry.willHandleMessage(handled);
+    static getMessagingMetrics() {
+        return ReactNativeFlurry.getMessagingMetrics();
     }
 
     static printMessage(message) {
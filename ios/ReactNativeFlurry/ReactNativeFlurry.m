@@ -266,6 +266,22 @@ RCT_EXPORT_METHOD(endTimedEventParams:(nonnull NSString *)eventId params:(nullab
     [Flurry endTimedEvent:eventId withParameters:params];
 }
 
+RCT_EXPORT_METHOD(logTimedEventInstance:(nonnull NSString *)eventId instanceToken:(nonnull NSString *)instanceToken parameters:(nullable NSDictionary *)params) {
+    [Flurry logEvent:eventId withParameters:params timed:YES];
+}
+
+RCT_EXPORT_METHOD(endTimedEventInstance:(nonnull NSString *)eventId instanceToken:(nonnull NSString *)instanceToken parameters:(nullable NSDictionary *)params) {
+    [Flurry endTimedEvent:eventId withParameters:params];
+}
+
+RCT_EXPORT_METHOD(setTimedEventTimeout:(NSInteger)timeoutMillis) {
+    NSLog(@"Flurry.setTimedEventTimeout is not supported on iOS and tvOS.");
+}
+
+RCT_REMAP_METHOD(getTimedEventStats, getTimedEventStatsWithResolver:(RCTPromiseResolveBlock)resolve rejecter:(RCTPromiseRejectBlock)reject) {
+    resolve(@{});
+}
+
 RCT_EXPORT_METHOD(logBreadcrumb:(nonnull NSString *)breadcrumb) {
     [Flurry leaveBreadcrumb:breadcrumb];
 }
@@ -274,6 +290,10 @@ RCT_EXPORT_METHOD(logPayment:(NSString *)productName productId:(NSString *)produ
     NSLog(@"Flurry.logPayment is not supported on iOS. Please use Flurry.setIAPReportingEnabled instead.");
 }
 
+RCT_REMAP_METHOD(getPaymentStats, getPaymentStatsWithResolver:(RCTPromiseResolveBlock)resolve rejecter:(RCTPromiseRejectBlock)reject) {
+    resolve(@{});
+}
+
 RCT_EXPORT_METHOD(onPageView) {
 #if TARGET_OS_IOS
     [Flurry logPageView];
@@ -296,6 +316,100 @@ RCT_EXPORT_METHOD(onErrorParams:(nonnull NSString *)errorId message:(nullable NS
     [Flurry logError:errorId message:message error:error withParameters:parameters];
 }
 
+#pragma mark - Flurry Dispatch queue (Android only)
+
+RCT_EXPORT_METHOD(setDispatchOverflowPolicy:(nonnull NSString *)overflowPolicy) {
+    NSLog(@"Flurry.setDispatchOverflowPolicy is not supported on iOS and tvOS.");
+}
+
+RCT_EXPORT_METHOD(setPauseFlushBudget:(NSInteger)budgetMillis) {
+    NSLog(@"Flurry.setPauseFlushBudget is not supported on iOS and tvOS.");
+}
+
+RCT_REMAP_METHOD(getLifecycleStats, getLifecycleStatsWithResolver:(RCTPromiseResolveBlock)resolve rejecter:(RCTPromiseRejectBlock)reject) {
+    resolve(@{});
+}
+
+RCT_EXPORT_METHOD(setCallWatchdog:(BOOL)enabled thresholdMillis:(NSInteger)thresholdMillis) {
+    NSLog(@"Flurry.setCallWatchdog is not supported on iOS and tvOS.");
+}
+
+RCT_REMAP_METHOD(getCallWatchdogStats, getCallWatchdogStatsWithResolver:(RCTPromiseResolveBlock)resolve rejecter:(RCTPromiseRejectBlock)reject) {
+    resolve(@{});
+}
+
+RCT_EXPORT_METHOD(setParamValidation:(nonnull NSString *)validation) {
+    NSLog(@"Flurry.setParamValidation is not supported on iOS and tvOS.");
+}
+
+RCT_REMAP_METHOD(getParamValidationStats, getParamValidationStatsWithResolver:(RCTPromiseResolveBlock)resolve rejecter:(RCTPromiseRejectBlock)reject) {
+    resolve(@{});
+}
+
+RCT_REMAP_METHOD(getDispatchStats, getDispatchStatsWithResolver:(RCTPromiseResolveBlock)resolve rejecter:(RCTPromiseRejectBlock)reject) {
+    resolve(@{});
+}
+
+RCT_REMAP_METHOD(getStartupMetrics, getStartupMetricsWithResolver:(RCTPromiseResolveBlock)resolve rejecter:(RCTPromiseRejectBlock)reject) {
+    resolve(@{});
+}
+
+RCT_EXPORT_METHOD(setPluginMetricsEnabled:(BOOL)enabled) {
+    NSLog(@"Flurry.setPluginMetricsEnabled is not supported on iOS and tvOS.");
+}
+
+RCT_EXPORT_METHOD(setPluginMetricsLogInterval:(NSInteger)intervalMillis) {
+    NSLog(@"Flurry.setPluginMetricsLogInterval is not supported on iOS and tvOS.");
+}
+
+RCT_REMAP_METHOD(getPluginMetrics, getPluginMetricsWithResolver:(RCTPromiseResolveBlock)resolve rejecter:(RCTPromiseRejectBlock)reject) {
+    resolve(@{});
+}
+
+RCT_REMAP_METHOD(getEmitStats, getEmitStatsWithResolver:(RCTPromiseResolveBlock)resolve rejecter:(RCTPromiseRejectBlock)reject) {
+    resolve(@{});
+}
+
+RCT_REMAP_METHOD(getBreadcrumbStats, getBreadcrumbStatsWithResolver:(RCTPromiseResolveBlock)resolve rejecter:(RCTPromiseRejectBlock)reject) {
+    resolve(@{});
+}
+
+#pragma mark - Flurry Event sampling (Android only)
+
+RCT_EXPORT_METHOD(setEventSamplingRules:(NSString *)rules) {
+    NSLog(@"Flurry.setEventSamplingRules is not supported on iOS and tvOS.");
+}
+
+RCT_EXPORT_METHOD(setEventSamplingConfigKey:(nonnull NSString *)key) {
+    NSLog(@"Flurry.setEventSamplingConfigKey is not supported on iOS and tvOS.");
+}
+
+RCT_REMAP_METHOD(getEventSamplingStats, getEventSamplingStatsWithResolver:(RCTPromiseResolveBlock)resolve rejecter:(RCTPromiseRejectBlock)reject) {
+    resolve(@{});
+}
+
+#pragma mark - Flurry Event aggregation (Android only)
+
+RCT_EXPORT_METHOD(registerAggregatedEvent:(nonnull NSString *)eventId sumKey:(NSString *)sumKey) {
+    NSLog(@"Flurry.registerAggregatedEvent is not supported on iOS and tvOS.");
+}
+
+RCT_EXPORT_METHOD(unregisterAggregatedEvent:(nonnull NSString *)eventId) {
+    NSLog(@"Flurry.unregisterAggregatedEvent is not supported on iOS and tvOS.");
+}
+
+RCT_EXPORT_METHOD(setAggregationFlushInterval:(NSInteger)intervalMillis) {
+    NSLog(@"Flurry.setAggregationFlushInterval is not supported on iOS and tvOS.");
+}
+
+RCT_EXPORT_METHOD(flushAggregatedEvents) {
+    NSLog(@"Flurry.flushAggregatedEvents is not supported on iOS and tvOS.");
+}
+
+RCT_REMAP_METHOD(getAggregationStats, getAggregationStatsWithResolver:(RCTPromiseResolveBlock)resolve rejecter:(RCTPromiseRejectBlock)reject) {
+    resolve(@{});
+}
+
 #pragma mark - Flurry Messaging
 
 RCT_EXPORT_METHOD(enableMessagingListener:(BOOL)enabled) {
@@ -312,6 +426,18 @@ RCT_EXPORT_METHOD(willHandleMessage:(BOOL)handled) {
     NSLog(@"Flurry.willHandleMessage is not supported on iOS and tvOS.");
 }
 
+RCT_EXPORT_METHOD(willHandleMessageId:(NSInteger)messageId handled:(BOOL)handled) {
+    NSLog(@"Flurry.willHandleMessage is not supported on iOS and tvOS.");
+}
+
+RCT_EXPORT_METHOD(setMessagingReplyTimeout:(NSInteger)timeoutMillis) {
+    NSLog(@"Flurry.setMessagingReplyTimeout is not supported on iOS and tvOS.");
+}
+
+RCT_REMAP_METHOD(getMessagingMetrics, getMessagingMetricsWithResolver:(RCTPromiseResolveBlock)resolve rejecter:(RCTPromiseRejectBlock)reject) {
+    resolve(@{});
+}
+
 #pragma mark - Flurry Config
 
 RCT_EXPORT_METHOD(registerConfigListener) {
@@ -370,6 +496,31 @@ RCT_REMAP_METHOD(getConfigStringMap, getConfigStringMap:(nonnull NSDictionary *)
 #endif
 }
 
+RCT_EXPORT_BLOCKING_SYNCHRONOUS_METHOD(getConfigStringSync:(nonnull NSString *)key defaultValue:(nonnull NSString *)defaultValue) {
+#if TARGET_OS_IOS
+    return [[FConfig sharedInstance] getStringForKey:key withDefault:defaultValue];
+#else
+    return defaultValue;
+#endif
+}
+
+RCT_EXPORT_BLOCKING_SYNCHRONOUS_METHOD(getConfigMapSync:(nonnull NSDictionary *)defaultMap) {
+#if TARGET_OS_IOS
+    NSMutableDictionary<NSString *, NSString *> *map = [NSMutableDictionary dictionary];
+    for (NSString *key in defaultMap) {
+        map[key] = [[FConfig sharedInstance] getStringForKey:key withDefault:defaultMap[key]];
+    }
+    return map;
+#else
+    return defaultMap;
+#endif
+}
+
+RCT_REMAP_METHOD(getConfigSnapshot, getConfigSnapshotWithResolver:(RCTPromiseResolveBlock)resolve rejecter:(RCTPromiseRejectBlock)reject) {
+    // Flurry Config values are not cached by the plugin on iOS and tvOS, resolve an empty snapshot.
+    resolve(@{@"version": @0, @"values": @{}});
+}
+
 #pragma mark - Flurry Event Dispatcher delegate
 
 - (void)sendEvent:(NSString *)event params:(NSDictionary *)params {
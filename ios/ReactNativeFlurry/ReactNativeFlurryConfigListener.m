@@ -27,6 +27,9 @@ static NSString * const kActivateComplete = @"ActivateComplete";
 // number of JS callbacks added to config listener
 @property (assign, nonatomic) NSUInteger callbacks;
 
+// increased on every activation
+@property (assign, nonatomic) NSUInteger version;
+
 @end
 
 @implementation ReactNativeFlurryConfigListener
@@ -35,6 +38,7 @@ static NSString * const kActivateComplete = @"ActivateComplete";
     self = [super init];
     if (self) {
         _callbacks = 0;
+        _version = 0;
         _queue = dispatch_queue_create("com.flurry.reactnative.config.queue", 0);
     }
     return self;
@@ -63,28 +67,29 @@ static NSString * const kActivateComplete = @"ActivateComplete";
 
 - (void)fetchComplete {
     if (self.callbacks > 0) {
-        NSDictionary *event = @{@"Type": kFetchSuccess};
+        NSDictionary *event = @{@"Type": kFetchSuccess, @"version": @(self.version)};
         [self.delegate sendEvent:kConfigEvent params:event];
     }
 }
 
 - (void)fetchFail {
     if (self.callbacks > 0) {
-        NSDictionary *event = @{@"Type": kFetchError};
+        NSDictionary *event = @{@"Type": kFetchError, @"version": @(self.version)};
         [self.delegate sendEvent:kConfigEvent params:event];
     }
 }
 
 - (void)fetchCompleteNoChange {
     if (self.callbacks > 0) {
-        NSDictionary *event = @{@"Type": kFetchNoChange};
+        NSDictionary *event = @{@"Type": kFetchNoChange, @"version": @(self.version)};
         [self.delegate sendEvent:kConfigEvent params:event];
     }
 }
 
 - (void)activationComplete {
+    self.version ++;
     if (self.callbacks > 0) {
-        NSDictionary *event = @{@"Type": kActivateComplete};
+        NSDictionary *event = @{@"Type": kActivateComplete, @"version": @(self.version)};
         [self.delegate sendEvent:kConfigEvent params:event];
     }
 }